@@ -0,0 +1,82 @@
+package com.origin.urlshortener.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.origin.urlshortener.cache.NoOpShortCodeCache;
+import com.origin.urlshortener.cache.UrlMappingCache;
+import com.origin.urlshortener.config.BulkProperties;
+import com.origin.urlshortener.config.RedirectProperties;
+import com.origin.urlshortener.metrics.ShortenerMetrics;
+import com.origin.urlshortener.model.UrlMapping;
+import com.origin.urlshortener.ratelimit.CreateAdmission;
+import com.origin.urlshortener.service.ClickTracker;
+import com.origin.urlshortener.service.ShortCodePool;
+import com.origin.urlshortener.service.UrlShortenerService;
+import com.origin.urlshortener.util.SnowflakeIdGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Redirect handling through the DispatcherServlet: the direct response writer against the original
+ * RedirectView handler. The service is stubbed, so the difference is the MVC redirect path alone.
+ * Run with -prof gc to compare allocation per request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedirectBenchmark {
+    private static final String SHORT_CODE = "2Vxa4Vka7rk";
+
+    private MockMvc mockMvc;
+
+    @Setup
+    public void setUp() {
+        UrlMapping urlMapping = new UrlMapping(1L, "https://www.example.com/articles/2024/03/some-article",
+                SHORT_CODE, null, LocalDateTime.now(), 0, null, null, null, true);
+        UrlShortenerService service = mock(UrlShortenerService.class, withSettings().stubOnly());
+        when(service.getOriginalUrl(SHORT_CODE)).thenReturn(urlMapping);
+        ClickTracker clickTracker = mock(ClickTracker.class, withSettings().stubOnly());
+        ShortenerMetrics metrics = new ShortenerMetrics(new SimpleMeterRegistry(), new SnowflakeIdGenerator(),
+                mock(UrlMappingCache.class), clickTracker, mock(ShortCodePool.class), new NoOpShortCodeCache());
+
+        RedirectProperties redirectProperties = new RedirectProperties();
+        redirectProperties.setCacheControl("public, max-age=86400");
+        mockMvc = MockMvcBuilders.standaloneSetup(
+                        new UrlShortenerController(service, new ObjectMapper(), new BulkProperties(), clickTracker,
+                                metrics, redirectProperties, mock(CreateAdmission.class)),
+                        new RedirectViewController(service, clickTracker))
+                .build();
+    }
+
+    @Benchmark
+    public MockHttpServletResponse direct() throws Exception {
+        return mockMvc.perform(get("/api/v1/shortener/" + SHORT_CODE)).andReturn().getResponse();
+    }
+
+    @Benchmark
+    public MockHttpServletResponse redirectView() throws Exception {
+        return mockMvc.perform(get("/legacy/" + SHORT_CODE)).andReturn().getResponse();
+    }
+}
@@ -0,0 +1,34 @@
+package com.origin.urlshortener.controller;
+
+import com.origin.urlshortener.model.UrlMapping;
+import com.origin.urlshortener.service.ClickTracker;
+import com.origin.urlshortener.service.UrlShortenerService;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.view.RedirectView;
+
+/**
+ * The original RedirectView-based redirect handler, kept as the baseline for RedirectBenchmark.
+ */
+@RestController
+@RequestMapping("/legacy")
+public class RedirectViewController {
+    private final UrlShortenerService urlShortenerService;
+    private final ClickTracker clickTracker;
+
+    public RedirectViewController(UrlShortenerService urlShortenerService, ClickTracker clickTracker) {
+        this.urlShortenerService = urlShortenerService;
+        this.clickTracker = clickTracker;
+    }
+
+    @GetMapping("/{shortCode}")
+    public RedirectView redirectToOriginalUrl(@PathVariable String shortCode) {
+        UrlMapping urlMapping = urlShortenerService.getOriginalUrl(shortCode);
+        clickTracker.record(urlMapping.getShortCode());
+        RedirectView redirectView = new RedirectView();
+        redirectView.setUrl(urlMapping.getOriginalUrl());
+        return redirectView;
+    }
+}
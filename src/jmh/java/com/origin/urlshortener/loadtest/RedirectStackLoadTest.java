@@ -0,0 +1,323 @@
+package com.origin.urlshortener.loadtest;
+
+import com.origin.urlshortener.UrlShortenerApplication;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load test of the redirect tier on the servlet stack (Tomcat with platform or virtual threads) and on
+ * the reactive stack (WebFlux on Netty with R2DBC lookups).
+ *
+ * Unlike ThreadModelLoadTest the application runs in a separate JVM, so that its threads and memory can be measured
+ * apart from the load generator. A servlet instance first creates the short codes in an H2 file database, which every
+ * mode then serves with the cache enabled, as a redirect tier would. Each mode is warmed up with a few connections,
+ * sampled, driven with loadtest.concurrency keep-alive connections and sampled again halfway through. Besides
+ * throughput and latency percentiles the run reports the server's live threads, heap used after a GC (jcmd GC.run)
+ * and resident memory (from /proc, Linux only), and the growth of resident memory per added connection.
+ *
+ * The reactive mode needs the reactive Maven profile:
+ *
+ * mvn -Pbenchmark,reactive test-compile exec:exec -Djmh.main=com.origin.urlshortener.loadtest.RedirectStackLoadTest \
+ *     -Djmh.args="loadtest.concurrency=2000"
+ *
+ * Settings (system properties or key=value arguments): loadtest.modes (platform,virtual,reactive),
+ * loadtest.concurrency (1000), loadtest.seconds (20), loadtest.warmup-seconds (10), loadtest.codes (1000),
+ * loadtest.heap (512m).
+ */
+public class RedirectStackLoadTest {
+    private static final int WARMUP_CONCURRENCY = 8;
+
+    private static int concurrency;
+    private static int seconds;
+    private static int warmupSeconds;
+    private static int codeCount;
+    private static String heap;
+    private static Path directory;
+
+    public static void main(String[] args) throws Exception {
+        // Settings can also be passed as program arguments (key=value), e.g. through -Djmh.args
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator > 0) {
+                System.setProperty(arg.substring(arg.startsWith("-D") ? 2 : 0, separator), arg.substring(separator + 1));
+            }
+        }
+        List<String> modes = List.of(System.getProperty("loadtest.modes", "platform,virtual,reactive").split(","));
+        concurrency = Integer.getInteger("loadtest.concurrency", 1000);
+        seconds = Integer.getInteger("loadtest.seconds", 20);
+        warmupSeconds = Integer.getInteger("loadtest.warmup-seconds", 10);
+        codeCount = Integer.getInteger("loadtest.codes", 1000);
+        heap = System.getProperty("loadtest.heap", "512m");
+        directory = Files.createTempDirectory("redirect-loadtest");
+
+        String[] codes = seed();
+        List<String> report = new ArrayList<>();
+        report.add(String.format("%-9s %10s %9s %9s %9s %8s %8s %9s %9s %8s",
+                "mode", "req/s", "p50 ms", "p99 ms", "max ms", "errors", "threads", "heap MB", "rss MB", "KB/conn"));
+        for (String mode : modes) {
+            boolean webFlux = isPresent("org.springframework.web.reactive.function.server.RouterFunction");
+            if (mode.equals("reactive") && !webFlux) {
+                report.add(String.format("%-9s skipped, build with -Preactive", mode));
+                continue;
+            }
+            report.add(run(mode, codes));
+        }
+        System.out.printf("%nconcurrency=%d heap=%s codes=%d%n", concurrency, heap, codeCount);
+        report.forEach(System.out::println);
+    }
+
+    private static String[] seed() throws Exception {
+        String[] codes = new String[codeCount];
+        try (Server server = Server.start("platform")) {
+            HttpClient client = HttpClient.newHttpClient();
+            for (int i = 0; i < codeCount; i++) {
+                String body = "{\"url\":\"https://example.com/load/" + i + "\"}";
+                HttpRequest request = HttpRequest.newBuilder(URI.create(server.base + "/api/v1/shortener"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build();
+                String json = client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+                int start = json.indexOf("\"shortCode\":\"") + 13;
+                codes[i] = json.substring(start, json.indexOf('"', start));
+            }
+        }
+        return codes;
+    }
+
+    private static String run(String mode, String[] codes) throws Exception {
+        try (Server server = Server.start(mode)) {
+            try (HttpClient warmupClient = client()) {
+                load(warmupClient, server, codes, WARMUP_CONCURRENCY, warmupSeconds, null);
+                Sample idle = server.sample();
+                Sample[] loaded = new Sample[1];
+                Result result;
+                try (HttpClient client = client()) {
+                    result = load(client, server, codes, concurrency, seconds, () -> loaded[0] = server.sample());
+                }
+                long perConnection = (loaded[0].rssBytes - idle.rssBytes)
+                        / Math.max(1, concurrency - WARMUP_CONCURRENCY);
+                return String.format("%-9s %10.0f %9.2f %9.2f %9.2f %8d %8d %9.1f %9.1f %8s",
+                        mode, result.count() / (double) seconds,
+                        result.percentile(0.50), result.percentile(0.99), result.percentile(1.0), result.errors,
+                        loaded[0].threads, loaded[0].heapBytes / 1048576.0, loaded[0].rssBytes / 1048576.0,
+                        loaded[0].rssBytes < 0 ? "-" : String.format("%.1f", perConnection / 1024.0));
+            }
+        }
+    }
+
+    private static HttpClient client() {
+        // HTTP/1.1 so that every concurrent client holds its own connection
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    private static Result load(HttpClient client, Server server, String[] codes, int clients, int duration,
+                               Runnable atHalfTime) throws InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(duration);
+        AtomicLong errors = new AtomicLong();
+        long[][] latencies = new long[clients][];
+        int[] counts = new int[clients];
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                int slot = c;
+                executor.submit(() -> {
+                    long[] samples = new long[1024];
+                    int n = 0;
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < deadline) {
+                        String code = codes[random.nextInt(codes.length)];
+                        HttpRequest request = HttpRequest.newBuilder(
+                                URI.create(server.base + "/api/v1/shortener/" + code)).build();
+                        long sent = System.nanoTime();
+                        try {
+                            if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() != 302) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                        if (n == samples.length) {
+                            samples = Arrays.copyOf(samples, n * 2);
+                        }
+                        samples[n++] = System.nanoTime() - sent;
+                    }
+                    latencies[slot] = samples;
+                    counts[slot] = n;
+                });
+            }
+            if (atHalfTime != null) {
+                TimeUnit.NANOSECONDS.sleep(start + (deadline - start) / 2 - System.nanoTime());
+                atHalfTime.run();
+            }
+        }
+
+        int total = Arrays.stream(counts).sum();
+        long[] all = new long[total];
+        int offset = 0;
+        for (int c = 0; c < clients; c++) {
+            System.arraycopy(latencies[c], 0, all, offset, counts[c]);
+            offset += counts[c];
+        }
+        Arrays.sort(all);
+        return new Result(all, errors.get());
+    }
+
+    private static boolean isPresent(String className) {
+        try {
+            Class.forName(className, false, RedirectStackLoadTest.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private record Result(long[] sortedNanos, long errors) {
+        long count() {
+            return sortedNanos.length;
+        }
+
+        double percentile(double p) {
+            if (sortedNanos.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.min(sortedNanos.length - 1, Math.ceil(p * sortedNanos.length) - 1);
+            return sortedNanos[Math.max(0, index)] / 1_000_000.0;
+        }
+    }
+
+    private record Sample(int threads, long heapBytes, long rssBytes) {
+    }
+
+    /**
+     * The application in a child JVM on the load test's classpath, with the database in the test's directory.
+     */
+    private static final class Server implements AutoCloseable {
+        private final Process process;
+        private final String base;
+        private final HttpClient client = HttpClient.newHttpClient();
+
+        private Server(Process process, String base) {
+            this.process = process;
+            this.base = base;
+        }
+
+        static Server start(String mode) throws Exception {
+            int port;
+            try (ServerSocket socket = new ServerSocket(0)) {
+                port = socket.getLocalPort();
+            }
+            String database = directory.resolve("mappings").toAbsolutePath().toString();
+            List<String> command = new ArrayList<>(List.of(
+                    Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-Xms" + heap, "-Xmx" + heap,
+                    "-cp", System.getProperty("java.class.path"),
+                    UrlShortenerApplication.class.getName(),
+                    "--server.port=" + port,
+                    "--spring.datasource.url=jdbc:h2:file:" + database,
+                    "--spring.r2dbc.url=r2dbc:h2:file:///" + database,
+                    "--spring.threads.virtual.enabled=" + mode.equals("virtual"),
+                    "--spring.jpa.show-sql=false",
+                    "--spring.h2.console.enabled=false",
+                    "--logging.level.root=WARN",
+                    "--logging.level.com.origin.urlshortener=WARN"));
+            if (mode.equals("reactive")) {
+                command.add("--spring.profiles.active=reactive");
+            }
+            File log = directory.resolve(mode + ".log").toFile();
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+            Server server = new Server(process, "http://localhost:" + port);
+            long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(2);
+            while (!server.isUp()) {
+                if (!process.isAlive() || System.nanoTime() > deadline) {
+                    server.close();
+                    throw new IllegalStateException(mode + " server did not start, see " + log);
+                }
+                Thread.sleep(200);
+            }
+            return server;
+        }
+
+        private boolean isUp() {
+            try {
+                HttpRequest request = HttpRequest.newBuilder(URI.create(base + "/actuator/health")).build();
+                return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+            } catch (IOException | InterruptedException e) {
+                return false;
+            }
+        }
+
+        Sample sample() {
+            try {
+                String jcmd = Path.of(System.getProperty("java.home"), "bin", "jcmd").toString();
+                new ProcessBuilder(jcmd, String.valueOf(process.pid()), "GC.run")
+                        .redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start().waitFor();
+                HttpRequest request = HttpRequest.newBuilder(URI.create(base + "/actuator/prometheus")).build();
+                String metrics = client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+                long heapBytes = 0;
+                int threads = 0;
+                for (String line : metrics.split("\n")) {
+                    if (line.startsWith("jvm_memory_used_bytes{") && line.contains("area=\"heap\"")) {
+                        heapBytes += (long) value(line);
+                    } else if (line.startsWith("jvm_threads_live_threads ")) {
+                        threads = (int) value(line);
+                    }
+                }
+                return new Sample(threads, heapBytes, residentBytes());
+            } catch (IOException | InterruptedException e) {
+                throw new IllegalStateException("Failed to sample the server", e);
+            }
+        }
+
+        private long residentBytes() throws IOException {
+            Path status = Path.of("/proc", String.valueOf(process.pid()), "status");
+            if (!Files.exists(status)) {
+                return -1;
+            }
+            for (String line : Files.readAllLines(status)) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+            return -1;
+        }
+
+        private static double value(String line) {
+            return Double.parseDouble(line.substring(line.lastIndexOf(' ') + 1));
+        }
+
+        // An interrupted wait kills the child JVM forcibly and keeps the interrupt flag set
+        @Override
+        public void close() {
+            client.close();
+            process.destroy();
+            try {
+                if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                    process.destroyForcibly().waitFor();
+                }
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
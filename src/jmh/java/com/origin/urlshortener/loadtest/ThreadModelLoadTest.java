@@ -0,0 +1,245 @@
+package com.origin.urlshortener.loadtest;
+
+import com.origin.urlshortener.UrlShortenerApplication;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load test comparing the platform-thread and virtual-thread modes.
+ *
+ * Each mode starts the application on a random port with the cache disabled, so every redirect reaches the
+ * database, and with a fixed delay added to each JDBC statement to stand in for a networked database. A number of
+ * concurrent clients then issue redirects, plus a share of creates, and the run reports throughput and latency
+ * percentiles per mode.
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.main=com.origin.urlshortener.loadtest.ThreadModelLoadTest \
+ *     -Djmh.args="loadtest.concurrency=1000 loadtest.latency-ms=20"
+ *
+ * Settings (system properties or key=value arguments): loadtest.concurrency (1000), loadtest.seconds (20), loadtest.warmup-seconds (5),
+ * loadtest.latency-ms (20), loadtest.pool-size (400), loadtest.write-percent (10), loadtest.codes (1000).
+ * The pool is deliberately larger than Tomcat's 200 platform threads; with a smaller pool both modes are
+ * bound by connections and perform alike.
+ */
+public class ThreadModelLoadTest {
+    private static int concurrency;
+    private static int seconds;
+    private static int warmupSeconds;
+    private static int latencyMs;
+    private static int poolSize;
+    private static int writePercent;
+    private static int codeCount;
+
+    public static void main(String[] args) throws Exception {
+        // Settings can also be passed as program arguments (key=value), e.g. through -Djmh.args
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator > 0) {
+                System.setProperty(arg.substring(arg.startsWith("-D") ? 2 : 0, separator), arg.substring(separator + 1));
+            }
+        }
+        concurrency = Integer.getInteger("loadtest.concurrency", 1000);
+        seconds = Integer.getInteger("loadtest.seconds", 20);
+        warmupSeconds = Integer.getInteger("loadtest.warmup-seconds", 5);
+        latencyMs = Integer.getInteger("loadtest.latency-ms", 20);
+        poolSize = Integer.getInteger("loadtest.pool-size", 400);
+        writePercent = Integer.getInteger("loadtest.write-percent", 10);
+        codeCount = Integer.getInteger("loadtest.codes", 1000);
+
+        List<String> report = new ArrayList<>();
+        report.add(String.format("%-9s %10s %10s %10s %10s %10s %8s",
+                "mode", "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms", "errors"));
+        for (boolean virtual : new boolean[]{false, true}) {
+            report.add(run(virtual));
+        }
+        System.out.printf("%nconcurrency=%d latency=%dms pool=%d writes=%d%%%n",
+                concurrency, latencyMs, poolSize, writePercent);
+        report.forEach(System.out::println);
+    }
+
+    private static String run(boolean virtual) throws Exception {
+        String mode = virtual ? "virtual" : "platform";
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(
+                UrlShortenerApplication.class, JdbcLatencyConfig.class)
+                .run(
+                        "--server.port=0",
+                        "--spring.threads.virtual.enabled=" + virtual,
+                        "--spring.datasource.url=jdbc:h2:mem:loadtest-" + mode,
+                        "--spring.datasource.hikari.maximum-pool-size=" + poolSize,
+                        "--spring.jpa.show-sql=false",
+                        "--spring.h2.console.enabled=false",
+                        "--shortener.cache.enabled=false",
+                        "--shortener.datasource.limiter.max-concurrent=" + poolSize,
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.origin.urlshortener=WARN")) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            String base = "http://localhost:" + port + "/api/v1/shortener";
+            HttpClient client = HttpClient.newBuilder()
+                    .followRedirects(HttpClient.Redirect.NEVER)
+                    .executor(Executors.newVirtualThreadPerTaskExecutor())
+                    .build();
+
+            String[] codes = new String[codeCount];
+            for (int i = 0; i < codeCount; i++) {
+                codes[i] = shortCode(client.send(create(base, i), HttpResponse.BodyHandlers.ofString()).body());
+            }
+
+            load(client, base, codes, warmupSeconds);
+            Result result = load(client, base, codes, seconds);
+            return String.format("%-9s %10.0f %10.2f %10.2f %10.2f %10.2f %8d",
+                    mode, result.count() / (double) seconds,
+                    result.percentile(0.50), result.percentile(0.90), result.percentile(0.99), result.percentile(1.0),
+                    result.errors);
+        }
+    }
+
+    private static Result load(HttpClient client, String base, String[] codes, int duration) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(duration);
+        AtomicLong errors = new AtomicLong();
+        AtomicLong created = new AtomicLong(codeCount);
+        long[][] latencies = new long[concurrency][];
+        int[] counts = new int[concurrency];
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < concurrency; c++) {
+                int slot = c;
+                clients.submit(() -> {
+                    long[] samples = new long[1024];
+                    int n = 0;
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < deadline) {
+                        boolean write = random.nextInt(100) < writePercent;
+                        HttpRequest request = write
+                                ? create(base, created.incrementAndGet())
+                                : HttpRequest.newBuilder(URI.create(base + "/" + codes[random.nextInt(codes.length)])).build();
+                        long start = System.nanoTime();
+                        try {
+                            int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                            if (status != (write ? 201 : 302)) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                        if (n == samples.length) {
+                            samples = Arrays.copyOf(samples, n * 2);
+                        }
+                        samples[n++] = System.nanoTime() - start;
+                    }
+                    latencies[slot] = samples;
+                    counts[slot] = n;
+                });
+            }
+        }
+
+        int total = Arrays.stream(counts).sum();
+        long[] all = new long[total];
+        int offset = 0;
+        for (int c = 0; c < concurrency; c++) {
+            System.arraycopy(latencies[c], 0, all, offset, counts[c]);
+            offset += counts[c];
+        }
+        Arrays.sort(all);
+        return new Result(all, errors.get());
+    }
+
+    private static HttpRequest create(String base, long n) {
+        String body = "{\"url\":\"https://example.com/load/" + n + "\"}";
+        return HttpRequest.newBuilder(URI.create(base))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static String shortCode(String json) {
+        int start = json.indexOf("\"shortCode\":\"") + 13;
+        return json.substring(start, json.indexOf('"', start));
+    }
+
+    private record Result(long[] sortedNanos, long errors) {
+        long count() {
+            return sortedNanos.length;
+        }
+
+        double percentile(double p) {
+            if (sortedNanos.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.min(sortedNanos.length - 1, Math.ceil(p * sortedNanos.length) - 1);
+            return sortedNanos[Math.max(0, index)] / 1_000_000.0;
+        }
+    }
+
+    /**
+     * Adds loadtest.latency-ms to every statement execution while the connection is held, like a remote database.
+     */
+    @Configuration
+    static class JdbcLatencyConfig {
+        @Bean
+        static BeanPostProcessor jdbcLatencyPostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (!(bean instanceof DataSource dataSource) || latencyMs <= 0) {
+                        return bean;
+                    }
+                    return new DelegatingDataSource(dataSource) {
+                        @Override
+                        public Connection getConnection() throws SQLException {
+                            return delayed(super.getConnection(), Connection.class);
+                        }
+                    };
+                }
+            };
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T delayed(T target, Class<T> type) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+                Object result = invoke(target, method, args);
+                if (result instanceof PreparedStatement statement) {
+                    return delayed(statement, PreparedStatement.class);
+                }
+                if (result instanceof Statement statement && type == Connection.class) {
+                    return delayed(statement, Statement.class);
+                }
+                return result;
+            });
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            if (method.getName().startsWith("execute")) {
+                Thread.sleep(latencyMs);
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.origin.urlshortener.service;
+
+import com.origin.urlshortener.config.FilterProperties;
+import com.origin.urlshortener.config.IdGeneratorProperties;
+import com.origin.urlshortener.util.SnowflakeIdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Time to hand out a burst of IDs, from a full pre-generated pool against generating them inline.
+ *
+ * Inline generation is capped at 4096 IDs per millisecond by the Snowflake sequence, so a burst larger than that
+ * waits for the clock; the pool serves it from memory as long as the burst fits its capacity.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20)
+@Measurement(iterations = 50)
+@Fork(1)
+public class ShortCodePoolBenchmark {
+    @Param({"pool", "inline"})
+    public String source;
+
+    @Param({"1000", "8000"})
+    public int burst;
+
+    private SnowflakeIdGenerator generator;
+    private ShortCodePool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        generator = new SnowflakeIdGenerator();
+        IdGeneratorProperties properties = new IdGeneratorProperties();
+        properties.getPool().setCapacity(8192);
+        pool = new ShortCodePool(properties, new FilterProperties(), generator);
+        pool.start();
+    }
+
+    @Setup(Level.Iteration)
+    public void awaitFullPool() {
+        while (pool.size() < 8192) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.stop();
+    }
+
+    @Benchmark
+    public long takeBurst() {
+        long last = 0;
+        if ("pool".equals(source)) {
+            for (int i = 0; i < burst; i++) {
+                last = pool.nextId();
+            }
+        } else {
+            for (int i = 0; i < burst; i++) {
+                last = generator.nextId();
+            }
+        }
+        return last;
+    }
+}
@@ -0,0 +1,98 @@
+package com.origin.urlshortener.service;
+
+import com.origin.urlshortener.UrlShortenerApplication;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end service calls against the embedded H2 database, without the web layer.
+ *
+ * shortenNew always inserts, shortenExisting hits the deduplication path, and getOriginalUrl resolves codes
+ * picked at random from a preloaded set, with the redirect cache on and off and for both storage engines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class UrlShortenerServiceBenchmark {
+    private static final int CODES = 10_000;
+
+    @Param({"true", "false"})
+    public boolean cache;
+
+    @Param({"jpa", "mmap"})
+    public String engine;
+
+    private ConfigurableApplicationContext context;
+    private UrlShortenerService service;
+    private String[] codes;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path mmapDirectory = Files.createTempDirectory("mmap-benchmark");
+        context = new SpringApplicationBuilder(UrlShortenerApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:benchmark",
+                        "--shortener.storage.engine=" + engine,
+                        "--shortener.storage.mmap.directory=" + mmapDirectory,
+                        "--spring.jpa.show-sql=false",
+                        "--shortener.cache.enabled=" + cache,
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.origin.urlshortener=WARN");
+        service = context.getBean(UrlShortenerService.class);
+        codes = new String[CODES];
+        for (int i = 0; i < CODES; i++) {
+            codes[i] = service.shortenUrl("https://example.com/preloaded/" + i).getShortCode();
+        }
+        // Start measuring with a warm cache rather than spending the warm-up iterations filling it
+        for (String code : codes) {
+            service.getOriginalUrl(code);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object shortenNew() {
+        return service.shortenUrl("https://example.com/new/" + sequence.incrementAndGet());
+    }
+
+    @Benchmark
+    public Object shortenExisting() {
+        return service.shortenUrl("https://example.com/preloaded/" + ThreadLocalRandom.current().nextInt(CODES));
+    }
+
+    @Benchmark
+    public Object getOriginalUrl() {
+        return service.getOriginalUrl(codes[ThreadLocalRandom.current().nextInt(CODES)]);
+    }
+}
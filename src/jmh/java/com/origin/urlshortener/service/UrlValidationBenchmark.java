@@ -0,0 +1,82 @@
+package com.origin.urlshortener.service;
+
+import com.origin.urlshortener.config.CanonicalizationProperties;
+import com.origin.urlshortener.exception.InvalidUrlException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UrlCanonicalizer against the original java.net.URI-based validation for typical valid and invalid inputs.
+ * Invalid URLs include the cost of the rejection exception. Run with -prof gc to compare allocation per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlValidationBenchmark {
+
+    @Param({
+            "https://example.com",
+            "https://www.example.com/articles/2024/03/some-long-article-slug?utm_source=newsletter&utm_medium=email#comments",
+            "ftp://example.com/file",
+            "http://exa mple.com"
+    })
+    public String url;
+
+    private UrlCanonicalizer canonicalizer;
+
+    @Setup
+    public void setUp() {
+        canonicalizer = new UrlCanonicalizer(new CanonicalizationProperties());
+    }
+
+    @Benchmark
+    public boolean validateUri() {
+        try {
+            validateWithUri(url);
+            return true;
+        } catch (InvalidUrlException e) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    public boolean canonicalize() {
+        try {
+            return canonicalizer.canonicalize(url) != null;
+        } catch (InvalidUrlException e) {
+            return false;
+        }
+    }
+
+    // The validation UrlCanonicalizer replaced
+    private static void validateWithUri(String url) {
+        try {
+            URI uri = new URI(url.trim());
+            if (uri.getScheme() == null || uri.getHost() == null) {
+                throw new InvalidUrlException("Invalid URL format: scheme and host are required");
+            }
+            String scheme = uri.getScheme().toLowerCase();
+            if (!scheme.equals("http") && !scheme.equals("https")) {
+                throw new InvalidUrlException("Invalid URL scheme: only http and https are supported");
+            }
+        } catch (URISyntaxException e) {
+            throw new InvalidUrlException("Invalid URL format: " + e.getMessage());
+        }
+    }
+}
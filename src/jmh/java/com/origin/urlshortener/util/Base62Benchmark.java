@@ -0,0 +1,61 @@
+package com.origin.urlshortener.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base62 encode/decode against the original StringBuilder-based encoder.
+ * Run with -prof gc to compare allocation per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Base62Benchmark {
+    private static final String BASE62_CHARS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+
+    private long id;
+    private String code;
+
+    @Setup
+    public void setUp() {
+        id = new SnowflakeIdGenerator().nextId();
+        code = Base62.encode(id);
+    }
+
+    @Benchmark
+    public String encodeStringBuilder() {
+        long num = id;
+        StringBuilder sb = new StringBuilder();
+        while (num > 0) {
+            sb.append(BASE62_CHARS.charAt((int) (num % 62)));
+            num /= 62;
+        }
+        while (sb.length() < 11) {
+            sb.append('0');
+        }
+        return sb.reverse().toString();
+    }
+
+    @Benchmark
+    public String encode() {
+        return Base62.encode(id);
+    }
+
+    @Benchmark
+    public long decode() {
+        return Base62.decode(code);
+    }
+}
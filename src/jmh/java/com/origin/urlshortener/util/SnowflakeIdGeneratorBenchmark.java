@@ -0,0 +1,86 @@
+package com.origin.urlshortener.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Contention benchmark of the lock-free generator against the original synchronized one.
+ *
+ * Throughput is capped at 4096 ids/ms by the sequence width, so at high thread counts both
+ * implementations spend time waiting for the next millisecond; the interesting part is how
+ * much of that budget is lost to lock handoff below the cap.
+ *
+ * Run the 1-64 thread sweep with:
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.main=com.origin.urlshortener.util.SnowflakeIdGeneratorBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnowflakeIdGeneratorBenchmark {
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32, 64};
+
+    @Param({"synchronized", "lock-free"})
+    public String implementation;
+
+    private LongSupplier generator;
+
+    @Setup
+    public void setUp() {
+        if ("synchronized".equals(implementation)) {
+            generator = new SynchronizedSnowflakeIdGenerator()::nextId;
+        } else {
+            generator = new SnowflakeIdGenerator()::nextId;
+        }
+    }
+
+    @Benchmark
+    public long nextId() {
+        return generator.getAsLong();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String generateShortCode() {
+        return Base62.encode(generator.getAsLong());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        StringBuilder summary = new StringBuilder(String.format("%n%-8s %-14s %14s%n", "threads", "implementation", "ids/ms"));
+        for (int threads : THREAD_COUNTS) {
+            Options options = new OptionsBuilder()
+                    .include(SnowflakeIdGeneratorBenchmark.class.getSimpleName() + ".nextId")
+                    .threads(threads)
+                    .build();
+            Collection<RunResult> results = new Runner(options).run();
+            for (RunResult result : results) {
+                summary.append(String.format("%-8d %-14s %14.1f%n",
+                        threads,
+                        result.getParams().getParam("implementation"),
+                        result.getPrimaryResult().getScore()));
+            }
+        }
+        System.out.println(summary);
+    }
+}
@@ -0,0 +1,45 @@
+package com.origin.urlshortener.util;
+
+/**
+ * The original monitor-based Snowflake generator (datacenter 1, machine 1), kept as the baseline
+ * for the contention benchmark.
+ */
+class SynchronizedSnowflakeIdGenerator {
+    private static final long EPOCH = 1288834974657L;
+    private static final long SEQUENCE_BITS = 12L;
+    private static final long MAX_SEQUENCE = ~(-1L << SEQUENCE_BITS);
+    private static final long MACHINE_ID_SHIFT = SEQUENCE_BITS;
+    private static final long DATACENTER_ID_SHIFT = SEQUENCE_BITS + 5L;
+    private static final long TIMESTAMP_SHIFT = SEQUENCE_BITS + 10L;
+
+    private long sequence = 0L;
+    private long lastTimestamp = -1L;
+
+    public synchronized long nextId() {
+        long currentTimestamp = System.currentTimeMillis();
+        if (currentTimestamp < lastTimestamp) {
+            throw new RuntimeException("Clock moved backwards");
+        }
+        if (currentTimestamp == lastTimestamp) {
+            sequence = (sequence + 1) & MAX_SEQUENCE;
+            if (sequence == 0) {
+                currentTimestamp = waitNextMillis(lastTimestamp);
+            }
+        } else {
+            sequence = 0;
+        }
+        lastTimestamp = currentTimestamp;
+        return ((currentTimestamp - EPOCH) << TIMESTAMP_SHIFT) |
+               (1L << DATACENTER_ID_SHIFT) |
+               (1L << MACHINE_ID_SHIFT) |
+               sequence;
+    }
+
+    private long waitNextMillis(long lastTimestamp) {
+        long timestamp = System.currentTimeMillis();
+        while (timestamp <= lastTimestamp) {
+            timestamp = System.currentTimeMillis();
+        }
+        return timestamp;
+    }
+}
@@ -0,0 +1,15 @@
+package com.origin.urlshortener.cache;
+
+import java.util.Collection;
+
+/**
+ * Drops deleted short codes from the in-process cache of every node, this one included.
+ *
+ * Mappings never change once created, so deletion is the only event that makes a cached entry stale. Expiring links
+ * need no message: every tier drops them by their expiry time and click-limited links are never cached.
+ * Selected with shortener.cache.invalidation.channel.
+ */
+public interface CacheInvalidationChannel {
+
+    void publish(Collection<String> shortCodes);
+}
@@ -0,0 +1,128 @@
+package com.origin.urlshortener.cache;
+
+import com.origin.urlshortener.config.CacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Invalidation through the shared database, for multi-node deployments without a message broker.
+ *
+ * Published codes are invalidated locally and inserted into cache_invalidations stamped with the database time.
+ * Every node polls the table each poll-interval for rows written since its previous poll, less lookback so that
+ * inserts which committed after a poll had already passed their timestamp are still seen. Invalidating a code twice is
+ * harmless, so overlapping reads need no bookkeeping. Rows older than retention are deleted by every poller.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "shortener.cache.invalidation", name = "channel", havingValue = "jdbc")
+public class JdbcCacheInvalidationChannel implements CacheInvalidationChannel, SmartLifecycle {
+    private static final String INSERT_SQL =
+            "INSERT INTO cache_invalidations (short_code, created_at) VALUES (?, LOCALTIMESTAMP)";
+    private static final String NOW_SQL = "SELECT LOCALTIMESTAMP";
+    private static final String SELECT_SQL = "SELECT short_code FROM cache_invalidations WHERE created_at >= ?";
+    private static final String PRUNE_SQL = "DELETE FROM cache_invalidations WHERE created_at < ?";
+
+    private final CacheProperties.Invalidation properties;
+    private final UrlMappingCache urlMappingCache;
+    private final JdbcTemplate jdbcTemplate;
+    // Only touched by the poller thread
+    private LocalDateTime readFrom;
+    private ScheduledExecutorService poller;
+    private volatile boolean running;
+
+    public JdbcCacheInvalidationChannel(CacheProperties cacheProperties,
+                                        UrlMappingCache urlMappingCache,
+                                        JdbcTemplate jdbcTemplate) {
+        this.properties = cacheProperties.getInvalidation();
+        this.urlMappingCache = urlMappingCache;
+        this.jdbcTemplate = jdbcTemplate;
+        if (properties.getRetention().compareTo(properties.getLookback()) <= 0) {
+            throw new IllegalArgumentException("Cache invalidation retention must be longer than its lookback");
+        }
+    }
+
+    @Override
+    public void publish(Collection<String> shortCodes) {
+        shortCodes.forEach(urlMappingCache::invalidate);
+        if (shortCodes.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, shortCodes, shortCodes.size(),
+                    (ps, shortCode) -> ps.setString(1, shortCode));
+        } catch (DataAccessException e) {
+            // The deletion itself has committed; other nodes drop the codes when their entries expire
+            log.warn("Failed to publish {} cache invalidations: {}", shortCodes.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Invalidates the codes published since the previous poll and deletes rows past retention.
+     *
+     * @return number of rows read
+     */
+    int poll() {
+        LocalDateTime now = jdbcTemplate.queryForObject(NOW_SQL, LocalDateTime.class);
+        LocalDateTime from = readFrom != null ? readFrom : now.minus(properties.getLookback());
+        int read = 0;
+        for (String shortCode : jdbcTemplate.queryForList(SELECT_SQL, String.class, from)) {
+            urlMappingCache.invalidate(shortCode);
+            read++;
+        }
+        readFrom = now.minus(properties.getLookback());
+        jdbcTemplate.update(PRUNE_SQL, now.minus(properties.getRetention()));
+        return read;
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (DataAccessException e) {
+            // readFrom is unchanged, so the next poll covers this one's rows
+            log.warn("Cache invalidation poll failed, will retry: {}", e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Cache invalidation poll failed", e);
+        }
+    }
+
+    @Override
+    public void start() {
+        poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-invalidation-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = properties.getPollInterval().toMillis();
+        running = true;
+        poller.scheduleWithFixedDelay(this::pollQuietly, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        poller.shutdownNow();
+        try {
+            poller.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,25 @@
+package com.origin.urlshortener.cache;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+
+/**
+ * Invalidates this node's cache only, for single-node deployments.
+ */
+@Component
+@ConditionalOnProperty(prefix = "shortener.cache.invalidation", name = "channel", havingValue = "local",
+        matchIfMissing = true)
+public class LocalCacheInvalidationChannel implements CacheInvalidationChannel {
+    private final UrlMappingCache urlMappingCache;
+
+    public LocalCacheInvalidationChannel(UrlMappingCache urlMappingCache) {
+        this.urlMappingCache = urlMappingCache;
+    }
+
+    @Override
+    public void publish(Collection<String> shortCodes) {
+        shortCodes.forEach(urlMappingCache::invalidate);
+    }
+}
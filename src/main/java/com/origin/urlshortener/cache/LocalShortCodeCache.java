@@ -0,0 +1,53 @@
+package com.origin.urlshortener.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.origin.urlshortener.config.CacheProperties;
+import com.origin.urlshortener.model.UrlMapping;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+
+/**
+ * In-process stand-in for an external shared cache, with the same semantics: bounded, entries of expiring links
+ * dropped at their expiry time and click-limited links not cached. Lets the two-tier lookup path be run and tested
+ * without a cache server; it is not shared between nodes.
+ */
+@Component
+@ConditionalOnProperty(prefix = "shortener.cache.shared", name = "type", havingValue = "local")
+public class LocalShortCodeCache implements ShortCodeCache {
+    private final Cache<String, UrlMapping> cache;
+
+    public LocalShortCodeCache(CacheProperties properties) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getShared().getMaximumSize())
+                .expireAfter(new MappingExpiry(Duration.ZERO))
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public UrlMapping get(String shortCode) {
+        return cache.getIfPresent(shortCode);
+    }
+
+    @Override
+    public void put(UrlMapping urlMapping) {
+        if (urlMapping.getMaxClicks() == null) {
+            cache.put(urlMapping.getShortCode(), urlMapping);
+        }
+    }
+
+    @Override
+    public void evict(Collection<String> shortCodes) {
+        cache.invalidateAll(shortCodes);
+    }
+
+    @Override
+    public CacheStats stats() {
+        return cache.stats();
+    }
+}
@@ -0,0 +1,43 @@
+package com.origin.urlshortener.cache;
+
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.origin.urlshortener.model.UrlMapping;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Caffeine expiry for cached mappings: entries of expiring links are evicted retention after their expiry time,
+ * all others are kept until evicted for size.
+ */
+class MappingExpiry implements Expiry<String, UrlMapping> {
+    private static final Duration MAX_LIFETIME = Duration.ofNanos(Long.MAX_VALUE);
+
+    private final Duration retention;
+
+    MappingExpiry(Duration retention) {
+        this.retention = retention;
+    }
+
+    @Override
+    public long expireAfterCreate(String shortCode, UrlMapping urlMapping, long currentTime) {
+        if (urlMapping.getExpiresAt() == null) {
+            return Long.MAX_VALUE;
+        }
+        Duration lifetime = Duration.between(LocalDateTime.now(), urlMapping.getExpiresAt()).plus(retention);
+        if (lifetime.isNegative()) {
+            return 0;
+        }
+        return lifetime.compareTo(MAX_LIFETIME) >= 0 ? Long.MAX_VALUE : lifetime.toNanos();
+    }
+
+    @Override
+    public long expireAfterUpdate(String shortCode, UrlMapping urlMapping, long currentTime, long currentDuration) {
+        return expireAfterCreate(shortCode, urlMapping, currentTime);
+    }
+
+    @Override
+    public long expireAfterRead(String shortCode, UrlMapping urlMapping, long currentTime, long currentDuration) {
+        return currentDuration;
+    }
+}
@@ -0,0 +1,34 @@
+package com.origin.urlshortener.cache;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.origin.urlshortener.model.UrlMapping;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+
+/**
+ * No shared tier: near-cache misses go straight to the database.
+ */
+@Component
+@ConditionalOnProperty(prefix = "shortener.cache.shared", name = "type", havingValue = "none", matchIfMissing = true)
+public class NoOpShortCodeCache implements ShortCodeCache {
+
+    @Override
+    public UrlMapping get(String shortCode) {
+        return null;
+    }
+
+    @Override
+    public void put(UrlMapping urlMapping) {
+    }
+
+    @Override
+    public void evict(Collection<String> shortCodes) {
+    }
+
+    @Override
+    public CacheStats stats() {
+        return CacheStats.empty();
+    }
+}
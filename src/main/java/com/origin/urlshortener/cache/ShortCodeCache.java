@@ -0,0 +1,30 @@
+package com.origin.urlshortener.cache;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.origin.urlshortener.model.UrlMapping;
+
+import java.util.Collection;
+
+/**
+ * Second cache tier of short code to mapping, shared by all nodes and consulted when the in-process UrlMappingCache
+ * misses, so a mapping loaded or created on one node is served to the others without a database query.
+ *
+ * Selected with shortener.cache.shared.type. Implementations must not throw on an unavailable backend: a failed get
+ * is a miss and a failed put or evict is dropped, the database remaining the source of truth.
+ */
+public interface ShortCodeCache {
+
+    /**
+     * @return the cached mapping, or null
+     */
+    UrlMapping get(String shortCode);
+
+    /**
+     * Caches a mapping. Click-limited mappings are not cached, expiring ones only until they expire.
+     */
+    void put(UrlMapping urlMapping);
+
+    void evict(Collection<String> shortCodes);
+
+    CacheStats stats();
+}
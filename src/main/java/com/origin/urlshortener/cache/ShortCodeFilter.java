@@ -0,0 +1,99 @@
+package com.origin.urlshortener.cache;
+
+import com.origin.urlshortener.config.FilterProperties;
+import com.origin.urlshortener.storage.UrlMappingStore;
+import com.origin.urlshortener.util.Base62;
+import com.origin.urlshortener.util.BloomFilter;
+import com.origin.urlshortener.util.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Membership filter over all issued short codes, so lookups for codes that were never issued
+ * are answered in memory instead of going to the database.
+ *
+ * The filter is built from the mapping store once the application is ready and updated as new codes are created.
+ * Until the initial build has finished every code is reported as possibly present.
+ *
+ * Short codes are Base62 Snowflake IDs, so the issuing node and creation time can be read from the code itself.
+ * Codes stamped in the future are rejected outright. Codes issued by other nodes after the filter was built
+ * are never seen by this node's filter, so those are always let through to the database.
+ */
+@Slf4j
+@Component
+public class ShortCodeFilter {
+    private final FilterProperties properties;
+    private final UrlMappingStore urlMappingStore;
+    private final long localWorkerId;
+    private final long maxClockSkewMillis;
+    private final BloomFilter bloomFilter;
+    private final AtomicLong insertions = new AtomicLong();
+    // Codes from other nodes created after this point may be missing from the filter
+    private volatile long coveredUntil;
+    private volatile boolean ready;
+
+    public ShortCodeFilter(FilterProperties properties,
+                           UrlMappingStore urlMappingStore,
+                           SnowflakeIdGenerator snowflakeIdGenerator) {
+        this.properties = properties;
+        this.urlMappingStore = urlMappingStore;
+        this.localWorkerId = snowflakeIdGenerator.getWorkerId();
+        this.maxClockSkewMillis = properties.getMaxClockSkew().toMillis();
+        this.bloomFilter = properties.isEnabled()
+                ? new BloomFilter(properties.getExpectedInsertions(), properties.getFalsePositiveRate())
+                : null;
+    }
+
+    /**
+     * @return false only if the short code was definitely never issued
+     */
+    public boolean mightContain(String shortCode) {
+        long id = Base62.decode(shortCode);
+        if (id < 0) {
+            // Every issued code is exactly 11 Base62 characters
+            return false;
+        }
+        long createdAt = SnowflakeIdGenerator.timestampOf(id);
+        if (createdAt > System.currentTimeMillis() + maxClockSkewMillis) {
+            return false;
+        }
+        if (bloomFilter == null || !ready) {
+            return true;
+        }
+        if (createdAt >= coveredUntil && SnowflakeIdGenerator.workerIdOf(id) != localWorkerId) {
+            return true;
+        }
+        return bloomFilter.mightContain(shortCode);
+    }
+
+    public void add(String shortCode) {
+        if (bloomFilter != null) {
+            bloomFilter.put(shortCode);
+            if (insertions.incrementAndGet() == properties.getExpectedInsertions()) {
+                log.warn("Short code filter reached its expected size of {} entries, false positive rate will degrade",
+                        properties.getExpectedInsertions());
+            }
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        if (bloomFilter == null) {
+            return;
+        }
+        // Rows committed shortly after the snapshot, or stamped by a node with a lagging clock, count as uncovered
+        coveredUntil = System.currentTimeMillis() - maxClockSkewMillis;
+        urlMappingStore.forEachShortCode(this::add);
+        ready = true;
+        log.info("Built short code filter with {} entries ({} bits, {} hash functions)",
+                insertions.get(), bloomFilter.bitSize(), bloomFilter.hashFunctions());
+    }
+}
@@ -0,0 +1,86 @@
+package com.origin.urlshortener.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.origin.urlshortener.config.CacheProperties;
+import com.origin.urlshortener.model.UrlMapping;
+import com.origin.urlshortener.storage.UrlMappingStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded read-through cache of short code to mapping, backed by Caffeine (W-TinyLFU eviction).
+ * Mappings are immutable once created, so entries only need to be invalidated on deletion.
+ *
+ * Entries of expiring links are evicted expired-retention after their expiry time, so an expired code is still
+ * rejected from memory for a while but does not occupy the cache after the sweeper has deleted it. Click-limited
+ * links are not cached: whether they are used up depends on the live click count.
+ */
+@Slf4j
+@Component
+public class UrlMappingCache {
+    // Rough per-entry overhead (entry, entity, short code) counted on top of the URL length
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final CacheProperties properties;
+    private final UrlMappingStore urlMappingStore;
+    private final Cache<String, UrlMapping> cache;
+
+    public UrlMappingCache(CacheProperties properties, UrlMappingStore urlMappingStore) {
+        this.properties = properties;
+        this.urlMappingStore = urlMappingStore;
+        this.cache = properties.isEnabled() ? buildCache(properties) : null;
+    }
+
+    public UrlMapping get(String shortCode) {
+        return cache != null ? cache.getIfPresent(shortCode) : null;
+    }
+
+    public void put(UrlMapping urlMapping) {
+        if (cache != null && urlMapping.getMaxClicks() == null) {
+            cache.put(urlMapping.getShortCode(), urlMapping);
+        }
+    }
+
+    public void invalidate(String shortCode) {
+        if (cache != null) {
+            cache.invalidate(shortCode);
+        }
+    }
+
+    public long size() {
+        return cache != null ? cache.estimatedSize() : 0;
+    }
+
+    public CacheStats stats() {
+        return cache != null ? cache.stats() : CacheStats.empty();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (cache == null || properties.getWarmUpSize() <= 0) {
+            return;
+        }
+        urlMappingStore.findMostRecent(properties.getWarmUpSize()).forEach(this::put);
+        log.info("Warmed up short code cache with {} mappings", cache.estimatedSize());
+    }
+
+    private static Cache<String, UrlMapping> buildCache(CacheProperties properties) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder();
+        if (properties.getMaximumWeight() > 0) {
+            builder.maximumWeight(properties.getMaximumWeight())
+                    .weigher((String shortCode, UrlMapping urlMapping) ->
+                            ENTRY_OVERHEAD + urlMapping.getOriginalUrl().length());
+        } else {
+            builder.maximumSize(properties.getMaximumSize());
+        }
+        builder.expireAfter(new MappingExpiry(properties.getExpiredRetention()));
+        if (properties.isRecordStats()) {
+            builder.recordStats();
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,14 @@
+package com.origin.urlshortener.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Bulk shorten endpoint settings (shortener.bulk.*)
+ */
+@Data
+@ConfigurationProperties(prefix = "shortener.bulk")
+public class BulkProperties {
+    // URLs per transaction: one digest IN query and one batched insert per chunk
+    private int chunkSize = 500;
+}
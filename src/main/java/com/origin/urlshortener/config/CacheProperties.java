@@ -0,0 +1,60 @@
+package com.origin.urlshortener.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for the in-process short code cache, the shared second tier and cross-node invalidation (shortener.cache.*)
+ */
+@Data
+@ConfigurationProperties(prefix = "shortener.cache")
+public class CacheProperties {
+    private boolean enabled = true;
+
+    // Maximum number of cached mappings, ignored when maximumWeight is set
+    private long maximumSize = 100_000;
+
+    // Optional weight bound, roughly the number of URL characters kept in memory
+    private long maximumWeight = 0;
+
+    private boolean recordStats = true;
+
+    // How long an expired link stays cached (answering 410 without a database hit) before it is evicted
+    private Duration expiredRetention = Duration.ofMinutes(1);
+
+    // Number of most recently created mappings to preload at startup (0 disables warm-up)
+    private int warmUpSize = 0;
+
+    private Shared shared = new Shared();
+
+    private Invalidation invalidation = new Invalidation();
+
+    @Data
+    public static class Shared {
+        // Second tier shared by all nodes, consulted when the in-process cache misses
+        // none: no shared tier
+        // local: in-process stand-in for an external cache, for tests and single-node setups
+        private String type = "none";
+
+        // Maximum number of mappings held by the local stand-in
+        private long maximumSize = 1_000_000;
+    }
+
+    @Data
+    public static class Invalidation {
+        // How deleted codes are dropped from the in-process caches
+        // local: this node only
+        // jdbc: through the cache_invalidations table, which every node polls
+        private String channel = "local";
+
+        private Duration pollInterval = Duration.ofSeconds(1);
+
+        // Rows are read again for this long after they were written, to catch inserts that committed late
+        private Duration lookback = Duration.ofSeconds(5);
+
+        // Rows older than this are deleted; must be longer than lookback
+        private Duration retention = Duration.ofMinutes(1);
+    }
+}
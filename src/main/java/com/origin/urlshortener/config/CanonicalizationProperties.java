@@ -0,0 +1,15 @@
+package com.origin.urlshortener.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Canonicalization of URLs before deduplication and storage (shortener.canonicalization.*)
+ */
+@Data
+@ConfigurationProperties(prefix = "shortener.canonicalization")
+public class CanonicalizationProperties {
+    // Order query parameters by name, so ?b=2&a=1 and ?a=1&b=2 map to one code. Off by default because some
+    // servers treat parameter order as significant; repeated names keep their relative order either way.
+    private boolean sortQueryParameters = false;
+}
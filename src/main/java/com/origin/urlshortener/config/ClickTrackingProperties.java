@@ -0,0 +1,34 @@
+package com.origin.urlshortener.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Asynchronous click tracking on redirects (shortener.click-tracking.*)
+ */
+@Data
+@ConfigurationProperties(prefix = "shortener.click-tracking")
+public class ClickTrackingProperties {
+    private boolean enabled = true;
+
+    // How often aggregated click counts are written to url_mappings
+    private Duration flushInterval = Duration.ofSeconds(1);
+
+    // Distinct short codes buffered between flushes before the overflow policy kicks in
+    private int maxPending = 100_000;
+
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+
+    // With SAMPLE, one in sample-rate overflowing clicks is kept and counted sample-rate times
+    private int sampleRate = 10;
+
+    // Rows per JDBC batch when flushing
+    private int batchSize = 500;
+
+    public enum OverflowPolicy {
+        DROP,
+        SAMPLE
+    }
+}
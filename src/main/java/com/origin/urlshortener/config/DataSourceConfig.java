@@ -0,0 +1,101 @@
+package com.origin.urlshortener.config;
+
+import com.origin.urlshortener.datasource.ConcurrencyLimitedDataSource;
+import com.origin.urlshortener.datasource.ReadReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.config.DestructionAwareBeanPostProcessor;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Slf4j
+@Configuration
+public class DataSourceConfig {
+
+    // Static so the post-processor is registered before the DataSource bean is created.
+    // One post-processor for both wrappers, so that the limiter always applies to each pool and routing comes last.
+    @Bean
+    public static BeanPostProcessor dataSourcePostProcessor(Environment environment) {
+        return new DestructionAwareBeanPostProcessor() {
+            // Routing data sources by the bean they wrap: only that bean is destroyed by the container
+            private final Map<Object, ReadReplicaRoutingDataSource> routing = new ConcurrentHashMap<>();
+
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource) || bean instanceof ConcurrencyLimitedDataSource
+                        || bean instanceof ReadReplicaRoutingDataSource) {
+                    return bean;
+                }
+                Binder binder = Binder.get(environment);
+                DataSourceLimiterProperties limiter = binder
+                        .bindOrCreate("shortener.datasource.limiter", DataSourceLimiterProperties.class);
+                DataSourceReplicaProperties replicas = binder
+                        .bindOrCreate("shortener.datasource.replicas", DataSourceReplicaProperties.class);
+                DataSource primary = limiter.isEnabled() ? limit(dataSource, beanName, limiter) : dataSource;
+                if (!replicas.isEnabled()) {
+                    return primary;
+                }
+                ReadReplicaRoutingDataSource routed = route(primary, environment, replicas, limiter);
+                routing.put(bean, routed);
+                return routed;
+            }
+
+            @Override
+            public boolean requiresDestruction(Object bean) {
+                return routing.containsKey(bean);
+            }
+
+            @Override
+            public void postProcessBeforeDestruction(Object bean, String beanName) {
+                ReadReplicaRoutingDataSource routed = routing.remove(bean);
+                if (routed != null) {
+                    routed.close();
+                }
+            }
+        };
+    }
+
+    private static DataSource limit(DataSource dataSource, String name, DataSourceLimiterProperties properties) {
+        int maxConcurrent = properties.getMaxConcurrent();
+        if (maxConcurrent <= 0) {
+            maxConcurrent = dataSource instanceof HikariDataSource hikari ? hikari.getMaximumPoolSize() : 10;
+        }
+        log.info("Limiting datasource '{}' to {} concurrent connections ({} waiting)",
+                name, maxConcurrent, properties.getMaxWaiting());
+        return new ConcurrencyLimitedDataSource(
+                dataSource, maxConcurrent, properties.getMaxWaiting(), properties.getAcquireTimeout());
+    }
+
+    private static ReadReplicaRoutingDataSource route(DataSource primary, Environment environment,
+                                    DataSourceReplicaProperties properties, DataSourceLimiterProperties limiter) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (DataSourceReplicaProperties.Node node : properties.getNodes()) {
+            // Not started until first used, so an unreachable replica does not stop the application from starting
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + (replicas.size() + 1));
+            replica.setJdbcUrl(node.getUrl());
+            replica.setUsername(StringUtils.hasText(node.getUsername())
+                    ? node.getUsername() : environment.getProperty("spring.datasource.username"));
+            replica.setPassword(StringUtils.hasText(node.getPassword())
+                    ? node.getPassword() : environment.getProperty("spring.datasource.password"));
+            replica.setMaximumPoolSize(properties.getMaximumPoolSize());
+            replica.setReadOnly(true);
+            // Fail over to another replica or the primary quickly rather than wait for an unreachable one
+            replica.setConnectionTimeout(Math.max(250, properties.getHealthCheckTimeout().toMillis()));
+            replicas.put(node.getUrl(),
+                    limiter.isEnabled() ? limit(replica, replica.getPoolName(), limiter) : replica);
+        }
+        log.info("Routing read-only transactions to {} read replicas", replicas.size());
+        return new ReadReplicaRoutingDataSource(primary, replicas,
+                properties.getHealthCheckInterval(), properties.getHealthCheckTimeout());
+    }
+}
@@ -0,0 +1,23 @@
+package com.origin.urlshortener.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Connection concurrency limiter, meant to pair with virtual threads (shortener.datasource.limiter.*)
+ */
+@Data
+@ConfigurationProperties(prefix = "shortener.datasource.limiter")
+public class DataSourceLimiterProperties {
+    private boolean enabled = false;
+
+    // Connections handed out at once; 0 uses the connection pool's maximum size
+    private int maxConcurrent = 0;
+
+    // Threads allowed to queue for a connection before requests are rejected outright
+    private int maxWaiting = 1000;
+
+    private Duration acquireTimeout = Duration.ofSeconds(5);
+}
@@ -0,0 +1,40 @@
+package com.origin.urlshortener.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read replicas for read-only transactions (shortener.datasource.replicas.*)
+ */
+@Data
+@ConfigurationProperties(prefix = "shortener.datasource.replicas")
+public class DataSourceReplicaProperties {
+    private boolean enabled = false;
+
+    private List<Node> nodes = new ArrayList<>();
+
+    // Codes created more recently than this are looked up on the primary, which already has them; the window is
+    // widened by the ID pool's max-age and the write-behind flush interval, as a code's ID predates its insert
+    private Duration replicationLag = Duration.ofSeconds(5);
+
+    private Duration healthCheckInterval = Duration.ofSeconds(5);
+
+    // Connection validation timeout; a replica failing it takes no reads until it passes again
+    private Duration healthCheckTimeout = Duration.ofSeconds(1);
+
+    // Connection pool size per replica
+    private int maximumPoolSize = 10;
+
+    @Data
+    public static class Node {
+        private String url;
+
+        // Blank uses spring.datasource.username / password
+        private String username;
+        private String password;
+    }
+}
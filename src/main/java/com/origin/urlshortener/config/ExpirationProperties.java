@@ -0,0 +1,27 @@
+package com.origin.urlshortener.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Background deletion of expired links (shortener.expiration.*)
+ */
+@Data
+@ConfigurationProperties(prefix = "shortener.expiration")
+public class ExpirationProperties {
+    private boolean enabled = true;
+
+    // Delay between the end of one sweep and the start of the next
+    private Duration sweepInterval = Duration.ofMinutes(1);
+
+    // Rows deleted per transaction
+    private int batchSize = 500;
+
+    // Pause between batches, leaving the database to other work while a large backlog is purged
+    private Duration batchPause = Duration.ofMillis(100);
+
+    // Upper bound on batches per sweep; the rest is left for the next one
+    private int maxBatchesPerSweep = 100;
+}
@@ -0,0 +1,23 @@
+package com.origin.urlshortener.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for the negative lookup filter over issued short codes (shortener.filter.*)
+ */
+@Data
+@ConfigurationProperties(prefix = "shortener.filter")
+public class FilterProperties {
+    private boolean enabled = true;
+
+    // Number of short codes the filter is sized for; the false positive rate degrades beyond it
+    private long expectedInsertions = 1_000_000;
+
+    private double falsePositiveRate = 0.01;
+
+    // Tolerated clock difference between nodes when judging a code's embedded creation time
+    private Duration maxClockSkew = Duration.ofMinutes(1);
+}
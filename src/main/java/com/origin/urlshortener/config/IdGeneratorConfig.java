@@ -0,0 +1,24 @@
+package com.origin.urlshortener.config;
+
+import com.origin.urlshortener.service.WorkerIdLeaseService;
+import com.origin.urlshortener.util.SnowflakeIdGenerator;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class IdGeneratorConfig {
+
+    @Bean
+    public SnowflakeIdGenerator snowflakeIdGenerator(IdGeneratorProperties properties,
+                                                     ObjectProvider<WorkerIdLeaseService> workerIdLeaseService) {
+        WorkerIdLeaseService leaseService = workerIdLeaseService.getIfAvailable();
+        if (leaseService == null) {
+            return new SnowflakeIdGenerator(properties.getDatacenterId(), properties.getMachineId());
+        }
+
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(properties.getDatacenterId(), leaseService.acquireMachineId());
+        leaseService.bind(generator);
+        return generator;
+    }
+}
@@ -0,0 +1,54 @@
+package com.origin.urlshortener.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Snowflake worker identity (shortener.id-generator.*)
+ *
+ * Every running instance must use a distinct datacenter/machine pair. Either configure the pair per
+ * instance, or enable leasing to have each instance claim a free machine ID within its datacenter.
+ */
+@Data
+@ConfigurationProperties(prefix = "shortener.id-generator")
+public class IdGeneratorProperties {
+    private long datacenterId = 1;
+
+    // Ignored when leasing is enabled
+    private long machineId = 1;
+
+    private Lease lease = new Lease();
+
+    private Pool pool = new Pool();
+
+    @Data
+    public static class Lease {
+        private boolean enabled = false;
+
+        // A lease not renewed within this time can be claimed by another instance
+        private Duration ttl = Duration.ofSeconds(30);
+
+        // Must be comfortably shorter than the ttl
+        private Duration heartbeatInterval = Duration.ofSeconds(10);
+
+        // Identifies this instance in the lease table, defaults to hostname plus a random suffix
+        private String owner;
+    }
+
+    @Data
+    public static class Pool {
+        // Pre-generate IDs on a background thread so create requests only dequeue one
+        private boolean enabled = true;
+
+        private int capacity = 8192;
+
+        // Refill to capacity once the pool drops below this
+        private int lowWatermark = 2048;
+
+        // Pooled IDs older than this are discarded. Must stay below shortener.filter.max-clock-skew, which is how
+        // far behind its commit time another node's filter allows a code's embedded timestamp to be.
+        private Duration maxAge = Duration.ofSeconds(10);
+    }
+}
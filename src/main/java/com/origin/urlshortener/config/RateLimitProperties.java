@@ -0,0 +1,31 @@
+package com.origin.urlshortener.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Rate limits and admission control for the create endpoints (shortener.rate-limit.*)
+ */
+@Data
+@ConfigurationProperties(prefix = "shortener.rate-limit")
+public class RateLimitProperties {
+    private boolean enabled = false;
+
+    // Create requests per second and burst size for each client (0 disables the per-client limit)
+    private double clientRate = 10;
+    private int clientBurst = 20;
+
+    // The same across all clients of this instance (0 disables the global limit)
+    private double globalRate = 500;
+    private int globalBurst = 1000;
+
+    // Clients tracked at once; idle clients are forgotten once their bucket would be full again
+    private long maxClients = 100_000;
+
+    // Header carrying the client address when behind a trusted proxy (e.g. X-Forwarded-For), otherwise the peer address
+    private String clientAddressHeader = "";
+
+    // Create requests in progress at once before further ones are shed with 503, keeping database connections
+    // free for redirects (0 = half of spring.datasource.hikari.maximum-pool-size)
+    private int maxConcurrentCreates = 0;
+}
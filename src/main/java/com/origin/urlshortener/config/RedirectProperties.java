@@ -0,0 +1,17 @@
+package com.origin.urlshortener.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Redirect response settings (shortener.redirect.*)
+ */
+@Data
+@ConfigurationProperties(prefix = "shortener.redirect")
+public class RedirectProperties {
+    // 301, 302, 303, 307 or 308
+    private int status = 302;
+
+    // Cache-Control header sent with redirects, e.g. "public, max-age=86400" for permanent redirects; empty sends none
+    private String cacheControl = "";
+}
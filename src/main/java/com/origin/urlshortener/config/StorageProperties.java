@@ -0,0 +1,140 @@
+package com.origin.urlshortener.config;
+
+import lombok.Data;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * How mappings are stored and looked up (shortener.storage.*)
+ */
+@Data
+@ConfigurationProperties(prefix = "shortener.storage")
+public class StorageProperties implements InitializingBean {
+    private Engine engine = Engine.JPA;
+
+    // JPA engine only
+    private LookupMode lookupMode = LookupMode.SHORT_CODE;
+
+    private Mmap mmap = new Mmap();
+
+    private WriteBehind writeBehind = new WriteBehind();
+
+    private Sharded sharded = new Sharded();
+
+    // Write-behind stages mappings in front of url_mappings through JPA; other engines would fail on a missing bean
+    @Override
+    public void afterPropertiesSet() {
+        if (writeBehind.isEnabled() && engine != Engine.JPA) {
+            throw new IllegalStateException("shortener.storage.write-behind.enabled requires "
+                    + "shortener.storage.engine=jpa, but the engine is " + engine.name().toLowerCase());
+        }
+    }
+
+    public enum Engine {
+        // url_mappings through JPA
+        JPA,
+        // Embedded append-only log with memory-mapped indexes
+        MMAP,
+        // url_mappings tables in several databases, the shard computed from the short code
+        SHARDED
+    }
+
+    public enum ShardingStrategy {
+        // Consistent hash ring over the short code's Snowflake ID
+        HASH,
+        // Creation time buckets from the Snowflake timestamp bits, each shard holding codes from its start time on
+        TIME
+    }
+
+    public enum ShardState {
+        // Owns mappings before and after the resharding in progress, if any
+        ACTIVE,
+        // Added: owns mappings under the new layout, and is filled by the rebalancer
+        JOINING,
+        // Being removed: owns nothing under the new layout, and is emptied by the rebalancer
+        DRAINING
+    }
+
+    public enum LookupMode {
+        // Look mappings up through the unique short_code index
+        SHORT_CODE,
+        // Decode the short code to its Snowflake ID and fetch by primary key
+        PRIMARY_KEY
+    }
+
+    @Data
+    public static class Mmap {
+        // Holds mappings.log and the ids.idx/hashes.idx index files
+        private String directory = "data";
+
+        // Initial slots per index, a power of two; indexes double when 75% full
+        private int indexCapacity = 1 << 20;
+
+        // Force every append to disk; otherwise the OS writes pages back and a clean shutdown forces them
+        private boolean fsync = false;
+    }
+
+    @Data
+    public static class WriteBehind {
+        // JPA engine only: stage new mappings in memory and a local log, and insert them in background batches
+        private boolean enabled = false;
+
+        // Holds the write-behind-<n>.log files
+        private String directory = "data/write-behind";
+
+        // Force every append to disk; otherwise staged mappings survive a process crash but not a power loss
+        private boolean fsync = false;
+
+        // How often staged mappings are inserted into url_mappings
+        private Duration flushInterval = Duration.ofMillis(100);
+
+        // Rows per insert transaction; reaching it also triggers a flush before the interval
+        private int batchSize = 500;
+
+        // Staged mappings beyond which creates are shed with 503 until the flusher catches up
+        private int maxPending = 100_000;
+    }
+
+    @Data
+    public static class Sharded {
+        private ShardingStrategy strategy = ShardingStrategy.HASH;
+
+        private List<Shard> shards = new ArrayList<>();
+
+        // HASH: points per shard on the hash ring; more spread mappings more evenly
+        private int virtualNodes = 128;
+
+        // Connection pool size per shard
+        private int maximumPoolSize = 10;
+
+        // Creates url_mappings in each shard if missing
+        private String schema = "classpath:db/url-mappings-shard.sql";
+
+        // Moves mappings to their new shard while resharding; safe to run on several nodes at once
+        private boolean rebalance = true;
+
+        // Mappings scanned per rebalancer batch, and the pause between batches
+        private int rebalanceBatchSize = 500;
+        private Duration rebalancePause = Duration.ofMillis(100);
+    }
+
+    @Data
+    public static class Shard {
+        // Identifies the shard on the hash ring; renaming a shard moves its mappings
+        private String name;
+
+        private String url;
+        private String username;
+        private String password;
+
+        private ShardState state = ShardState.ACTIVE;
+
+        // TIME: creation time of the first mappings this shard holds; unset for the oldest shard
+        private Instant from;
+    }
+}
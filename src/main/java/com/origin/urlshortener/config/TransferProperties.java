@@ -0,0 +1,17 @@
+package com.origin.urlshortener.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Export/import of all mappings (shortener.transfer.*)
+ */
+@Data
+@ConfigurationProperties(prefix = "shortener.transfer")
+public class TransferProperties {
+    // The endpoints are unauthenticated, enable them only where they are not publicly reachable
+    private boolean enabled = false;
+
+    // Mappings per insert batch on import
+    private int batchSize = 1000;
+}
@@ -0,0 +1,60 @@
+package com.origin.urlshortener.controller;
+
+import com.origin.urlshortener.dto.ImportResult;
+import com.origin.urlshortener.service.MappingTransferService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Snapshot and backfill of all mappings as NDJSON. Only registered when shortener.transfer.enabled is set.
+ */
+@RestController
+@RequestMapping("/api/v1/mappings")
+@ConditionalOnProperty(prefix = "shortener.transfer", name = "enabled", havingValue = "true")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class MappingTransferController {
+    private final MappingTransferService mappingTransferService;
+
+    public MappingTransferController(MappingTransferService mappingTransferService) {
+        this.mappingTransferService = mappingTransferService;
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportMappings(@RequestParam(defaultValue = "false") boolean gzip) {
+        StreamingResponseBody body = outputStream -> mappingTransferService.exportTo(outputStream, gzip);
+        if (!gzip) {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(UrlShortenerController.APPLICATION_NDJSON_VALUE))
+                    .body(body);
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/gzip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename("url-mappings.ndjson.gz").build().toString())
+                .body(body);
+    }
+
+    /**
+     * Accepts the export format, plain or gzipped. Mappings that already exist are skipped, so an import can be
+     * re-run after a failure.
+     */
+    @PostMapping("/import")
+    public ResponseEntity<ImportResult> importMappings(InputStream body) throws IOException {
+        ImportResult result = mappingTransferService.importFrom(body);
+        return new ResponseEntity<>(result, result.getMessage() == null ? HttpStatus.OK : HttpStatus.BAD_REQUEST);
+    }
+}
@@ -1,35 +1,181 @@
 package com.origin.urlshortener.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.origin.urlshortener.config.BulkProperties;
+import com.origin.urlshortener.config.RedirectProperties;
+import com.origin.urlshortener.dto.BulkShortenResult;
+import com.origin.urlshortener.metrics.ShortenerMetrics;
 import com.origin.urlshortener.model.UrlMapping;
+import com.origin.urlshortener.ratelimit.CreateAdmission;
+import com.origin.urlshortener.service.ClickTracker;
 import com.origin.urlshortener.service.UrlShortenerService;
+import com.origin.urlshortener.util.RedirectLocation;
 import com.origin.urlshortener.dto.UrlRequest;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.servlet.view.RedirectView;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 @RestController
 @RequestMapping("/api/v1/shortener")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class UrlShortenerController {
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
     private final UrlShortenerService urlShortenerService;
+    private final ObjectMapper objectMapper;
+    private final BulkProperties bulkProperties;
+    private final ClickTracker clickTracker;
+    private final ShortenerMetrics metrics;
+    private final CreateAdmission createAdmission;
+    private final int redirectStatus;
+    private final String redirectCacheControl;
 
-    public UrlShortenerController(UrlShortenerService urlShortenerService) {
+    public UrlShortenerController(UrlShortenerService urlShortenerService,
+                                  ObjectMapper objectMapper,
+                                  BulkProperties bulkProperties,
+                                  ClickTracker clickTracker,
+                                  ShortenerMetrics metrics,
+                                  RedirectProperties redirectProperties,
+                                  CreateAdmission createAdmission) {
         this.urlShortenerService = urlShortenerService;
+        this.objectMapper = objectMapper;
+        this.bulkProperties = bulkProperties;
+        this.clickTracker = clickTracker;
+        this.metrics = metrics;
+        this.createAdmission = createAdmission;
+        HttpStatus status = HttpStatus.resolve(redirectProperties.getStatus());
+        if (status == null || !status.is3xxRedirection() || status == HttpStatus.NOT_MODIFIED) {
+            throw new IllegalArgumentException("Invalid redirect status: " + redirectProperties.getStatus());
+        }
+        this.redirectStatus = status.value();
+        String cacheControl = redirectProperties.getCacheControl();
+        this.redirectCacheControl = cacheControl == null || cacheControl.isBlank() ? null : cacheControl;
     }
 
     @PostMapping
-    public ResponseEntity<UrlMapping> shortenUrl(@Valid @RequestBody UrlRequest request) {
-        UrlMapping urlMapping = urlShortenerService.shortenUrl(request.getUrl());
-        return new ResponseEntity<>(urlMapping, HttpStatus.CREATED);
+    @SuppressWarnings("try") // the permit is only held for the duration of the create
+    public ResponseEntity<UrlMapping> shortenUrl(@Valid @RequestBody UrlRequest request,
+                                                 HttpServletRequest servletRequest) {
+        long start = System.nanoTime();
+        try (CreateAdmission.Permit ignored = createAdmission.admit(servletRequest)) {
+            UrlMapping urlMapping = urlShortenerService.shortenUrl(
+                    request.getUrl(), request.getExpiresAt(), request.getMaxClicks());
+            return new ResponseEntity<>(urlMapping, HttpStatus.CREATED);
+        } finally {
+            metrics.recordCreate(start);
+        }
+    }
+
+    /**
+     * Bulk shorten. Accepts a JSON array or NDJSON stream of {"url": ...} objects and streams one NDJSON result
+     * per URL back, chunk by chunk, so neither the request nor the response is held in memory as a whole.
+     * Admitted as one create request; its create slot is held until the response has been streamed. The slot is also
+     * released when the async request completes, times out or fails, in case the body never gets to run.
+     */
+    @PostMapping(value = "/batch",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE},
+            produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> shortenUrls(InputStream body, HttpServletRequest servletRequest) {
+        CreateAdmission.Permit permit = createAdmission.admit(servletRequest);
+        WebAsyncUtils.getAsyncManager(servletRequest).registerCallableInterceptor(permit,
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+                        permit.close();
+                    }
+                });
+        StreamingResponseBody results = outputStream -> {
+            try (permit) {
+                shortenStream(body, outputStream);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .body(results);
+    }
+
+    private void shortenStream(InputStream body, OutputStream outputStream) throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(BulkShortenResult.class);
+        List<String> chunk = new ArrayList<>(bulkProperties.getChunkSize());
+        long index = 0;
+        try (MappingIterator<UrlRequest> requests = objectMapper.readerFor(UrlRequest.class).readValues(body)) {
+            while (requests.hasNextValue()) {
+                chunk.add(requests.nextValue().getUrl());
+                if (chunk.size() == bulkProperties.getChunkSize()) {
+                    index = writeChunk(chunk, index, writer, outputStream);
+                }
+            }
+        } catch (JsonProcessingException e) {
+            // Shorten what was read so far, then report where the body became unreadable
+            index = writeChunk(chunk, index, writer, outputStream);
+            BulkShortenResult error = new BulkShortenResult();
+            error.setIndex(index);
+            error.setStatus(HttpStatus.BAD_REQUEST.value());
+            error.setMessage("Malformed request body: " + e.getOriginalMessage());
+            writeLine(writer, error, outputStream);
+            return;
+        }
+        writeChunk(chunk, index, writer, outputStream);
     }
 
+    private long writeChunk(List<String> chunk, long firstIndex, ObjectWriter writer, OutputStream outputStream)
+            throws IOException {
+        if (chunk.isEmpty()) {
+            return firstIndex;
+        }
+        for (BulkShortenResult result : urlShortenerService.shortenUrls(chunk, firstIndex)) {
+            writeLine(writer, result, outputStream);
+        }
+        outputStream.flush();
+        long nextIndex = firstIndex + chunk.size();
+        chunk.clear();
+        return nextIndex;
+    }
+
+    private static void writeLine(ObjectWriter writer, BulkShortenResult result, OutputStream outputStream)
+            throws IOException {
+        outputStream.write(writer.writeValueAsBytes(result));
+        outputStream.write('\n');
+    }
+
+    /**
+     * Writes the redirect straight to the response: status, Location and the configured Cache-Control, no body.
+     * Stored URLs are already absolute, so none of RedirectView's URL handling or view rendering is needed.
+     */
     @GetMapping("/{shortCode}")
-    public RedirectView redirectToOriginalUrl(@PathVariable String shortCode) {
-        UrlMapping urlMapping = urlShortenerService.getOriginalUrl(shortCode);
-        RedirectView redirectView = new RedirectView();
-        redirectView.setUrl(urlMapping.getOriginalUrl());
-        return redirectView;
+    public void redirectToOriginalUrl(@PathVariable String shortCode, HttpServletResponse response) {
+        long start = System.nanoTime();
+        try {
+            UrlMapping urlMapping = urlShortenerService.getOriginalUrl(shortCode);
+            clickTracker.record(urlMapping.getShortCode());
+            response.setStatus(redirectStatus);
+            response.setHeader(HttpHeaders.LOCATION, RedirectLocation.of(urlMapping.getOriginalUrl()));
+            if (redirectCacheControl != null) {
+                response.setHeader(HttpHeaders.CACHE_CONTROL, redirectCacheControl);
+            }
+        } finally {
+            metrics.recordRedirect(start);
+        }
     }
 
     @GetMapping("/info/{shortCode}")
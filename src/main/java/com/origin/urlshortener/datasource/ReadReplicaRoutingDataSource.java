@@ -0,0 +1,191 @@
+package com.origin.urlshortener.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Sends connections for read-only transactions to read replicas and everything else to the primary.
+ *
+ * Replicas are used round-robin. A replica is taken out of rotation when a connection to it fails or a periodic
+ * validation check does, and put back once the check passes again; with no healthy replica, reads go to the primary.
+ * Code that must see its own or very recent writes runs inside {@link #onPrimary}.
+ *
+ * Connections are lazy: a transaction manager asks for its connection before the transaction is marked read-only,
+ * so the target is chosen when the first statement runs.
+ */
+@Slf4j
+public class ReadReplicaRoutingDataSource extends LazyConnectionDataSourceProxy {
+    private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = new ThreadLocal<>();
+
+    private final Router router;
+    private final int healthCheckTimeoutSeconds;
+    private final ScheduledExecutorService healthChecker;
+
+    /**
+     * @param replicas replica data sources by display name
+     */
+    public ReadReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas,
+                                        Duration healthCheckInterval, Duration healthCheckTimeout) {
+        this(new Router(primary, replicas), healthCheckInterval, healthCheckTimeout);
+    }
+
+    private ReadReplicaRoutingDataSource(Router router, Duration healthCheckInterval, Duration healthCheckTimeout) {
+        super(router);
+        this.router = router;
+        // Connection.isValid takes whole seconds, 0 meaning no timeout
+        int timeoutSeconds = (int) Math.max(1, healthCheckTimeout.toSeconds());
+        this.healthCheckTimeoutSeconds = timeoutSeconds;
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = healthCheckInterval.toMillis();
+        // Static, so the checker never sees this instance before the constructor has finished
+        healthChecker.scheduleWithFixedDelay(() -> checkHealth(router.replicas, timeoutSeconds),
+                0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs the work with every connection it opens taken from the primary, including those of read-only
+     * transactions. A transaction already in progress keeps its connection.
+     */
+    public static <T> T onPrimary(Supplier<T> work) {
+        if (PRIMARY_REQUIRED.get() != null) {
+            return work.get();
+        }
+        PRIMARY_REQUIRED.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            PRIMARY_REQUIRED.remove();
+        }
+    }
+
+    public int healthyReplicas() {
+        int healthy = 0;
+        for (Replica replica : router.replicas) {
+            if (replica.healthy) {
+                healthy++;
+            }
+        }
+        return healthy;
+    }
+
+    void checkHealth() {
+        checkHealth(router.replicas, healthCheckTimeoutSeconds);
+    }
+
+    private static void checkHealth(List<Replica> replicas, int timeoutSeconds) {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection()) {
+                if (connection.isValid(timeoutSeconds)) {
+                    replica.up();
+                } else {
+                    replica.down("connection validation failed");
+                }
+            } catch (SQLException | RuntimeException e) {
+                replica.down(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stops health checks and closes the replica pools. The primary belongs to the caller.
+     */
+    public void close() {
+        healthChecker.shutdownNow();
+        for (Replica replica : router.replicas) {
+            try {
+                if (replica.dataSource.isWrapperFor(AutoCloseable.class)) {
+                    replica.dataSource.unwrap(AutoCloseable.class).close();
+                }
+            } catch (Exception e) {
+                log.warn("Failed to close read replica {}: {}", replica.name, e.getMessage());
+            }
+        }
+    }
+
+    private static class Router extends AbstractDataSource {
+        private final DataSource primary;
+        private final List<Replica> replicas = new ArrayList<>();
+        private final AtomicInteger next = new AtomicInteger();
+
+        Router(DataSource primary, Map<String, DataSource> replicas) {
+            this.primary = primary;
+            replicas.forEach((name, dataSource) -> this.replicas.add(new Replica(name, dataSource)));
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (replicas.isEmpty() || PRIMARY_REQUIRED.get() != null
+                    || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+                return primary.getConnection();
+            }
+            return readConnection();
+        }
+
+        // Explicit credentials are the primary's
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return primary.getConnection(username, password);
+        }
+
+        private Connection readConnection() throws SQLException {
+            int count = replicas.size();
+            int first = Math.floorMod(next.getAndIncrement(), count);
+            for (int i = 0; i < count; i++) {
+                Replica replica = replicas.get((first + i) % count);
+                if (!replica.healthy) {
+                    continue;
+                }
+                try {
+                    return replica.dataSource.getConnection();
+                } catch (SQLException e) {
+                    replica.down(e.getMessage());
+                }
+            }
+            return primary.getConnection();
+        }
+    }
+
+    private static class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean healthy = true;
+
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        void up() {
+            if (!healthy) {
+                healthy = true;
+                log.info("Read replica {} is back in rotation", name);
+            }
+        }
+
+        void down(String reason) {
+            if (healthy) {
+                healthy = false;
+                log.warn("Read replica {} taken out of rotation: {}", name, reason);
+            }
+        }
+    }
+}
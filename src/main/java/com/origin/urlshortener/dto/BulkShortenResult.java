@@ -0,0 +1,24 @@
+package com.origin.urlshortener.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Outcome for one URL of a bulk shorten request, written as one NDJSON line.
+ * status is 201 for a new mapping, 200 for an existing one and 400 for an invalid URL.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkShortenResult {
+    private long index;
+    private int status;
+    private String originalUrl;
+    private String shortCode;
+    private LocalDateTime createdAt;
+    private String message;
+}
@@ -0,0 +1,21 @@
+package com.origin.urlshortener.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Summary of a mapping import. skipped counts mappings that conflicted with stored ones; message is set when the
+ * input became unreadable, in which case the mappings read before that point have been imported.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ImportResult {
+    private long read;
+    private long imported;
+    private long skipped;
+    private String message;
+}
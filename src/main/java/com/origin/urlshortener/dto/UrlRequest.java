@@ -1,10 +1,21 @@
 package com.origin.urlshortener.dto;
 
+import jakarta.validation.constraints.Future;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
 import lombok.Data;
 
+import java.time.LocalDateTime;
+
 @Data
 public class UrlRequest {
     @NotBlank(message = "URL cannot be empty")
     private String url;
-} 
\ No newline at end of file
+
+    // Optional limits, only honoured by POST /api/v1/shortener
+    @Future(message = "Expiry time must be in the future")
+    private LocalDateTime expiresAt;
+
+    @Positive(message = "Maximum clicks must be positive")
+    private Long maxClicks;
+}
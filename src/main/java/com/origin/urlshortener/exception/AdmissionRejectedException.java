@@ -0,0 +1,26 @@
+package com.origin.urlshortener.exception;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Thrown when a create request is turned away by rate limiting (429) or shed under overload (503).
+ * Carries the Retry-After delay. Expected under load, so no stack trace is captured.
+ */
+public class AdmissionRejectedException extends RuntimeException {
+    private final HttpStatus status;
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException(HttpStatus status, String message, long retryAfterSeconds) {
+        super(message, null, false, false);
+        this.status = status;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
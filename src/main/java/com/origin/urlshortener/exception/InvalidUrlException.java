@@ -8,4 +8,16 @@ public class InvalidUrlException extends RuntimeException {
     public InvalidUrlException(String message) {
         super(message);
     }
-} 
\ No newline at end of file
+
+    private InvalidUrlException(String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+    }
+
+    /**
+     * @return an exception without stack trace or suppressed exceptions, safe to share and throw repeatedly for
+     *         rejections that carry no per-request detail
+     */
+    public static InvalidUrlException preallocated(String message) {
+        return new InvalidUrlException(message, false);
+    }
+}
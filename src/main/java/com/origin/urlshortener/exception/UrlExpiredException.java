@@ -0,0 +1,15 @@
+package com.origin.urlshortener.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown for links past their expiry time or click limit that have not been swept yet. Like
+ * UrlNotFoundException it is an expected outcome on the redirect path and skips stack trace capture.
+ */
+@ResponseStatus(HttpStatus.GONE)
+public class UrlExpiredException extends RuntimeException {
+    public UrlExpiredException(String message) {
+        super(message, null, false, false);
+    }
+}
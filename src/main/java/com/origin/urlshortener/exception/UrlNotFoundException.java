@@ -3,9 +3,13 @@ package com.origin.urlshortener.exception;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
+/**
+ * Thrown for unknown short codes. This is an expected outcome on the redirect path (typos, scanners),
+ * so the exception skips stack trace capture and suppression tracking.
+ */
 @ResponseStatus(HttpStatus.NOT_FOUND)
 public class UrlNotFoundException extends RuntimeException {
     public UrlNotFoundException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 } 
\ No newline at end of file
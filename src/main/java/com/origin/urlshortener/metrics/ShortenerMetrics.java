@@ -0,0 +1,188 @@
+package com.origin.urlshortener.metrics;
+
+import com.origin.urlshortener.cache.ShortCodeCache;
+import com.origin.urlshortener.cache.UrlMappingCache;
+import com.origin.urlshortener.service.ClickTracker;
+import com.origin.urlshortener.service.ShortCodePool;
+import com.origin.urlshortener.util.SnowflakeIdGenerator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timers and counters for the shorten and redirect paths.
+ *
+ * Every meter is registered up front and recorded with a precomputed duration, so recording on a request path is
+ * a few atomic updates with no tag lookup, lambda or Timer.Sample allocation. Counters owned by other components
+ * (ID generator and pool, cache tiers, click tracker) are read lazily at scrape time.
+ */
+@Component
+public class ShortenerMetrics {
+    private final Timer redirectTimer;
+    private final Timer createTimer;
+    private final Timer lookupTimer;
+    private final Timer shortenTimer;
+    private final Counter notFoundFiltered;
+    private final Counter notFoundMissing;
+    private final Counter expiredLookups;
+    private final Counter expiredDeleted;
+    private final Counter invalidUrls;
+    private final Counter clientRateLimited;
+    private final Counter globalRateLimited;
+    private final Counter overloadShed;
+    private final Counter existingMappings;
+    private final Counter newMappings;
+    private final Counter coalescedMappings;
+
+    public ShortenerMetrics(MeterRegistry registry,
+                            SnowflakeIdGenerator snowflakeIdGenerator,
+                            UrlMappingCache urlMappingCache,
+                            ClickTracker clickTracker,
+                            ShortCodePool shortCodePool,
+                            ShortCodeCache shortCodeCache) {
+        this.redirectTimer = timer(registry, "shortener.http.redirect", "GET /api/v1/shortener/{shortCode}");
+        this.createTimer = timer(registry, "shortener.http.create", "POST /api/v1/shortener");
+        this.lookupTimer = timer(registry, "shortener.lookup", "UrlShortenerService.getOriginalUrl");
+        this.shortenTimer = timer(registry, "shortener.shorten", "UrlShortenerService.shortenUrl, including commit");
+
+        this.notFoundFiltered = Counter.builder("shortener.lookup.not.found")
+                .description("Lookups of unknown short codes")
+                .tag("source", "filter")
+                .register(registry);
+        this.notFoundMissing = Counter.builder("shortener.lookup.not.found")
+                .description("Lookups of unknown short codes")
+                .tag("source", "database")
+                .register(registry);
+        this.expiredLookups = Counter.builder("shortener.lookup.expired")
+                .description("Lookups of links past their expiry time or click limit")
+                .register(registry);
+        this.expiredDeleted = Counter.builder("shortener.expiration.deleted")
+                .description("Expired mappings deleted by the sweeper")
+                .register(registry);
+        this.invalidUrls = Counter.builder("shortener.shorten.invalid")
+                .description("URLs rejected by validation")
+                .register(registry);
+        this.clientRateLimited = rejections(registry, "client");
+        this.globalRateLimited = rejections(registry, "global");
+        this.overloadShed = rejections(registry, "overload");
+        this.existingMappings = Counter.builder("shortener.shorten.results")
+                .description("Shortened URLs by whether an existing mapping was reused")
+                .tag("outcome", "existing")
+                .register(registry);
+        this.newMappings = Counter.builder("shortener.shorten.results")
+                .description("Shortened URLs by whether an existing mapping was reused")
+                .tag("outcome", "created")
+                .register(registry);
+        this.coalescedMappings = Counter.builder("shortener.shorten.results")
+                .description("Shortened URLs by whether an existing mapping was reused")
+                .tag("outcome", "coalesced")
+                .register(registry);
+
+        FunctionCounter.builder("shortener.id.sequence.overflows", snowflakeIdGenerator,
+                        SnowflakeIdGenerator::getSequenceOverflows)
+                .description("ID requests that waited for the next millisecond after the sequence ran out")
+                .register(registry);
+        FunctionCounter.builder("shortener.id.clock.backwards", snowflakeIdGenerator,
+                        SnowflakeIdGenerator::getClockBackwardsEvents)
+                .description("ID requests refused because the clock moved backwards")
+                .register(registry);
+        Gauge.builder("shortener.id.pool.size", shortCodePool, ShortCodePool::size)
+                .description("Pre-generated IDs waiting in the short code pool")
+                .register(registry);
+        FunctionCounter.builder("shortener.id.pool.misses", shortCodePool, ShortCodePool::misses)
+                .description("IDs generated on the request path because the pool was empty")
+                .register(registry);
+        FunctionCounter.builder("shortener.id.pool.discarded", shortCodePool, ShortCodePool::discarded)
+                .description("Pooled IDs discarded for exceeding the maximum age")
+                .register(registry);
+        FunctionCounter.builder("shortener.cache.requests", urlMappingCache, cache -> cache.stats().hitCount())
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("shortener.cache.requests", urlMappingCache, cache -> cache.stats().missCount())
+                .tag("result", "miss")
+                .register(registry);
+        Gauge.builder("shortener.cache.size", urlMappingCache, UrlMappingCache::size)
+                .register(registry);
+        FunctionCounter.builder("shortener.cache.shared.requests", shortCodeCache, cache -> cache.stats().hitCount())
+                .description("Shared cache tier lookups after an in-process cache miss")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("shortener.cache.shared.requests", shortCodeCache, cache -> cache.stats().missCount())
+                .description("Shared cache tier lookups after an in-process cache miss")
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("shortener.clicks.dropped", clickTracker, ClickTracker::droppedClicks)
+                .description("Clicks discarded because too many codes were waiting to be flushed")
+                .register(registry);
+        Gauge.builder("shortener.clicks.pending", clickTracker, ClickTracker::pendingCodes)
+                .description("Short codes with click counts waiting to be flushed")
+                .register(registry);
+    }
+
+    public void recordRedirect(long startNanos) {
+        redirectTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordCreate(long startNanos) {
+        createTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordLookup(long startNanos) {
+        lookupTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordShorten(long startNanos) {
+        shortenTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void notFound(boolean filtered) {
+        (filtered ? notFoundFiltered : notFoundMissing).increment();
+    }
+
+    public void expired() {
+        expiredLookups.increment();
+    }
+
+    public void expiredDeleted(int count) {
+        expiredDeleted.increment(count);
+    }
+
+    public void invalidUrl() {
+        invalidUrls.increment();
+    }
+
+    public void rateLimited(boolean global) {
+        (global ? globalRateLimited : clientRateLimited).increment();
+    }
+
+    public void overloadShed() {
+        overloadShed.increment();
+    }
+
+    public void shortened(boolean existing) {
+        (existing ? existingMappings : newMappings).increment();
+    }
+
+    public void coalesced() {
+        coalescedMappings.increment();
+    }
+
+    private static Counter rejections(MeterRegistry registry, String reason) {
+        return Counter.builder("shortener.create.rejected")
+                .description("Create requests rejected by rate limiting or shed under overload")
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    private static Timer timer(MeterRegistry registry, String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
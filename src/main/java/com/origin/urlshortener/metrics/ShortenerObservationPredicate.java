@@ -0,0 +1,42 @@
+package com.origin.urlshortener.metrics;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationPredicate;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.server.observation.ServerRequestObservationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Skips Spring's generic http.server.requests observation for redirects and single creates.
+ *
+ * Those two endpoints are timed by ShortenerMetrics without per-request allocation, and the generic observation
+ * would add a tag set and timer lookup to every redirect. Every other endpoint keeps its standard HTTP metrics.
+ */
+@Component
+public class ShortenerObservationPredicate implements ObservationPredicate {
+    private static final String OBSERVATION_NAME = "http.server.requests";
+    private static final String SHORTENER_PATH = "/api/v1/shortener";
+
+    @Override
+    public boolean test(String name, Observation.Context context) {
+        if (!OBSERVATION_NAME.equals(name) || !(context instanceof ServerRequestObservationContext serverContext)) {
+            return true;
+        }
+        return !isTimedByShortenerMetrics(serverContext.getCarrier());
+    }
+
+    private static boolean isTimedByShortenerMetrics(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!path.startsWith(SHORTENER_PATH)) {
+            return false;
+        }
+        if (path.length() == SHORTENER_PATH.length()) {
+            return "POST".equals(request.getMethod());
+        }
+        // GET /api/v1/shortener/{shortCode}, but not /info/{shortCode} or /batch
+        return "GET".equals(request.getMethod())
+                && path.charAt(SHORTENER_PATH.length()) == '/'
+                && path.indexOf('/', SHORTENER_PATH.length() + 1) < 0
+                && path.length() > SHORTENER_PATH.length() + 1;
+    }
+}
@@ -1,27 +1,36 @@
 package com.origin.urlshortener.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Column;
 import jakarta.persistence.Index;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.ColumnDefault;
+import org.springframework.data.domain.Persistable;
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "url_mappings", indexes = {
-    @Index(name = "idx_short_code", columnList = "shortCode", unique = true)
+    @Index(name = "idx_short_code", columnList = "shortCode", unique = true),
+    @Index(name = "idx_url_hash", columnList = "urlHash", unique = true),
+    @Index(name = "idx_expires_at", columnList = "expiresAt")
 })
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-public class UrlMapping {
+public class UrlMapping implements Persistable<Long> {
+    // The Snowflake ID the short code was encoded from, assigned before insert (shortCode == Base62.encode(id))
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
     @Column(nullable = false, length = 2048)
@@ -30,6 +39,56 @@ public class UrlMapping {
     @Column(nullable = false, unique = true, length = 11)
     private String shortCode;
 
+    // SHA-256 of originalUrl, the indexed deduplication key.
+    // Null for mappings that do not take part in deduplication (e.g. after a digest collision).
+    @JsonIgnore
+    @Column(length = 32)
+    private byte[] urlHash;
+
     @Column(nullable = false)
     private LocalDateTime createdAt;
-} 
\ No newline at end of file
+
+    // Maintained asynchronously by ClickTracker, so it can lag behind the live count
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long clickCount;
+
+    private LocalDateTime lastAccessedAt;
+
+    // Optional limits. Past expiresAt the link answers 410 Gone until ExpirationSweeper deletes the row;
+    // reaching maxClicks sets expiresAt when the click counts are flushed.
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private LocalDateTime expiresAt;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long maxClicks;
+
+    // Lets save() persist new mappings directly instead of merging, which would select by the assigned id first
+    @Transient
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private boolean persisted;
+
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @JsonIgnore
+    public boolean hasLimits() {
+        return expiresAt != null || maxClicks != null;
+    }
+
+    @JsonIgnore
+    public boolean isExpiredAt(LocalDateTime now) {
+        return expiresAt != null && !now.isBefore(expiresAt);
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        this.persisted = true;
+    }
+}
@@ -0,0 +1,29 @@
+package com.origin.urlshortener.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.Instant;
+
+/**
+ * Lease on a Snowflake worker ID, where workerId = (datacenterId << 5) | machineId.
+ */
+@Entity
+@Table(name = "worker_id_leases")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkerIdLease {
+    @Id
+    private Integer workerId;
+
+    @Column(length = 255)
+    private String owner;
+
+    @Column(nullable = false)
+    private Instant expiresAt;
+}
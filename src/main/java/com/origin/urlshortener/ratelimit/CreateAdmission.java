@@ -0,0 +1,136 @@
+package com.origin.urlshortener.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.origin.urlshortener.config.RateLimitProperties;
+import com.origin.urlshortener.exception.AdmissionRejectedException;
+import com.origin.urlshortener.metrics.ShortenerMetrics;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Admission control for the create endpoints.
+ *
+ * A request must take a token from its client's bucket, then from the global bucket, and finally get one of
+ * max-concurrent-creates slots. Rate limits answer 429; a full set of slots means the instance is overloaded and
+ * the create is shed with 503 right away instead of queueing for a database connection, so redirects, which never
+ * pass through here, keep the remaining connections. Per-client buckets live in a bounded map and expire once idle
+ * long enough to have refilled, so forgetting one never grants a client more than a fresh bucket would.
+ */
+@Component
+public class CreateAdmission {
+    private static final Permit NO_PERMIT = new Permit(null);
+
+    private final RateLimitProperties properties;
+    private final ShortenerMetrics metrics;
+    private final Cache<String, TokenBucket> clientBuckets;
+    private final TokenBucket globalBucket;
+    private final Semaphore createSlots;
+
+    public CreateAdmission(RateLimitProperties properties, ShortenerMetrics metrics, Environment environment) {
+        this.properties = properties;
+        this.metrics = metrics;
+        if (properties.isEnabled() && properties.getClientRate() > 0) {
+            long idleNanos = new TokenBucket(properties.getClientRate(), properties.getClientBurst()).refillNanos();
+            this.clientBuckets = Caffeine.newBuilder()
+                    .maximumSize(properties.getMaxClients())
+                    .expireAfterAccess(Duration.ofNanos(idleNanos).plusSeconds(1))
+                    .build();
+        } else {
+            this.clientBuckets = null;
+        }
+        this.globalBucket = properties.isEnabled() && properties.getGlobalRate() > 0
+                ? new TokenBucket(properties.getGlobalRate(), properties.getGlobalBurst())
+                : null;
+        int slots = properties.getMaxConcurrentCreates();
+        if (slots <= 0) {
+            slots = Math.max(1, environment.getProperty(
+                    "spring.datasource.hikari.maximum-pool-size", Integer.class, 10) / 2);
+        }
+        this.createSlots = properties.isEnabled() ? new Semaphore(slots) : null;
+    }
+
+    /**
+     * Admits a create request or throws AdmissionRejectedException.
+     *
+     * @return the slot to close once the request has been handled
+     */
+    public Permit admit(HttpServletRequest request) {
+        if (!properties.isEnabled()) {
+            return NO_PERMIT;
+        }
+        if (clientBuckets != null) {
+            long wait = clientBuckets.get(clientOf(request), client ->
+                    new TokenBucket(properties.getClientRate(), properties.getClientBurst())).tryAcquire();
+            if (wait > 0) {
+                metrics.rateLimited(false);
+                throw new AdmissionRejectedException(HttpStatus.TOO_MANY_REQUESTS,
+                        "Rate limit exceeded, retry later", retryAfterSeconds(wait));
+            }
+        }
+        if (globalBucket != null) {
+            long wait = globalBucket.tryAcquire();
+            if (wait > 0) {
+                metrics.rateLimited(true);
+                throw new AdmissionRejectedException(HttpStatus.TOO_MANY_REQUESTS,
+                        "Service rate limit exceeded, retry later", retryAfterSeconds(wait));
+            }
+        }
+        if (!createSlots.tryAcquire()) {
+            metrics.overloadShed();
+            throw new AdmissionRejectedException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Too many requests in progress, retry later", 1);
+        }
+        return new Permit(createSlots);
+    }
+
+    /**
+     * @return create slots currently free
+     */
+    public int availableSlots() {
+        return createSlots != null ? createSlots.availablePermits() : 0;
+    }
+
+    private String clientOf(HttpServletRequest request) {
+        String header = properties.getClientAddressHeader();
+        if (header != null && !header.isEmpty()) {
+            String forwarded = request.getHeader(header);
+            if (forwarded != null && !forwarded.isBlank()) {
+                // The left-most entry is the original client
+                int comma = forwarded.indexOf(',');
+                return (comma < 0 ? forwarded : forwarded.substring(0, comma)).trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private static long retryAfterSeconds(long waitNanos) {
+        return Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * A create slot, released on close. Closing more than once, from any thread, releases it once.
+     */
+    public static final class Permit implements AutoCloseable {
+        private final Semaphore slots;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Semaphore slots) {
+            this.slots = slots;
+        }
+
+        @Override
+        public void close() {
+            if (slots != null && released.compareAndSet(false, true)) {
+                slots.release();
+            }
+        }
+    }
+}
@@ -1,13 +1,26 @@
 package com.origin.urlshortener.repository;
 
 import com.origin.urlshortener.model.UrlMapping;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UrlMappingRepository extends JpaRepository<UrlMapping, Long> {
+    @Transactional(readOnly = true)
     Optional<UrlMapping> findByShortCode(String shortCode);
-    Optional<UrlMapping> findByOriginalUrl(String originalUrl);
-    boolean existsByShortCode(String shortCode);
+    Optional<UrlMapping> findByUrlHash(byte[] urlHash);
+
+    List<UrlMapping> findByUrlHashIn(Collection<byte[]> urlHashes);
+    // Must be consumed inside a transaction and closed afterwards
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("select u.shortCode from UrlMapping u")
+    Stream<String> streamAllShortCodes();
 } 
\ No newline at end of file
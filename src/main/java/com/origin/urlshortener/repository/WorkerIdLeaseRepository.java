@@ -0,0 +1,27 @@
+package com.origin.urlshortener.repository;
+
+import com.origin.urlshortener.model.WorkerIdLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.Instant;
+
+@Repository
+public interface WorkerIdLeaseRepository extends JpaRepository<WorkerIdLease, Integer> {
+
+    // Claims the worker ID if its lease has expired or is already ours; returns the number of rows updated
+    @Transactional
+    @Modifying
+    @Query("update WorkerIdLease l set l.owner = :owner, l.expiresAt = :expiresAt " +
+           "where l.workerId = :workerId and (l.owner = :owner or l.expiresAt < :now)")
+    int tryAcquire(@Param("workerId") int workerId, @Param("owner") String owner,
+                   @Param("expiresAt") Instant expiresAt, @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("update WorkerIdLease l set l.expiresAt = :expiresAt where l.workerId = :workerId and l.owner = :owner")
+    int renew(@Param("workerId") int workerId, @Param("owner") String owner, @Param("expiresAt") Instant expiresAt);
+}
@@ -0,0 +1,216 @@
+package com.origin.urlshortener.service;
+
+import com.origin.urlshortener.config.ClickTrackingProperties;
+import com.origin.urlshortener.storage.ClickUpdate;
+import com.origin.urlshortener.storage.UrlMappingStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects per-code click counts and last access times off the redirect path.
+ *
+ * Redirects only bump a LongAdder in a concurrent map. A background flusher merges the counts and applies them
+ * through the storage engine as batched updates every flush interval. When too many distinct codes are pending,
+ * the flusher is woken early and new codes are dropped or sampled according to the overflow policy. Pending counts
+ * are flushed one last time when the application shuts down.
+ */
+@Slf4j
+@Component
+public class ClickTracker implements SmartLifecycle {
+    private final ClickTrackingProperties properties;
+    private final UrlMappingStore urlMappingStore;
+    private final ConcurrentHashMap<String, ClickCounter> pending = new ConcurrentHashMap<>();
+    // Counters removed from the map after going idle, given one more flush for clicks that raced the removal
+    private List<Map.Entry<String, ClickCounter>> retired = new ArrayList<>();
+    private final AtomicBoolean earlyFlushRequested = new AtomicBoolean();
+    private final LongAdder droppedClicks = new LongAdder();
+    private final Object flushLock = new Object();
+    private ScheduledExecutorService flusher;
+    private volatile boolean running;
+
+    public ClickTracker(ClickTrackingProperties properties, UrlMappingStore urlMappingStore) {
+        this.properties = properties;
+        this.urlMappingStore = urlMappingStore;
+    }
+
+    /**
+     * Records one redirect. Never blocks and never touches the database.
+     */
+    public void record(String shortCode) {
+        if (!running) {
+            return;
+        }
+        ClickCounter counter = pending.get(shortCode);
+        long weight = 1;
+        if (counter == null) {
+            if (pending.size() >= properties.getMaxPending()) {
+                requestEarlyFlush();
+                if (properties.getOverflowPolicy() == ClickTrackingProperties.OverflowPolicy.DROP
+                        || ThreadLocalRandom.current().nextInt(properties.getSampleRate()) != 0) {
+                    droppedClicks.increment();
+                    return;
+                }
+                weight = properties.getSampleRate();
+            }
+            counter = pending.computeIfAbsent(shortCode, code -> new ClickCounter());
+        }
+        counter.clicks.add(weight);
+        counter.lastAccessedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * @return clicks recorded for the code that have not been written to the database yet
+     */
+    public long pendingClicks(String shortCode) {
+        ClickCounter counter = pending.get(shortCode);
+        return counter == null ? 0 : counter.clicks.sum() - counter.flushed;
+    }
+
+    public long droppedClicks() {
+        return droppedClicks.sum();
+    }
+
+    public int pendingCodes() {
+        return pending.size();
+    }
+
+    public void flush() {
+        synchronized (flushLock) {
+            List<Map.Entry<String, ClickCounter>> previouslyRetired = retired;
+            retired = new ArrayList<>();
+
+            List<Map.Entry<String, ClickCounter>> dirty = new ArrayList<>();
+            for (Map.Entry<String, ClickCounter> entry : pending.entrySet()) {
+                ClickCounter counter = entry.getValue();
+                counter.snapshot = counter.clicks.sum();
+                if (counter.snapshot != counter.flushed) {
+                    dirty.add(entry);
+                } else if (pending.remove(entry.getKey(), counter)) {
+                    // Idle for a whole interval; keep it around for one more flush in case a click raced the removal
+                    retired.add(entry);
+                }
+            }
+            for (Map.Entry<String, ClickCounter> entry : previouslyRetired) {
+                ClickCounter counter = entry.getValue();
+                counter.snapshot = counter.clicks.sum();
+                if (counter.snapshot != counter.flushed) {
+                    dirty.add(entry);
+                }
+            }
+
+            for (int from = 0; from < dirty.size(); from += properties.getBatchSize()) {
+                List<Map.Entry<String, ClickCounter>> batch =
+                        dirty.subList(from, Math.min(dirty.size(), from + properties.getBatchSize()));
+                if (!writeBatch(batch)) {
+                    // Unwritten counts stay pending; retired counters get another chance on the next flush
+                    retired.addAll(previouslyRetired);
+                    return;
+                }
+            }
+        }
+    }
+
+    private boolean writeBatch(List<Map.Entry<String, ClickCounter>> batch) {
+        List<ClickUpdate> clickUpdates = new ArrayList<>(batch.size());
+        for (Map.Entry<String, ClickCounter> entry : batch) {
+            ClickCounter counter = entry.getValue();
+            LocalDateTime lastAccessedAt =
+                    LocalDateTime.ofInstant(Instant.ofEpochMilli(counter.lastAccessedAt), ZoneId.systemDefault());
+            clickUpdates.add(new ClickUpdate(entry.getKey(), counter.snapshot - counter.flushed, lastAccessedAt));
+        }
+        try {
+            urlMappingStore.applyClicks(clickUpdates);
+        } catch (DataAccessException e) {
+            log.warn("Failed to flush click counts for {} short codes, will retry: {}", batch.size(), e.getMessage());
+            return false;
+        }
+        for (Map.Entry<String, ClickCounter> entry : batch) {
+            entry.getValue().flushed = entry.getValue().snapshot;
+        }
+        return true;
+    }
+
+    private void requestEarlyFlush() {
+        if (earlyFlushRequested.compareAndSet(false, true)) {
+            flusher.execute(() -> {
+                earlyFlushRequested.set(false);
+                flushQuietly();
+            });
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Click count flush failed", e);
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "click-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = properties.getFlushInterval().toMillis();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Final flush of everything recorded before the web server stopped accepting requests
+        flush();
+        log.info("Flushed pending click counts on shutdown");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Stop after the web server has stopped taking requests, while the datasource is still open
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private static final class ClickCounter {
+        final LongAdder clicks = new LongAdder();
+        volatile long lastAccessedAt;
+        // Clicks already written to the database, and the total seen by the flush in progress
+        volatile long flushed;
+        long snapshot;
+    }
+}
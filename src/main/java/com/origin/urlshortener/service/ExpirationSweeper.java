@@ -0,0 +1,131 @@
+package com.origin.urlshortener.service;
+
+import com.origin.urlshortener.cache.CacheInvalidationChannel;
+import com.origin.urlshortener.cache.ShortCodeCache;
+import com.origin.urlshortener.config.ExpirationProperties;
+import com.origin.urlshortener.metrics.ShortenerMetrics;
+import com.origin.urlshortener.storage.UrlMappingStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes expired links in small batches.
+ *
+ * Each batch selects up to batch-size rows through the expires_at index and deletes them by primary key in its own
+ * short transaction, so only those rows are locked and never for long. Batches are separated by batch-pause and a
+ * sweep stops after max-batches-per-sweep, leaving a large backlog to be worked off over several sweeps. Runs on its
+ * own thread so a slow sweep never delays other scheduled work such as the worker ID lease heartbeat. Deleted codes
+ * are evicted from the shared cache tier and published to the in-process caches of all nodes.
+ */
+@Slf4j
+@Component
+public class ExpirationSweeper implements SmartLifecycle {
+    private final ExpirationProperties properties;
+    private final UrlMappingStore urlMappingStore;
+    private final ShortCodeCache shortCodeCache;
+    private final CacheInvalidationChannel cacheInvalidationChannel;
+    private final ShortenerMetrics metrics;
+    private ScheduledExecutorService sweeper;
+    private volatile boolean running;
+
+    public ExpirationSweeper(ExpirationProperties properties,
+                             UrlMappingStore urlMappingStore,
+                             ShortCodeCache shortCodeCache,
+                             CacheInvalidationChannel cacheInvalidationChannel,
+                             ShortenerMetrics metrics) {
+        this.properties = properties;
+        this.urlMappingStore = urlMappingStore;
+        this.shortCodeCache = shortCodeCache;
+        this.cacheInvalidationChannel = cacheInvalidationChannel;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Runs one sweep.
+     *
+     * @return number of mappings deleted
+     */
+    public int sweep() {
+        int deleted = 0;
+        for (int batch = 0; batch < properties.getMaxBatchesPerSweep(); batch++) {
+            if (batch > 0 && !pause()) {
+                break;
+            }
+            List<String> shortCodes = urlMappingStore.deleteExpired(LocalDateTime.now(), properties.getBatchSize());
+            shortCodeCache.evict(shortCodes);
+            cacheInvalidationChannel.publish(shortCodes);
+            metrics.expiredDeleted(shortCodes.size());
+            deleted += shortCodes.size();
+            if (shortCodes.size() < properties.getBatchSize()) {
+                break;
+            }
+        }
+        if (deleted > 0) {
+            log.debug("Deleted {} expired mappings", deleted);
+        }
+        return deleted;
+    }
+
+    private boolean pause() {
+        try {
+            // Interrupted by stop()
+            Thread.sleep(properties.getBatchPause());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void sweepQuietly() {
+        try {
+            sweep();
+        } catch (DataAccessException e) {
+            log.warn("Expired mapping sweep failed, will retry: {}", e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Expired mapping sweep failed", e);
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!properties.isEnabled() || !urlMappingStore.supportsExpiration()) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "expiration-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = properties.getSweepInterval().toMillis();
+        running = true;
+        sweeper.scheduleWithFixedDelay(this::sweepQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        sweeper.shutdownNow();
+        try {
+            sweeper.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
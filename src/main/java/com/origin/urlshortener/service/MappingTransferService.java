@@ -0,0 +1,147 @@
+package com.origin.urlshortener.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.origin.urlshortener.cache.ShortCodeFilter;
+import com.origin.urlshortener.config.TransferProperties;
+import com.origin.urlshortener.dto.ImportResult;
+import com.origin.urlshortener.model.UrlMapping;
+import com.origin.urlshortener.storage.UrlMappingStore;
+import com.origin.urlshortener.util.Base62;
+import com.origin.urlshortener.util.SnowflakeIdGenerator;
+import com.origin.urlshortener.util.UrlDigest;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams all mappings out as NDJSON (one UrlMapping per line, optionally gzipped) and back in.
+ *
+ * Export visits the store row by row; import reads the input incrementally and inserts it in batches that skip
+ * mappings already present. Neither side holds more than one batch in memory, whatever the table size.
+ */
+@Service
+public class MappingTransferService {
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private final UrlMappingStore urlMappingStore;
+    private final ShortCodeFilter shortCodeFilter;
+    private final ObjectMapper objectMapper;
+    private final TransferProperties properties;
+
+    public MappingTransferService(UrlMappingStore urlMappingStore,
+                                  ShortCodeFilter shortCodeFilter,
+                                  ObjectMapper objectMapper,
+                                  TransferProperties properties) {
+        this.urlMappingStore = urlMappingStore;
+        this.shortCodeFilter = shortCodeFilter;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+    }
+
+    /**
+     * @return the number of mappings written
+     */
+    public long exportTo(OutputStream outputStream, boolean gzip) throws IOException {
+        OutputStream target = gzip ? new GZIPOutputStream(outputStream, GZIP_BUFFER_SIZE) : outputStream;
+        // Leave flushing to the output buffers instead of pushing every line to the client
+        ObjectWriter writer = objectMapper.writerFor(UrlMapping.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        long[] written = new long[1];
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(target)) {
+            generator.setRootValueSeparator(null);
+            urlMappingStore.forEach(urlMapping -> {
+                try {
+                    writer.writeValue(generator, urlMapping);
+                    generator.writeRaw('\n');
+                    written[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return written[0];
+    }
+
+    /**
+     * Imports NDJSON (or a JSON array) of mappings as written by exportTo; gzipped input is detected automatically.
+     */
+    public ImportResult importFrom(InputStream inputStream) throws IOException {
+        ImportResult result = new ImportResult();
+        List<UrlMapping> batch = new ArrayList<>(properties.getBatchSize());
+        try (MappingIterator<UrlMapping> mappings = objectMapper.readerFor(UrlMapping.class)
+                .readValues(decompressIfGzipped(inputStream))) {
+            while (mappings.hasNextValue()) {
+                batch.add(normalize(mappings.nextValue(), result.getRead()));
+                result.setRead(result.getRead() + 1);
+                if (batch.size() == properties.getBatchSize()) {
+                    insert(batch, result);
+                }
+            }
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            String reason = e instanceof JsonProcessingException json ? json.getOriginalMessage() : e.getMessage();
+            result.setMessage("Stopped at mapping " + result.getRead() + ": " + reason);
+        }
+        insert(batch, result);
+        return result;
+    }
+
+    private void insert(List<UrlMapping> batch, ImportResult result) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        int inserted = urlMappingStore.insertMissing(batch);
+        result.setImported(result.getImported() + inserted);
+        result.setSkipped(result.getSkipped() + batch.size() - inserted);
+        batch.forEach(urlMapping -> shortCodeFilter.add(urlMapping.getShortCode()));
+        batch.clear();
+    }
+
+    private static UrlMapping normalize(UrlMapping urlMapping, long index) {
+        if (urlMapping.getOriginalUrl() == null || (urlMapping.getShortCode() == null && urlMapping.getId() == null)) {
+            throw new IllegalArgumentException("mapping " + index + " needs originalUrl and shortCode or id");
+        }
+        // Keep the id == Base62.decode(shortCode) invariant, also for rows exported before it held
+        if (urlMapping.getShortCode() != null) {
+            long id = Base62.decode(urlMapping.getShortCode());
+            if (id < 0) {
+                throw new IllegalArgumentException("invalid short code " + urlMapping.getShortCode());
+            }
+            urlMapping.setId(id);
+        } else {
+            urlMapping.setShortCode(Base62.encode(urlMapping.getId()));
+        }
+        if (urlMapping.getCreatedAt() == null) {
+            urlMapping.setCreatedAt(LocalDateTime.ofInstant(
+                    Instant.ofEpochMilli(SnowflakeIdGenerator.timestampOf(urlMapping.getId())), ZoneId.systemDefault()));
+        }
+        // The digest is not exported; it is a pure function of the URL. Links with limits are not deduplicated.
+        urlMapping.setUrlHash(urlMapping.hasLimits() ? null : UrlDigest.sha256(urlMapping.getOriginalUrl()));
+        return urlMapping;
+    }
+
+    private static InputStream decompressIfGzipped(InputStream inputStream) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(inputStream, GZIP_BUFFER_SIZE);
+        buffered.mark(2);
+        int magic = buffered.read() | (buffered.read() << 8);
+        buffered.reset();
+        return magic == GZIPInputStream.GZIP_MAGIC ? new GZIPInputStream(buffered, GZIP_BUFFER_SIZE) : buffered;
+    }
+}
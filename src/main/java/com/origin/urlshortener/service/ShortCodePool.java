@@ -0,0 +1,182 @@
+package com.origin.urlshortener.service;
+
+import com.origin.urlshortener.config.FilterProperties;
+import com.origin.urlshortener.config.IdGeneratorProperties;
+import com.origin.urlshortener.util.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded pool of pre-generated Snowflake IDs, and so of short codes (shortCode == Base62(id)), kept topped up by a
+ * background producer so that creating a mapping dequeues an ID instead of generating one.
+ *
+ * The pool is a lock-free queue. A consumer that takes it below the low watermark wakes the producer, which refills
+ * it to capacity; an empty pool falls back to generating inline. IDs are only unique while this node holds its worker
+ * ID, so they are generated under the same lease as inline ones and the pool is bypassed and drained while the
+ * generator is suspended. Pooled IDs also age: an ID stamped long before its row is committed could be missed by
+ * another node's short code filter, so IDs older than max-age are discarded and the pool is refreshed while idle.
+ */
+@Slf4j
+@Component
+public class ShortCodePool implements SmartLifecycle {
+    private final IdGeneratorProperties.Pool properties;
+    private final SnowflakeIdGenerator generator;
+    private final long maxAgeMillis;
+    private final ConcurrentLinkedQueue<Long> ids = new ConcurrentLinkedQueue<>();
+    // Tracked separately because ConcurrentLinkedQueue.size() traverses the queue
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean refillRequested = new AtomicBoolean();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+    private volatile Thread producer;
+    private volatile boolean running;
+
+    public ShortCodePool(IdGeneratorProperties idGeneratorProperties,
+                         FilterProperties filterProperties,
+                         SnowflakeIdGenerator generator) {
+        this.properties = idGeneratorProperties.getPool();
+        this.generator = generator;
+        this.maxAgeMillis = properties.getMaxAge().toMillis();
+        if (properties.getCapacity() <= 0 || properties.getLowWatermark() >= properties.getCapacity()) {
+            throw new IllegalArgumentException("ID pool low-watermark must be below its capacity");
+        }
+        if (filterProperties.isEnabled() && properties.getMaxAge().compareTo(filterProperties.getMaxClockSkew()) >= 0) {
+            throw new IllegalArgumentException("ID pool max-age must be shorter than shortener.filter.max-clock-skew");
+        }
+    }
+
+    /**
+     * @return a pooled ID, or a freshly generated one if the pool is disabled or empty
+     */
+    public long nextId() {
+        if (running && generator.isSuspended()) {
+            // Have the producer drain the pool
+            requestRefill();
+        } else if (running) {
+            long oldest = System.currentTimeMillis() - maxAgeMillis;
+            Long id;
+            while ((id = ids.poll()) != null) {
+                if (size.decrementAndGet() < properties.getLowWatermark()) {
+                    requestRefill();
+                }
+                if (SnowflakeIdGenerator.timestampOf(id) >= oldest) {
+                    return id;
+                }
+                discarded.increment();
+            }
+            misses.increment();
+            requestRefill();
+        }
+        // Throws if the generator is suspended
+        return generator.nextId();
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * @return IDs generated inline because the pool was empty
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return pooled IDs thrown away for exceeding max-age
+     */
+    public long discarded() {
+        return discarded.sum();
+    }
+
+    /**
+     * Drops IDs that are halfway to max-age, then refills to capacity if the pool is below the low watermark.
+     */
+    void refill() {
+        if (generator.isSuspended()) {
+            clear();
+            return;
+        }
+        long refreshBefore = System.currentTimeMillis() - maxAgeMillis / 2;
+        Long head;
+        // Oldest first; remove(head) only fails if a consumer took it in the meantime
+        while ((head = ids.peek()) != null && SnowflakeIdGenerator.timestampOf(head) < refreshBefore) {
+            if (ids.remove(head)) {
+                size.decrementAndGet();
+                discarded.increment();
+            }
+        }
+        if (size.get() >= properties.getLowWatermark()) {
+            return;
+        }
+        while (size.get() < properties.getCapacity()) {
+            ids.offer(generator.nextId());
+            size.incrementAndGet();
+        }
+    }
+
+    private void requestRefill() {
+        if (refillRequested.compareAndSet(false, true)) {
+            LockSupport.unpark(producer);
+        }
+    }
+
+    private void produce() {
+        long checkIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, maxAgeMillis / 4));
+        while (running) {
+            refillRequested.set(false);
+            try {
+                refill();
+            } catch (RuntimeException e) {
+                // Suspended or clock moved backwards mid-refill; consumers generate inline until the next attempt
+                log.warn("Failed to refill the short code pool: {}", e.getMessage());
+            }
+            if (!refillRequested.get()) {
+                LockSupport.parkNanos(this, checkIntervalNanos);
+            }
+        }
+    }
+
+    private void clear() {
+        while (ids.poll() != null) {
+            size.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        running = true;
+        producer = Thread.ofPlatform().name("short-code-pool").daemon().start(this::produce);
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(producer);
+        try {
+            producer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
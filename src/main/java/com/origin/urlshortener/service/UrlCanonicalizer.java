@@ -0,0 +1,287 @@
+package com.origin.urlshortener.service;
+
+import com.origin.urlshortener.config.CanonicalizationProperties;
+import com.origin.urlshortener.exception.InvalidUrlException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Validates URLs to shorten and returns their canonical form in a single pass over the string, so that different
+ * spellings of the same URL are deduplicated to one mapping.
+ *
+ * Only absolute http and https URLs with a host are accepted. The scheme and host are lowercased, the default port
+ * (80 for http, 443 for https) and surrounding whitespace are dropped, an empty path becomes "/" and, if configured,
+ * query parameters are ordered by name. User info, path, percent-encoding and fragment are kept as written. Characters
+ * are checked against RFC 3986 like java.net.URI does, without building a URI; rejections are shared exceptions
+ * without stack traces. A URL that is already canonical is returned as is, without allocating.
+ */
+@Component
+public class UrlCanonicalizer {
+    // Length of the originalUrl column
+    static final int MAX_LENGTH = 2048;
+
+    private static final InvalidUrlException MISSING_SCHEME_OR_HOST =
+            InvalidUrlException.preallocated("Invalid URL format: scheme and host are required");
+    private static final InvalidUrlException UNSUPPORTED_SCHEME =
+            InvalidUrlException.preallocated("Invalid URL scheme: only http and https are supported");
+    private static final InvalidUrlException INVALID_HOST =
+            InvalidUrlException.preallocated("Invalid URL format: invalid host");
+    private static final InvalidUrlException INVALID_PORT =
+            InvalidUrlException.preallocated("Invalid URL format: invalid port");
+    private static final InvalidUrlException ILLEGAL_CHARACTER =
+            InvalidUrlException.preallocated("Invalid URL format: illegal character");
+    private static final InvalidUrlException MALFORMED_ESCAPE =
+            InvalidUrlException.preallocated("Invalid URL format: malformed percent-encoding");
+    private static final InvalidUrlException TOO_LONG =
+            InvalidUrlException.preallocated("Invalid URL: longer than " + MAX_LENGTH + " characters");
+
+    // ASCII characters allowed unescaped in path, query and fragment: unreserved, sub-delims, ':', '@', '/' and '?'
+    private static final boolean[] ALLOWED = new boolean[128];
+
+    static {
+        String allowed = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789-._~!$&'()*+,;=:@/?";
+        for (int i = 0; i < allowed.length(); i++) {
+            ALLOWED[allowed.charAt(i)] = true;
+        }
+    }
+
+    private static final Comparator<String> BY_PARAMETER_NAME = Comparator.comparing(UrlCanonicalizer::parameterName);
+
+    private final boolean sortQueryParameters;
+
+    public UrlCanonicalizer(CanonicalizationProperties properties) {
+        this.sortQueryParameters = properties.isSortQueryParameters();
+    }
+
+    /**
+     * @return the canonical form of the URL
+     * @throws InvalidUrlException if it is not an absolute http or https URL with a host
+     */
+    public String canonicalize(String url) {
+        String s = url.trim();
+        int length = s.length();
+        if (length > MAX_LENGTH) {
+            throw TOO_LONG;
+        }
+
+        int schemeEnd = s.indexOf(':');
+        boolean https;
+        if (schemeEnd == 4 && s.regionMatches(true, 0, "http", 0, 4)) {
+            https = false;
+        } else if (schemeEnd == 5 && s.regionMatches(true, 0, "https", 0, 5)) {
+            https = true;
+        } else if (schemeEnd > 0 && isScheme(s, schemeEnd)) {
+            throw UNSUPPORTED_SCHEME;
+        } else {
+            throw MISSING_SCHEME_OR_HOST;
+        }
+        if (!s.startsWith("//", schemeEnd + 1)) {
+            throw MISSING_SCHEME_OR_HOST;
+        }
+        boolean changed = s != url || !s.startsWith(https ? "https" : "http");
+
+        int authorityStart = schemeEnd + 3;
+        int authorityEnd = authorityStart;
+        while (authorityEnd < length && !isAuthorityEnd(s.charAt(authorityEnd))) {
+            authorityEnd++;
+        }
+
+        // User info, if any, is everything up to the last '@' of the authority
+        int hostStart = authorityStart;
+        for (int i = authorityEnd - 1; i >= authorityStart; i--) {
+            if (s.charAt(i) == '@') {
+                checkCharacters(s, authorityStart, i, true);
+                hostStart = i + 1;
+                break;
+            }
+        }
+
+        int hostEnd = hostStart;
+        if (hostStart < authorityEnd && s.charAt(hostStart) == '[') {
+            // IPv6 literal
+            hostEnd++;
+            while (hostEnd < authorityEnd && s.charAt(hostEnd) != ']') {
+                char c = s.charAt(hostEnd++);
+                if (c != ':' && c != '.' && !isHexDigit(c)) {
+                    throw INVALID_HOST;
+                }
+            }
+            if (hostEnd == authorityEnd || hostEnd == hostStart + 1) {
+                throw INVALID_HOST;
+            }
+            hostEnd++;
+        } else {
+            while (hostEnd < authorityEnd && s.charAt(hostEnd) != ':') {
+                char c = s.charAt(hostEnd++);
+                if (!isAsciiLetterOrDigit(c) && c != '-' && c != '.') {
+                    throw INVALID_HOST;
+                }
+            }
+        }
+        if (hostEnd == hostStart) {
+            throw MISSING_SCHEME_OR_HOST;
+        }
+        for (int i = hostStart; i < hostEnd; i++) {
+            char c = s.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                changed = true;
+                break;
+            }
+        }
+
+        int port = -1;
+        if (hostEnd < authorityEnd) {
+            if (s.charAt(hostEnd) != ':') {
+                throw INVALID_HOST;
+            }
+            int value = 0;
+            for (int i = hostEnd + 1; i < authorityEnd; i++) {
+                int digit = s.charAt(i) - '0';
+                if (digit < 0 || digit > 9 || (value = value * 10 + digit) > 65535) {
+                    throw INVALID_PORT;
+                }
+            }
+            boolean empty = hostEnd + 1 == authorityEnd;
+            if (empty || value == (https ? 443 : 80)) {
+                changed = true;
+            } else {
+                port = value;
+                // Leading zeros
+                changed |= authorityEnd - hostEnd > 2 && s.charAt(hostEnd + 1) == '0';
+            }
+        }
+
+        // Path, query and fragment
+        int queryStart = -1;
+        int fragmentStart = -1;
+        for (int i = authorityEnd; i < length; i++) {
+            char c = s.charAt(i);
+            if (c == '%') {
+                checkEscape(s, i);
+                i += 2;
+            } else if (c == '#' && fragmentStart < 0) {
+                fragmentStart = i;
+            } else if (c == '?' && queryStart < 0 && fragmentStart < 0) {
+                queryStart = i;
+            } else if (!isAllowed(c)) {
+                throw ILLEGAL_CHARACTER;
+            }
+        }
+        int pathEnd = queryStart >= 0 ? queryStart : fragmentStart >= 0 ? fragmentStart : length;
+        changed |= pathEnd == authorityEnd;
+
+        String sortedQuery = null;
+        int queryEnd = fragmentStart >= 0 ? fragmentStart : length;
+        if (sortQueryParameters && queryStart >= 0) {
+            sortedQuery = sortQuery(s, queryStart + 1, queryEnd);
+            changed |= sortedQuery != null;
+        }
+
+        if (!changed) {
+            return s;
+        }
+        StringBuilder canonical = new StringBuilder(length + 1);
+        canonical.append(https ? "https://" : "http://");
+        canonical.append(s, authorityStart, hostStart);
+        for (int i = hostStart; i < hostEnd; i++) {
+            char c = s.charAt(i);
+            canonical.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+        if (port >= 0) {
+            canonical.append(':').append(port);
+        }
+        if (pathEnd == authorityEnd) {
+            canonical.append('/');
+        }
+        if (sortedQuery != null) {
+            canonical.append(s, authorityEnd, queryStart + 1).append(sortedQuery).append(s, queryEnd, length);
+        } else {
+            canonical.append(s, authorityEnd, length);
+        }
+        return canonical.toString();
+    }
+
+    /**
+     * @return the parameters between from and to ordered by name, or null if they already are
+     */
+    private static String sortQuery(String s, int from, int to) {
+        List<String> parameters = new ArrayList<>();
+        int start = from;
+        for (int i = from; i <= to; i++) {
+            if (i == to || s.charAt(i) == '&') {
+                parameters.add(s.substring(start, i));
+                start = i + 1;
+            }
+        }
+        boolean sorted = true;
+        for (int i = 1; i < parameters.size() && sorted; i++) {
+            sorted = BY_PARAMETER_NAME.compare(parameters.get(i - 1), parameters.get(i)) <= 0;
+        }
+        if (sorted) {
+            return null;
+        }
+        // List.sort is stable, so repeated names keep their order
+        parameters.sort(BY_PARAMETER_NAME);
+        return String.join("&", parameters);
+    }
+
+    private static String parameterName(String parameter) {
+        int equals = parameter.indexOf('=');
+        return equals < 0 ? parameter : parameter.substring(0, equals);
+    }
+
+    private static void checkCharacters(String s, int from, int to, boolean userInfo) {
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c == '%') {
+                checkEscape(s, i);
+                i += 2;
+            } else if (!isAllowed(c) || (userInfo && (c == '@' || c == '/' || c == '?'))) {
+                throw ILLEGAL_CHARACTER;
+            }
+        }
+    }
+
+    private static void checkEscape(String s, int i) {
+        if (i + 2 >= s.length() || !isHexDigit(s.charAt(i + 1)) || !isHexDigit(s.charAt(i + 2))) {
+            throw MALFORMED_ESCAPE;
+        }
+    }
+
+    private static boolean isAllowed(char c) {
+        // Like java.net.URI, other non-ASCII characters are allowed unescaped except controls and spaces
+        return c < 128 ? ALLOWED[c] : !Character.isISOControl(c) && !Character.isSpaceChar(c);
+    }
+
+    private static boolean isScheme(String s, int end) {
+        if (!isAsciiLetter(s.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < end; i++) {
+            char c = s.charAt(i);
+            if (!isAsciiLetterOrDigit(c) && c != '+' && c != '-' && c != '.') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAuthorityEnd(char c) {
+        return c == '/' || c == '?' || c == '#';
+    }
+
+    private static boolean isHexDigit(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isAsciiLetterOrDigit(char c) {
+        return isAsciiLetter(c) || (c >= '0' && c <= '9');
+    }
+}
@@ -0,0 +1,82 @@
+package com.origin.urlshortener.service;
+
+import com.origin.urlshortener.config.StorageProperties;
+import com.origin.urlshortener.util.Base62;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rewrites the primary key of mappings created before ids were Snowflake-assigned, so that
+ * id == Base62.decode(shortCode) holds for every row and primary-key lookups can find them.
+ *
+ * Legacy rows carry small identity values, which always sort before any Snowflake ID, so the migration
+ * walks the table in id order and stops at the first row that is already keyed by its Snowflake ID.
+ * Until it completes, primary-key lookups fall back to the short code index.
+ */
+@Slf4j
+@Component
+public class UrlMappingKeyMigration {
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StorageProperties properties;
+    private volatile boolean complete;
+
+    public UrlMappingKeyMigration(JdbcTemplate jdbcTemplate, StorageProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        if (properties.getLookupMode() != StorageProperties.LookupMode.PRIMARY_KEY) {
+            return;
+        }
+        long lastId = Long.MIN_VALUE;
+        long migrated = 0;
+        while (true) {
+            List<Object[]> batch = new ArrayList<>();
+            boolean reachedSnowflakeKeys = false;
+            List<Object[]> rows = jdbcTemplate.query(
+                    "SELECT id, short_code FROM url_mappings WHERE id > ? ORDER BY id LIMIT ?",
+                    (rs, rowNum) -> new Object[]{rs.getLong(1), rs.getString(2)},
+                    lastId, BATCH_SIZE);
+            for (Object[] row : rows) {
+                long id = (Long) row[0];
+                long snowflakeId = Base62.decode((String) row[1]);
+                if (id == snowflakeId) {
+                    reachedSnowflakeKeys = true;
+                    break;
+                }
+                if (snowflakeId >= 0) {
+                    batch.add(new Object[]{snowflakeId, id});
+                }
+                lastId = id;
+            }
+            if (!batch.isEmpty()) {
+                jdbcTemplate.batchUpdate("UPDATE url_mappings SET id = ? WHERE id = ?", batch);
+                migrated += batch.size();
+            }
+            if (reachedSnowflakeKeys || rows.size() < BATCH_SIZE) {
+                break;
+            }
+        }
+        complete = true;
+        if (migrated > 0) {
+            log.info("Re-keyed {} legacy url_mappings rows by their Snowflake ID", migrated);
+        }
+    }
+}
@@ -1,73 +1,336 @@
 package com.origin.urlshortener.service;
 
+import com.origin.urlshortener.cache.ShortCodeCache;
+import com.origin.urlshortener.cache.ShortCodeFilter;
+import com.origin.urlshortener.cache.UrlMappingCache;
+import com.origin.urlshortener.dto.BulkShortenResult;
+import com.origin.urlshortener.metrics.ShortenerMetrics;
 import com.origin.urlshortener.model.UrlMapping;
-import com.origin.urlshortener.repository.UrlMappingRepository;
+import com.origin.urlshortener.exception.UrlExpiredException;
 import com.origin.urlshortener.exception.UrlNotFoundException;
 import com.origin.urlshortener.exception.InvalidUrlException;
-import com.origin.urlshortener.util.SnowflakeIdGenerator;
+import com.origin.urlshortener.storage.UrlMappingStore;
+import com.origin.urlshortener.util.Base62;
+import com.origin.urlshortener.util.UrlDigest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import java.net.URI;
-import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class UrlShortenerService {
-    private final UrlMappingRepository urlMappingRepository;
-    private final SnowflakeIdGenerator snowflakeIdGenerator;
+    private final UrlMappingStore urlMappingStore;
+    private final ShortCodePool shortCodePool;
+    private final UrlMappingCache urlMappingCache;
+    private final ShortCodeCache shortCodeCache;
+    private final ShortCodeFilter shortCodeFilter;
+    private final ShortenerMetrics metrics;
+    private final ClickTracker clickTracker;
+    private final UrlCanonicalizer urlCanonicalizer;
+    // Shortens in progress on this node by URL, so concurrent requests for the same URL share one lookup and insert
+    private final ConcurrentHashMap<String, CompletableFuture<UrlMapping>> inFlight = new ConcurrentHashMap<>();
 
-    public UrlShortenerService(UrlMappingRepository urlMappingRepository, 
-                             SnowflakeIdGenerator snowflakeIdGenerator) {
-        this.urlMappingRepository = urlMappingRepository;
-        this.snowflakeIdGenerator = snowflakeIdGenerator;
+    public UrlShortenerService(UrlMappingStore urlMappingStore,
+                             ShortCodePool shortCodePool,
+                             UrlMappingCache urlMappingCache,
+                             ShortCodeCache shortCodeCache,
+                             ShortCodeFilter shortCodeFilter,
+                             ShortenerMetrics metrics,
+                             ClickTracker clickTracker,
+                             UrlCanonicalizer urlCanonicalizer) {
+        this.urlMappingStore = urlMappingStore;
+        this.shortCodePool = shortCodePool;
+        this.urlMappingCache = urlMappingCache;
+        this.shortCodeCache = shortCodeCache;
+        this.shortCodeFilter = shortCodeFilter;
+        this.metrics = metrics;
+        this.clickTracker = clickTracker;
+        this.urlCanonicalizer = urlCanonicalizer;
     }
 
-    @Transactional
     public UrlMapping shortenUrl(String originalUrl) {
-        validateUrl(originalUrl);
+        return shortenUrl(originalUrl, null, null);
+    }
 
-        // Check if URL already exists
-        return urlMappingRepository.findByOriginalUrl(originalUrl)
-                .orElseGet(() -> createNewUrlMapping(originalUrl));
+    /**
+     * Shortens a URL, optionally with an expiry time and/or a maximum number of redirects. The URL is validated and
+     * canonicalized first; the canonical form is what is deduplicated and stored. Links with limits are always new
+     * mappings: they are not deduplicated against, or returned for, other requests for the same URL.
+     *
+     * Concurrent calls for the same URL without limits are coalesced: the first one looks up and inserts the mapping
+     * and the others wait for its result. Across nodes the unique digest index rejects the second insert, which is
+     * then retried and finds the first node's row.
+     */
+    public UrlMapping shortenUrl(String originalUrl, LocalDateTime expiresAt, Long maxClicks) {
+        long start = System.nanoTime();
+        try {
+            // Before any transaction, so invalid URLs never hold a connection
+            String url = canonicalize(originalUrl);
+            if (expiresAt != null || maxClicks != null) {
+                return shortenOnce(url, expiresAt, maxClicks);
+            }
+            return shortenCoalesced(url);
+        } finally {
+            metrics.recordShorten(start);
+        }
     }
 
-    @Transactional(readOnly = true)
-    public UrlMapping getOriginalUrl(String shortCode) {
-        return urlMappingRepository.findByShortCode(shortCode)
-                .orElseThrow(() -> new UrlNotFoundException("Short URL not found: " + shortCode));
+    private UrlMapping shortenCoalesced(String originalUrl) {
+        CompletableFuture<UrlMapping> flight = new CompletableFuture<>();
+        CompletableFuture<UrlMapping> leader = inFlight.putIfAbsent(originalUrl, flight);
+        if (leader != null) {
+            try {
+                UrlMapping urlMapping = leader.join();
+                metrics.coalesced();
+                return urlMapping;
+            } catch (CompletionException e) {
+                // Rethrow what the leading call failed with, e.g. InvalidUrlException
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        try {
+            UrlMapping urlMapping = shortenOnce(originalUrl, null, null);
+            flight.complete(urlMapping);
+            return urlMapping;
+        } catch (Throwable t) {
+            flight.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(originalUrl, flight);
+        }
     }
 
-    private UrlMapping createNewUrlMapping(String originalUrl) {
-        String shortCode = snowflakeIdGenerator.generateShortCode();
-        
-        // Ensure uniqueness of shortCode (extremely unlikely to happen with Snowflake IDs)
-        while (urlMappingRepository.existsByShortCode(shortCode)) {
-            shortCode = snowflakeIdGenerator.generateShortCode();
+    private UrlMapping shortenOnce(String originalUrl, LocalDateTime expiresAt, Long maxClicks) {
+        // Transaction managed by the store rather than with @Transactional so the timing includes the commit
+        try {
+            return urlMappingStore.atomically(() -> shortenInTransaction(originalUrl, expiresAt, maxClicks));
+        } catch (DataIntegrityViolationException e) {
+            // Another node inserted the same URL after our lookup; the retry will find its row
+            return urlMappingStore.atomically(() -> shortenInTransaction(originalUrl, expiresAt, maxClicks));
         }
+    }
 
-        UrlMapping urlMapping = new UrlMapping();
-        urlMapping.setOriginalUrl(originalUrl);
-        urlMapping.setShortCode(shortCode);
-        urlMapping.setCreatedAt(LocalDateTime.now());
+    private String canonicalize(String originalUrl) {
+        try {
+            return urlCanonicalizer.canonicalize(originalUrl);
+        } catch (InvalidUrlException e) {
+            metrics.invalidUrl();
+            throw e;
+        }
+    }
+
+    private UrlMapping shortenInTransaction(String originalUrl, LocalDateTime expiresAt, Long maxClicks) {
+        if (expiresAt != null || maxClicks != null) {
+            if (!urlMappingStore.supportsExpiration()) {
+                throw new InvalidUrlException("Expiring links are not supported by the configured storage engine");
+            }
+            metrics.shortened(false);
+            UrlMapping urlMapping = newUrlMapping(originalUrl, null);
+            urlMapping.setExpiresAt(expiresAt);
+            urlMapping.setMaxClicks(maxClicks);
+            return createNewUrlMapping(urlMapping);
+        }
 
-        return urlMappingRepository.save(urlMapping);
+        // Check if URL already exists, using the indexed digest rather than the URL column
+        byte[] urlHash = UrlDigest.sha256(originalUrl);
+        Optional<UrlMapping> existing = urlMappingStore.findByUrlHash(urlHash);
+        if (existing.isPresent() && existing.get().getOriginalUrl().equals(originalUrl)) {
+            metrics.shortened(true);
+            return existing.get();
+        }
+        metrics.shortened(false);
+        // On a digest collision store the new URL without a digest so the unique index is not violated
+        return createNewUrlMapping(newUrlMapping(originalUrl, existing.isEmpty() ? urlHash : null));
     }
 
-    private void validateUrl(String url) {
+    /**
+     * Shortens a chunk of URLs in one transaction: every URL is canonicalized, existing mappings are found with a
+     * single digest IN query, and the new mappings are inserted as one JDBC batch. Invalid URLs are reported per item
+     * instead of failing the chunk.
+     *
+     * @param firstIndex position of the first URL in the overall request, used to number the results
+     */
+    public List<BulkShortenResult> shortenUrls(List<String> originalUrls, long firstIndex) {
         try {
-            url = url.trim();  // Optional: strip whitespace
-            URI uri = new URI(url);
-            if (uri.getScheme() == null || uri.getHost() == null) {
-                throw new InvalidUrlException("Invalid URL format: scheme and host are required");
+            return urlMappingStore.atomically(() -> shortenChunk(originalUrls, firstIndex));
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent request inserted one of the URLs after our IN query; the retry will find its row
+            return urlMappingStore.atomically(() -> shortenChunk(originalUrls, firstIndex));
+        }
+    }
+
+    private List<BulkShortenResult> shortenChunk(List<String> originalUrls, long firstIndex) {
+        List<BulkShortenResult> results = new ArrayList<>(originalUrls.size());
+        byte[][] urlHashes = new byte[originalUrls.size()][];
+        Map<ByteBuffer, byte[]> digests = new HashMap<>();
+        for (int i = 0; i < originalUrls.size(); i++) {
+            String originalUrl = originalUrls.get(i);
+            BulkShortenResult result = new BulkShortenResult();
+            result.setIndex(firstIndex + i);
+            result.setOriginalUrl(originalUrl);
+            try {
+                if (originalUrl == null || originalUrl.isBlank()) {
+                    throw new InvalidUrlException("URL cannot be empty");
+                }
+                String url = urlCanonicalizer.canonicalize(originalUrl);
+                result.setOriginalUrl(url);
+                urlHashes[i] = UrlDigest.sha256(url);
+                digests.put(ByteBuffer.wrap(urlHashes[i]), urlHashes[i]);
+            } catch (InvalidUrlException e) {
+                metrics.invalidUrl();
+                result.setStatus(HttpStatus.BAD_REQUEST.value());
+                result.setMessage(e.getMessage());
             }
+            results.add(result);
+        }
 
-            String scheme = uri.getScheme().toLowerCase();
-            if (!scheme.equals("http") && !scheme.equals("https")) {
-                throw new InvalidUrlException("Invalid URL scheme: only http and https are supported");
+        Map<ByteBuffer, UrlMapping> mappings = new HashMap<>();
+        if (!digests.isEmpty()) {
+            for (UrlMapping existing : urlMappingStore.findByUrlHashIn(digests.values())) {
+                mappings.put(ByteBuffer.wrap(existing.getUrlHash()), existing);
             }
+        }
+
+        List<UrlMapping> created = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            BulkShortenResult result = results.get(i);
+            if (result.getStatus() != 0) {
+                continue;
+            }
+            byte[] urlHash = urlHashes[i];
+            ByteBuffer key = ByteBuffer.wrap(urlHash);
+            UrlMapping mapping = mappings.get(key);
+            if (mapping != null && mapping.getOriginalUrl().equals(result.getOriginalUrl())) {
+                // Existing row, or a URL repeated earlier in this chunk
+                result.setStatus(mapping.isNew() ? HttpStatus.CREATED.value() : HttpStatus.OK.value());
+            } else {
+                // New URL. On a digest collision with a different URL, store it without a digest as shortenUrl does
+                mapping = newUrlMapping(result.getOriginalUrl(), mapping == null ? urlHash : null);
+                if (mapping.getUrlHash() != null) {
+                    mappings.put(key, mapping);
+                }
+                created.add(mapping);
+                result.setStatus(HttpStatus.CREATED.value());
+            }
+            metrics.shortened(result.getStatus() == HttpStatus.OK.value());
+            result.setShortCode(mapping.getShortCode());
+            result.setCreatedAt(mapping.getCreatedAt());
+        }
 
-        } catch (URISyntaxException e) {
-            throw new InvalidUrlException("Invalid URL format: " + e.getMessage());
+        urlMappingStore.insertAll(created);
+        created.forEach(this::publishNewUrlMapping);
+        return results;
+    }
+
+    // Not transactional on purpose: cache hits must not open a transaction or borrow a connection.
+    // The read-only transaction is applied to the repository lookup on a cache miss.
+    public UrlMapping getOriginalUrl(String shortCode) {
+        long start = System.nanoTime();
+        try {
+            return lookUp(shortCode);
+        } finally {
+            metrics.recordLookup(start);
+        }
+    }
+
+    private UrlMapping lookUp(String shortCode) {
+        UrlMapping cached = lookUpCached(shortCode);
+        if (cached != null) {
+            return cached;
+        }
+        return loaded(shortCode, urlMappingStore.findByShortCode(shortCode).orElse(null));
+    }
+
+    /**
+     * The part of a lookup that needs no database access, for callers that load mappings themselves (the reactive
+     * redirect stack): answers from the cache tiers, and rules out codes that were never issued.
+     *
+     * @return the cached mapping, or null if it has to be loaded and passed to {@link #loaded}
+     */
+    public UrlMapping lookUpCached(String shortCode) {
+        UrlMapping cached = urlMappingCache.get(shortCode);
+        if (cached != null) {
+            return checkNotExpired(cached);
+        }
+        // Codes that were never issued are answered without a database round trip
+        if (!shortCodeFilter.mightContain(shortCode)) {
+            metrics.notFound(true);
+            throw new UrlNotFoundException("Short URL not found: " + shortCode);
+        }
+
+        // Mappings loaded or created by other nodes
+        UrlMapping shared = shortCodeCache.get(shortCode);
+        if (shared != null) {
+            urlMappingCache.put(shared);
+            return checkNotExpired(shared);
+        }
+        return null;
+    }
+
+    /**
+     * Completes a lookup that missed the caches with the mapping loaded from the database, or null if there is none.
+     */
+    public UrlMapping loaded(String shortCode, UrlMapping found) {
+        if (found == null) {
+            metrics.notFound(false);
+            throw new UrlNotFoundException("Short URL not found: " + shortCode);
+        }
+        urlMappingCache.put(found);
+        shortCodeCache.put(found);
+        return checkNotExpired(found);
+    }
+
+    private UrlMapping checkNotExpired(UrlMapping urlMapping) {
+        if (!urlMapping.hasLimits()) {
+            return urlMapping;
         }
+        // Stored clicks plus those not flushed yet. Concurrent redirects can overshoot the limit slightly.
+        boolean usedUp = urlMapping.getMaxClicks() != null && urlMapping.getClickCount()
+                + clickTracker.pendingClicks(urlMapping.getShortCode()) >= urlMapping.getMaxClicks();
+        if (usedUp || urlMapping.isExpiredAt(LocalDateTime.now())) {
+            metrics.expired();
+            throw new UrlExpiredException("Short URL has expired: " + urlMapping.getShortCode());
+        }
+        return urlMapping;
+    }
+
+    private UrlMapping createNewUrlMapping(UrlMapping urlMapping) {
+        UrlMapping saved = urlMappingStore.save(urlMapping);
+        publishNewUrlMapping(saved);
+        return saved;
+    }
+
+    private void publishNewUrlMapping(UrlMapping urlMapping) {
+        shortCodeFilter.add(urlMapping.getShortCode());
+        // So other nodes can serve the code without a database query. Runs before commit: if the commit fails the
+        // entry is left behind, but its code was never handed out.
+        shortCodeCache.put(urlMapping);
+    }
+
+    private UrlMapping newUrlMapping(String originalUrl, byte[] urlHash) {
+        // Worker IDs are unique per node, so a fresh Snowflake code cannot collide with an existing one.
+        // The ID doubles as the primary key, so the insert needs no identity round trip and can be batched.
+        // Taken from the pre-generated pool, which falls back to generating one when empty.
+        long id = shortCodePool.nextId();
+
+        UrlMapping urlMapping = new UrlMapping();
+        urlMapping.setId(id);
+        urlMapping.setOriginalUrl(originalUrl);
+        urlMapping.setShortCode(Base62.encode(id));
+        urlMapping.setUrlHash(urlHash);
+        urlMapping.setCreatedAt(LocalDateTime.now());
+        return urlMapping;
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,188 @@
+package com.origin.urlshortener.service;
+
+import com.origin.urlshortener.config.IdGeneratorProperties;
+import com.origin.urlshortener.model.WorkerIdLease;
+import com.origin.urlshortener.repository.WorkerIdLeaseRepository;
+import com.origin.urlshortener.util.SnowflakeIdGenerator;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Leases a Snowflake machine ID from the worker_id_leases table so that every node in a datacenter
+ * issues IDs from a distinct worker ID without per-instance configuration.
+ *
+ * The lease is renewed on every heartbeat. The generator is fenced at the lease expiry minus one heartbeat interval
+ * and refuses IDs past that point on its own, so a heartbeat that is late or fails never lets this node issue IDs
+ * while another node may already have claimed the same worker ID. A node whose worker ID was taken over meanwhile
+ * leases a free one and moves its generator there.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "shortener.id-generator.lease", name = "enabled", havingValue = "true")
+public class WorkerIdLeaseService {
+    private final WorkerIdLeaseRepository workerIdLeaseRepository;
+    private final IdGeneratorProperties properties;
+    private final String owner;
+
+    private volatile int workerId = -1;
+    private volatile Instant leaseExpiresAt = Instant.EPOCH;
+    private volatile SnowflakeIdGenerator generator;
+
+    public WorkerIdLeaseService(WorkerIdLeaseRepository workerIdLeaseRepository, IdGeneratorProperties properties) {
+        IdGeneratorProperties.Lease lease = properties.getLease();
+        if (lease.getTtl().compareTo(lease.getHeartbeatInterval().multipliedBy(2)) <= 0) {
+            throw new IllegalArgumentException("Worker ID lease ttl must be more than twice its heartbeat-interval");
+        }
+        this.workerIdLeaseRepository = workerIdLeaseRepository;
+        this.properties = properties;
+        this.owner = properties.getLease().getOwner() != null
+                ? properties.getLease().getOwner()
+                : defaultOwner();
+    }
+
+    /**
+     * Claims a free machine ID within the configured datacenter.
+     *
+     * @return the leased machine ID
+     */
+    public long acquireMachineId() {
+        long datacenterId = properties.getDatacenterId();
+        int slots = (int) SnowflakeIdGenerator.MAX_MACHINE_ID + 1;
+        int firstWorkerId = (int) (datacenterId * slots);
+        ensureSlotsExist(firstWorkerId, slots);
+
+        // Start at a random slot so nodes booting together do not all contend for the same row
+        int offset = ThreadLocalRandom.current().nextInt(slots);
+        for (int i = 0; i < slots; i++) {
+            int candidate = firstWorkerId + (offset + i) % slots;
+            Instant now = Instant.now();
+            Instant expiresAt = now.plus(properties.getLease().getTtl());
+            if (workerIdLeaseRepository.tryAcquire(candidate, owner, expiresAt, now) == 1) {
+                this.workerId = candidate;
+                this.leaseExpiresAt = expiresAt;
+                long machineId = candidate - firstWorkerId;
+                log.info("Leased worker ID {} (datacenter {}, machine {}) as {}", candidate, datacenterId, machineId, owner);
+                return machineId;
+            }
+        }
+        throw new IllegalStateException(
+                String.format("No free machine ID in datacenter %d, all %d worker ID leases are held", datacenterId, slots));
+    }
+
+    public void bind(SnowflakeIdGenerator generator) {
+        this.generator = generator;
+        generator.validUntil(issueDeadline().toEpochMilli());
+    }
+
+    @Scheduled(fixedDelayString = "${shortener.id-generator.lease.heartbeat-interval:PT10S}")
+    public void heartbeat() {
+        if (workerId < 0) {
+            return;
+        }
+        Instant now = Instant.now();
+        Instant expiresAt = now.plus(properties.getLease().getTtl());
+        try {
+            // tryAcquire renews a lease we still hold and re-claims one that lapsed without being taken over
+            if (workerIdLeaseRepository.tryAcquire(workerId, owner, expiresAt, now) == 1) {
+                leaseExpiresAt = expiresAt;
+                resumeGenerator();
+            } else {
+                suspendGenerator("worker ID " + workerId + " has been leased by another node");
+                leaseAnotherWorkerId();
+            }
+        } catch (DataAccessException e) {
+            log.warn("Failed to renew lease on worker ID {}: {}", workerId, e.getMessage());
+            // The next heartbeat would come too late to renew before the fence
+            if (!now.isBefore(issueDeadline())) {
+                suspendGenerator("lease on worker ID " + workerId + " could not be renewed before it expires");
+            }
+        }
+    }
+
+    @PreDestroy
+    public void release() {
+        if (workerId < 0) {
+            return;
+        }
+        try {
+            workerIdLeaseRepository.renew(workerId, owner, Instant.EPOCH);
+            log.info("Released lease on worker ID {}", workerId);
+        } catch (DataAccessException e) {
+            log.warn("Failed to release lease on worker ID {}, it will expire on its own: {}", workerId, e.getMessage());
+        }
+    }
+
+    /**
+     * Recovers from a takeover: the node stays suspended until a free worker ID is leased and the generator is moved
+     * to it, retried on every heartbeat while the datacenter has none free.
+     */
+    private void leaseAnotherWorkerId() {
+        int lostWorkerId = workerId;
+        try {
+            long machineId = acquireMachineId();
+            SnowflakeIdGenerator current = generator;
+            if (current != null) {
+                current.reassignMachineId(machineId);
+                resumeGenerator();
+            }
+            log.info("Resumed ID generation on worker ID {} after losing worker ID {}", workerId, lostWorkerId);
+        } catch (IllegalStateException | DataAccessException e) {
+            log.warn("Failed to lease another worker ID after losing worker ID {}: {}", lostWorkerId, e.getMessage());
+        }
+    }
+
+    private void ensureSlotsExist(int firstWorkerId, int slots) {
+        for (int candidate = firstWorkerId; candidate < firstWorkerId + slots; candidate++) {
+            if (workerIdLeaseRepository.existsById(candidate)) {
+                continue;
+            }
+            try {
+                workerIdLeaseRepository.save(new WorkerIdLease(candidate, null, Instant.EPOCH));
+            } catch (DataIntegrityViolationException e) {
+                // Another node created the slot concurrently
+            }
+        }
+    }
+
+    private void suspendGenerator(String reason) {
+        SnowflakeIdGenerator current = generator;
+        if (current != null) {
+            log.error("Suspending ID generation: {}", reason);
+            current.suspend(reason);
+        }
+    }
+
+    private void resumeGenerator() {
+        SnowflakeIdGenerator current = generator;
+        if (current != null) {
+            current.validUntil(issueDeadline().toEpochMilli());
+            current.resume();
+        }
+    }
+
+    // One heartbeat interval of margin: a renewal that fails or runs late is noticed before the lease lapses
+    private Instant issueDeadline() {
+        return leaseExpiresAt.minus(properties.getLease().getHeartbeatInterval());
+    }
+
+    private static String defaultOwner() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "unknown";
+        }
+        return host + ":" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
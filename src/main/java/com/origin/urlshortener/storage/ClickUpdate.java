@@ -0,0 +1,9 @@
+package com.origin.urlshortener.storage;
+
+import java.time.LocalDateTime;
+
+/**
+ * Clicks on one short code since its last update, and the time of the latest of them.
+ */
+public record ClickUpdate(String shortCode, long clicks, LocalDateTime lastAccessedAt) {
+}
@@ -0,0 +1,182 @@
+package com.origin.urlshortener.storage;
+
+import com.origin.urlshortener.config.DataSourceReplicaProperties;
+import com.origin.urlshortener.config.IdGeneratorProperties;
+import com.origin.urlshortener.config.StorageProperties;
+import com.origin.urlshortener.datasource.ReadReplicaRoutingDataSource;
+import com.origin.urlshortener.model.UrlMapping;
+import com.origin.urlshortener.repository.UrlMappingRepository;
+import com.origin.urlshortener.service.UrlMappingKeyMigration;
+import com.origin.urlshortener.util.Base62;
+import com.origin.urlshortener.util.SnowflakeIdGenerator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Default storage engine: url_mappings through Spring Data JPA.
+ */
+@Component
+@ConditionalOnProperty(prefix = "shortener.storage", name = "engine", havingValue = "jpa", matchIfMissing = true)
+public class JpaUrlMappingStore implements UrlMappingStore {
+    private static final int FETCH_SIZE = 1000;
+
+    private final UrlMappingRepository urlMappingRepository;
+    private final UrlMappingKeyMigration keyMigration;
+    private final boolean primaryKeyLookup;
+    // Age below which a short code is looked up on the primary, or 0 without replicas
+    private final long primaryWindowMillis;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+
+    public JpaUrlMappingStore(UrlMappingRepository urlMappingRepository,
+                              UrlMappingKeyMigration keyMigration,
+                              StorageProperties storageProperties,
+                              DataSourceReplicaProperties replicaProperties,
+                              IdGeneratorProperties idGeneratorProperties,
+                              PlatformTransactionManager transactionManager,
+                              JdbcTemplate jdbcTemplate) {
+        this.urlMappingRepository = urlMappingRepository;
+        this.keyMigration = keyMigration;
+        this.primaryKeyLookup = storageProperties.getLookupMode() == StorageProperties.LookupMode.PRIMARY_KEY;
+        this.primaryWindowMillis = replicaProperties.isEnabled()
+                ? primaryWindow(replicaProperties, idGeneratorProperties, storageProperties).toMillis() : 0;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.jdbcTemplate = jdbcTemplate;
+        this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingJdbcTemplate.setFetchSize(FETCH_SIZE);
+    }
+
+    @Override
+    public Optional<UrlMapping> findByShortCode(String shortCode) {
+        if (primaryWindowMillis > 0 && isRecent(shortCode)) {
+            // Replicas may not have the row yet, and a miss there would answer a new link with 404
+            return ReadReplicaRoutingDataSource.onPrimary(() -> lookUp(shortCode));
+        }
+        return lookUp(shortCode);
+    }
+
+    private Optional<UrlMapping> lookUp(String shortCode) {
+        if (primaryKeyLookup && keyMigration.isComplete()) {
+            // The short code is the Base62 form of the primary key
+            long id = Base62.decode(shortCode);
+            return id < 0 ? Optional.empty() : urlMappingRepository.findById(id);
+        }
+        return urlMappingRepository.findByShortCode(shortCode);
+    }
+
+    @Override
+    public Optional<UrlMapping> findByUrlHash(byte[] urlHash) {
+        return urlMappingRepository.findByUrlHash(urlHash);
+    }
+
+    @Override
+    public List<UrlMapping> findByUrlHashIn(Collection<byte[]> urlHashes) {
+        return urlMappingRepository.findByUrlHashIn(urlHashes);
+    }
+
+    @Override
+    public UrlMapping save(UrlMapping urlMapping) {
+        // Flushed so a unique digest violation surfaces here as DataIntegrityViolationException rather than at commit
+        return urlMappingRepository.saveAndFlush(urlMapping);
+    }
+
+    @Override
+    public void insertAll(List<UrlMapping> urlMappings) {
+        urlMappingRepository.saveAll(urlMappings);
+        urlMappingRepository.flush();
+    }
+
+    @Override
+    public void forEachShortCode(Consumer<String> action) {
+        // Builds the short code filter, which must not miss codes a lagging read replica has not received yet
+        ReadReplicaRoutingDataSource.onPrimary(() -> readOnlyTransaction.execute(status -> {
+            try (Stream<String> shortCodes = urlMappingRepository.streamAllShortCodes()) {
+                shortCodes.forEach(action);
+            }
+            return null;
+        }));
+    }
+
+    @Override
+    public List<UrlMapping> findMostRecent(int limit) {
+        return urlMappingRepository.findAll(PageRequest.of(0, limit, Sort.by(Sort.Direction.DESC, "createdAt")))
+                .getContent();
+    }
+
+    @Override
+    public void forEach(Consumer<UrlMapping> action) {
+        // Plain JDBC with a cursor fetch size, so rows never enter a persistence context
+        readOnlyTransaction.executeWithoutResult(status ->
+                streamingJdbcTemplate.query(UrlMappingRows.SELECT_ALL_SQL, rs -> {
+                    action.accept(UrlMappingRows.mapRow(rs));
+                }));
+    }
+
+    @Override
+    public int insertMissing(List<UrlMapping> urlMappings) {
+        return UrlMappingRows.insertMissing(streamingJdbcTemplate, transactionTemplate, urlMappings);
+    }
+
+    @Override
+    public boolean supportsExpiration() {
+        return true;
+    }
+
+    @Override
+    public List<String> deleteExpired(LocalDateTime now, int limit) {
+        Timestamp cutoff = Timestamp.valueOf(now);
+        return transactionTemplate.execute(status -> UrlMappingRows.deleteExpired(jdbcTemplate, cutoff, limit));
+    }
+
+    @Override
+    public void applyClicks(List<ClickUpdate> clickUpdates) {
+        UrlMappingRows.applyClicks(jdbcTemplate, clickUpdates);
+    }
+
+    @Override
+    public <T> T atomically(Supplier<T> work) {
+        return transactionTemplate.execute(status -> work.get());
+    }
+
+    private boolean isRecent(String shortCode) {
+        long id = Base62.decode(shortCode);
+        return id >= 0 && SnowflakeIdGenerator.timestampOf(id) > System.currentTimeMillis() - primaryWindowMillis;
+    }
+
+    /**
+     * The code's timestamp is when its ID was generated, not when its row was committed: a pooled ID can wait up to
+     * the pool's max-age and a write-behind create up to a flush interval before the insert, on top of which the
+     * replicas lag.
+     */
+    static Duration primaryWindow(DataSourceReplicaProperties replicaProperties,
+                                  IdGeneratorProperties idGeneratorProperties,
+                                  StorageProperties storageProperties) {
+        Duration window = replicaProperties.getReplicationLag();
+        if (idGeneratorProperties.getPool().isEnabled()) {
+            window = window.plus(idGeneratorProperties.getPool().getMaxAge());
+        }
+        if (storageProperties.getWriteBehind().isEnabled()) {
+            window = window.plus(storageProperties.getWriteBehind().getFlushInterval());
+        }
+        return window;
+    }
+}
@@ -0,0 +1,226 @@
+package com.origin.urlshortener.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongPredicate;
+
+/**
+ * Memory-mapped open-addressing hash table from a non-zero long key to a long value, with linear probing.
+ *
+ * One thread writes (callers serialize put), any number of threads read. A slot's value is written before its
+ * key is published with a release store, and readers load keys with acquire semantics, so a reader that sees a key
+ * also sees its value and everything written before it. Lookups run on the mapped memory and do not allocate.
+ *
+ * The header records the log position the table covers and whether it was closed cleanly; an index that was not
+ * closed cleanly is discarded and rebuilt from the log by the owner. The table doubles into a new file when it
+ * passes 75% load.
+ */
+class MappedLongIndex implements Closeable {
+    private static final long MAGIC = 0x5552_4C49_4458_3031L; // "URLIDX01"
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 16;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int SIZE_OFFSET = 16;
+    private static final int LOG_POSITION_OFFSET = 24;
+    private static final int CLEAN_OFFSET = 32;
+    // Largest table that fits in one mapping
+    static final int MAX_CAPACITY = 1 << 26;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final Path file;
+    private volatile Table table;
+
+    private record Table(MappedByteBuffer buffer, int capacity) {
+    }
+
+    private MappedLongIndex(Path file, Table table) {
+        this.file = file;
+        this.table = table;
+    }
+
+    /**
+     * Opens an existing index. Returns null if the file is missing, not an index, or was not closed cleanly.
+     * The opened index is marked dirty until close().
+     */
+    static MappedLongIndex openIfClean(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        Table table = map(file, -1);
+        if (table == null || (long) LONGS.get(table.buffer, CLEAN_OFFSET) != 1) {
+            return null;
+        }
+        LONGS.setVolatile(table.buffer, CLEAN_OFFSET, 0L);
+        table.buffer.force();
+        return new MappedLongIndex(file, table);
+    }
+
+    static MappedLongIndex create(Path file, int capacity) throws IOException {
+        Files.deleteIfExists(file);
+        return new MappedLongIndex(file, map(file, tableSize(capacity)));
+    }
+
+    long logPosition() {
+        return (long) LONGS.getVolatile(table.buffer, LOG_POSITION_OFFSET);
+    }
+
+    void setLogPosition(long position) {
+        LONGS.setRelease(table.buffer, LOG_POSITION_OFFSET, position);
+    }
+
+    long size() {
+        return (long) LONGS.getVolatile(table.buffer, SIZE_OFFSET);
+    }
+
+    /**
+     * @return the value stored under key, or -1
+     */
+    long get(long key) {
+        Table t = table;
+        int mask = t.capacity - 1;
+        for (int slot = spread(key) & mask; ; slot = (slot + 1) & mask) {
+            int offset = HEADER_SIZE + slot * SLOT_SIZE;
+            long current = (long) LONGS.getAcquire(t.buffer, offset);
+            if (current == 0) {
+                return -1;
+            }
+            if (current == key) {
+                return (long) LONGS.get(t.buffer, offset + 8);
+            }
+        }
+    }
+
+    /**
+     * @return the first value stored under key that the predicate accepts, or -1. Keys may repeat.
+     */
+    long find(long key, LongPredicate accept) {
+        Table t = table;
+        int mask = t.capacity - 1;
+        for (int slot = spread(key) & mask; ; slot = (slot + 1) & mask) {
+            int offset = HEADER_SIZE + slot * SLOT_SIZE;
+            long current = (long) LONGS.getAcquire(t.buffer, offset);
+            if (current == 0) {
+                return -1;
+            }
+            if (current == key) {
+                long value = (long) LONGS.get(t.buffer, offset + 8);
+                if (accept.test(value)) {
+                    return value;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds an entry. Callers must serialize writes.
+     */
+    void put(long key, long value) throws IOException {
+        if (key == 0) {
+            throw new IllegalArgumentException("Key 0 is reserved for empty slots");
+        }
+        Table t = table;
+        long size = (long) LONGS.get(t.buffer, SIZE_OFFSET);
+        if (size + 1 > t.capacity * 3L / 4) {
+            t = grow(t);
+        }
+        insert(t, key, value);
+        LONGS.setRelease(t.buffer, SIZE_OFFSET, size + 1);
+    }
+
+    void force() {
+        table.buffer.force();
+    }
+
+    @Override
+    public void close() {
+        Table t = table;
+        t.buffer.force();
+        LONGS.setVolatile(t.buffer, CLEAN_OFFSET, 1L);
+        t.buffer.force();
+    }
+
+    private static void insert(Table t, long key, long value) {
+        int mask = t.capacity - 1;
+        int slot = spread(key) & mask;
+        while ((long) LONGS.get(t.buffer, HEADER_SIZE + slot * SLOT_SIZE) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        int offset = HEADER_SIZE + slot * SLOT_SIZE;
+        LONGS.set(t.buffer, offset + 8, value);
+        LONGS.setRelease(t.buffer, offset, key);
+    }
+
+    private Table grow(Table old) throws IOException {
+        if (old.capacity >= MAX_CAPACITY) {
+            throw new IOException("Index " + file + " is full (" + old.capacity + " slots)");
+        }
+        // Build the larger table in a side file, then swap it in; readers still on the old table stay valid
+        Path resized = file.resolveSibling(file.getFileName() + ".resize");
+        Files.deleteIfExists(resized);
+        Table grown = map(resized, tableSize(old.capacity * 2));
+        for (int slot = 0; slot < old.capacity; slot++) {
+            int offset = HEADER_SIZE + slot * SLOT_SIZE;
+            long key = (long) LONGS.get(old.buffer, offset);
+            if (key != 0) {
+                insert(grown, key, (long) LONGS.get(old.buffer, offset + 8));
+            }
+        }
+        LONGS.set(grown.buffer, SIZE_OFFSET, (long) LONGS.get(old.buffer, SIZE_OFFSET));
+        LONGS.set(grown.buffer, LOG_POSITION_OFFSET, (long) LONGS.get(old.buffer, LOG_POSITION_OFFSET));
+        grown.buffer.force();
+        Files.move(resized, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        table = grown;
+        return grown;
+    }
+
+    private static long tableSize(int capacity) {
+        if (Integer.bitCount(capacity) != 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Index capacity must be a power of two up to " + MAX_CAPACITY);
+        }
+        return HEADER_SIZE + (long) capacity * SLOT_SIZE;
+    }
+
+    // size < 0 maps an existing file as-is and returns null if it is not an index
+    private static Table map(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long length = size < 0 ? channel.size() : size;
+            if (length < HEADER_SIZE) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            if (size >= 0) {
+                int capacity = (int) ((size - HEADER_SIZE) / SLOT_SIZE);
+                LONGS.set(buffer, CAPACITY_OFFSET, (long) capacity);
+                LONGS.set(buffer, MAGIC_OFFSET, MAGIC);
+                return new Table(buffer, capacity);
+            }
+            long capacity = (long) LONGS.get(buffer, CAPACITY_OFFSET);
+            if ((long) LONGS.get(buffer, MAGIC_OFFSET) != MAGIC || length != HEADER_SIZE + capacity * SLOT_SIZE) {
+                return null;
+            }
+            return new Table(buffer, (int) capacity);
+        }
+    }
+
+    private static int spread(long key) {
+        // MurmurHash3 finalizer, Snowflake IDs differ mostly in their low bits
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
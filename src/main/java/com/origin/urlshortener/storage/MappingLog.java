@@ -0,0 +1,284 @@
+package com.origin.urlshortener.storage;
+
+import com.origin.urlshortener.model.UrlMapping;
+import com.origin.urlshortener.util.Base62;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of url mappings in a memory-mapped file, the source of truth for the mmap storage engine.
+ *
+ * The file is mapped in fixed-size segments and records never straddle a segment. Each record is
+ * [int length][int crc32c][payload], where the payload is
+ * [byte type][long id][long createdAt seconds][int createdAt nanos][byte hash length][hash][int url length][url UTF-8].
+ * A length of 0 marks the end of the log and -1 pads the rest of a segment. On open the log is scanned and
+ * validated; a record with a bad checksum (a torn write) ends the log and the space after it is cleared.
+ *
+ * One thread appends (callers serialize append), any number of threads read records below end().
+ */
+class MappingLog implements Closeable {
+    static final byte TYPE_MAPPING = 1;
+
+    private static final long MAGIC = 0x5552_4C4C_4F47_3031L; // "URLLOG01"
+    private static final int SEGMENT_SHIFT = 26;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT; // 64 MiB
+    private static final int FILE_HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int PADDING = -1;
+
+    // Offsets within a payload
+    private static final int TYPE = 0;
+    private static final int ID = 1;
+    private static final int SECONDS = 9;
+    private static final int NANOS = 17;
+    private static final int HASH_LENGTH = 21;
+    private static final int HASH = 22;
+
+    private final FileChannel channel;
+    private final boolean fsync;
+    private volatile MappedByteBuffer[] segments;
+    // First free position; records below it are complete
+    private volatile long end;
+    private final ThreadLocal<byte[]> urlBuffers = ThreadLocal.withInitial(() -> new byte[2048]);
+
+    MappingLog(Path file, boolean fsync) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.fsync = fsync;
+        int segmentCount = (int) Math.max(1, (channel.size() + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+        MappedByteBuffer[] mapped = new MappedByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            mapped[i] = map(i);
+        }
+        this.segments = mapped;
+        long magic = mapped[0].getLong(0);
+        if (magic == 0) {
+            mapped[0].putLong(0, MAGIC);
+        } else if (magic != MAGIC) {
+            throw new IOException(file + " is not a url mapping log");
+        }
+        this.end = FILE_HEADER_SIZE;
+    }
+
+    /**
+     * Validates the log from the start and positions the end after the last intact record.
+     */
+    void recover() {
+        long position = FILE_HEADER_SIZE;
+        CRC32C crc = new CRC32C();
+        while (true) {
+            MappedByteBuffer segment = segments[segmentOf(position)];
+            int offset = offsetOf(position);
+            int length = offset + RECORD_HEADER_SIZE <= SEGMENT_SIZE ? segment.getInt(offset) : PADDING;
+            if (length == PADDING) {
+                if (segmentOf(position) + 1 >= segments.length) {
+                    break;
+                }
+                position = nextSegment(position);
+                continue;
+            }
+            if (length == 0) {
+                break;
+            }
+            if (length < 0 || offset + RECORD_HEADER_SIZE + length > SEGMENT_SIZE
+                    || checksum(crc, segment, offset + RECORD_HEADER_SIZE, length) != segment.getInt(offset + 4)) {
+                clearFrom(position);
+                break;
+            }
+            position += RECORD_HEADER_SIZE + length;
+        }
+        end = position;
+    }
+
+    long end() {
+        return end;
+    }
+
+    /**
+     * Appends a mapping and returns its position. Callers must serialize appends.
+     */
+    long append(UrlMapping urlMapping) throws IOException {
+        byte[] hash = urlMapping.getUrlHash();
+        int hashLength = hash == null ? 0 : hash.length;
+        byte[] url = urlMapping.getOriginalUrl().getBytes(StandardCharsets.UTF_8);
+        int length = HASH + hashLength + 4 + url.length;
+        if (RECORD_HEADER_SIZE + length > SEGMENT_SIZE - FILE_HEADER_SIZE) {
+            throw new IOException("Mapping too large for the log: " + length + " bytes");
+        }
+
+        long position = end;
+        if (offsetOf(position) + RECORD_HEADER_SIZE + length > SEGMENT_SIZE) {
+            // Doesn't fit in the rest of this segment: pad it and continue in the next one
+            if (offsetOf(position) + 4 <= SEGMENT_SIZE) {
+                segments[segmentOf(position)].putInt(offsetOf(position), PADDING);
+            }
+            position = nextSegment(position);
+        }
+        int segmentIndex = segmentOf(position);
+        if (segmentIndex >= segments.length) {
+            MappedByteBuffer[] grown = Arrays.copyOf(segments, segmentIndex + 1);
+            grown[segmentIndex] = map(segmentIndex);
+            segments = grown;
+        }
+
+        MappedByteBuffer segment = segments[segmentIndex];
+        int offset = offsetOf(position);
+        int payload = offset + RECORD_HEADER_SIZE;
+        LocalDateTime createdAt = urlMapping.getCreatedAt();
+        segment.put(payload + TYPE, TYPE_MAPPING);
+        segment.putLong(payload + ID, urlMapping.getId());
+        segment.putLong(payload + SECONDS, createdAt.toEpochSecond(ZoneOffset.UTC));
+        segment.putInt(payload + NANOS, createdAt.getNano());
+        segment.put(payload + HASH_LENGTH, (byte) hashLength);
+        if (hashLength > 0) {
+            segment.put(payload + HASH, hash);
+        }
+        segment.putInt(payload + HASH + hashLength, url.length);
+        segment.put(payload + HASH + hashLength + 4, url);
+        segment.putInt(offset + 4, checksum(new CRC32C(), segment, payload, length));
+        // Leftovers of an earlier torn write must not follow this record
+        int following = payload + length;
+        if (following + 4 <= SEGMENT_SIZE) {
+            segment.putInt(following, 0);
+        }
+        // The length goes last: a record with a zero length is not part of the log yet
+        segment.putInt(offset, length);
+        if (fsync) {
+            segment.force(offset, RECORD_HEADER_SIZE + length);
+        }
+        end = position + RECORD_HEADER_SIZE + length;
+        return position;
+    }
+
+    /**
+     * @return the first 8 bytes of the stored digest as a big-endian long, or 0 if the record has no digest
+     */
+    long hashPrefixAt(long position) {
+        MappedByteBuffer segment = segments[segmentOf(position)];
+        int payload = offsetOf(position) + RECORD_HEADER_SIZE;
+        return segment.get(payload + HASH_LENGTH) >= 8 ? segment.getLong(payload + HASH) : 0;
+    }
+
+    long idAt(long position) {
+        return segments[segmentOf(position)].getLong(offsetOf(position) + RECORD_HEADER_SIZE + ID);
+    }
+
+    /**
+     * Compares the stored digest at a position without materializing the record.
+     */
+    boolean hashEquals(long position, byte[] hash) {
+        MappedByteBuffer segment = segments[segmentOf(position)];
+        int payload = offsetOf(position) + RECORD_HEADER_SIZE;
+        if (segment.get(payload + HASH_LENGTH) != hash.length) {
+            return false;
+        }
+        for (int i = 0; i < hash.length; i++) {
+            if (segment.get(payload + HASH + i) != hash[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    UrlMapping read(long position) {
+        MappedByteBuffer segment = segments[segmentOf(position)];
+        int payload = offsetOf(position) + RECORD_HEADER_SIZE;
+        long id = segment.getLong(payload + ID);
+        LocalDateTime createdAt = LocalDateTime.ofEpochSecond(
+                segment.getLong(payload + SECONDS), segment.getInt(payload + NANOS), ZoneOffset.UTC);
+        int hashLength = segment.get(payload + HASH_LENGTH);
+        byte[] hash = null;
+        if (hashLength > 0) {
+            hash = new byte[hashLength];
+            segment.get(payload + HASH, hash);
+        }
+        int urlLength = segment.getInt(payload + HASH + hashLength);
+        byte[] url = urlBuffers.get();
+        if (url.length < urlLength) {
+            url = new byte[urlLength];
+            urlBuffers.set(url);
+        }
+        segment.get(payload + HASH + hashLength + 4, url, 0, urlLength);
+        return new UrlMapping(id, new String(url, 0, urlLength, StandardCharsets.UTF_8), Base62.encode(id), hash,
+                createdAt, 0, null, null, null, true);
+    }
+
+    /**
+     * Position of the record following the one at position, or end() if there is none.
+     */
+    long next(long position) {
+        return seek(position + RECORD_HEADER_SIZE + segments[segmentOf(position)].getInt(offsetOf(position)));
+    }
+
+    long first() {
+        return seek(FILE_HEADER_SIZE);
+    }
+
+    /**
+     * Position of the first record at or after a record boundary (skipping segment padding), or end().
+     */
+    long seek(long position) {
+        long limit = end;
+        if (position >= limit) {
+            return limit;
+        }
+        int offset = offsetOf(position);
+        if (offset + RECORD_HEADER_SIZE > SEGMENT_SIZE || segments[segmentOf(position)].getInt(offset) == PADDING) {
+            return Math.min(nextSegment(position), limit);
+        }
+        return position;
+    }
+
+    void force() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private MappedByteBuffer map(int segmentIndex) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_WRITE, (long) segmentIndex << SEGMENT_SHIFT, SEGMENT_SIZE);
+    }
+
+    private void clearFrom(long position) {
+        MappedByteBuffer segment = segments[segmentOf(position)];
+        for (int i = offsetOf(position); i < SEGMENT_SIZE; i++) {
+            if (segment.get(i) != 0) {
+                segment.put(i, (byte) 0);
+            }
+        }
+    }
+
+    private static int checksum(CRC32C crc, ByteBuffer segment, int offset, int length) {
+        crc.reset();
+        crc.update(segment.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    private static int segmentOf(long position) {
+        return (int) (position >>> SEGMENT_SHIFT);
+    }
+
+    private static int offsetOf(long position) {
+        return (int) (position & (SEGMENT_SIZE - 1));
+    }
+
+    private static long nextSegment(long position) {
+        return ((position >>> SEGMENT_SHIFT) + 1) << SEGMENT_SHIFT;
+    }
+}
@@ -0,0 +1,265 @@
+package com.origin.urlshortener.storage;
+
+import com.origin.urlshortener.config.StorageProperties;
+import com.origin.urlshortener.model.UrlMapping;
+import com.origin.urlshortener.util.Base62;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Embedded storage engine: an append-only mapping log plus two memory-mapped hash indexes, one from Snowflake ID
+ * to log position (lookups) and one from digest prefix to log position (deduplication).
+ *
+ * A redirect lookup decodes the short code to its ID and probes the ID index in mapped memory; only the returned
+ * mapping is materialized on the heap. Writes are serialized by one lock. On startup the log is validated and
+ * replayed into the indexes from the position they cover, or from the start if they were not closed cleanly.
+ *
+ * Mappings are immutable here: click counts and expiring links are not stored by this engine.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "shortener.storage", name = "engine", havingValue = "mmap")
+public class MmapUrlMappingStore implements UrlMappingStore {
+    private final MappingLog mappingLog;
+    private final MappedLongIndex idIndex;
+    private final MappedLongIndex hashIndex;
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    public MmapUrlMappingStore(StorageProperties storageProperties) throws IOException {
+        StorageProperties.Mmap properties = storageProperties.getMmap();
+        Path directory = Path.of(properties.getDirectory());
+        Files.createDirectories(directory);
+        this.mappingLog = new MappingLog(directory.resolve("mappings.log"), properties.isFsync());
+        mappingLog.recover();
+
+        MappedLongIndex ids = MappedLongIndex.openIfClean(directory.resolve("ids.idx"));
+        MappedLongIndex hashes = MappedLongIndex.openIfClean(directory.resolve("hashes.idx"));
+        if (ids == null || hashes == null || ids.logPosition() != hashes.logPosition()
+                || ids.logPosition() > mappingLog.end()) {
+            // Missing, not closed cleanly or ahead of the log: rebuild both from the start of the log
+            ids = MappedLongIndex.create(directory.resolve("ids.idx"), properties.getIndexCapacity());
+            hashes = MappedLongIndex.create(directory.resolve("hashes.idx"), properties.getIndexCapacity());
+        }
+        this.idIndex = ids;
+        this.hashIndex = hashes;
+
+        long replayed = 0;
+        long end = mappingLog.end();
+        long start = idIndex.logPosition() == 0 ? mappingLog.first() : mappingLog.seek(idIndex.logPosition());
+        for (long position = start; position < end; position = mappingLog.next(position)) {
+            index(position, mappingLog.idAt(position), mappingLog.hashPrefixAt(position));
+            replayed++;
+        }
+        idIndex.setLogPosition(end);
+        hashIndex.setLogPosition(end);
+        log.info("Opened mapping log in {} with {} mappings ({} replayed into the indexes)",
+                directory.toAbsolutePath(), idIndex.size(), replayed);
+    }
+
+    @Override
+    public Optional<UrlMapping> findByShortCode(String shortCode) {
+        long id = Base62.decode(shortCode);
+        if (id <= 0) {
+            return Optional.empty();
+        }
+        long position = idIndex.get(id);
+        return position < 0 ? Optional.empty() : Optional.of(mappingLog.read(position));
+    }
+
+    @Override
+    public Optional<UrlMapping> findByUrlHash(byte[] urlHash) {
+        long position = hashIndex.find(hashKey(urlHash), candidate -> mappingLog.hashEquals(candidate, urlHash));
+        return position < 0 ? Optional.empty() : Optional.of(mappingLog.read(position));
+    }
+
+    @Override
+    public List<UrlMapping> findByUrlHashIn(Collection<byte[]> urlHashes) {
+        List<UrlMapping> found = new ArrayList<>();
+        for (byte[] urlHash : urlHashes) {
+            findByUrlHash(urlHash).ifPresent(found::add);
+        }
+        return found;
+    }
+
+    @Override
+    public UrlMapping save(UrlMapping urlMapping) {
+        writeLock.lock();
+        try {
+            append(urlMapping);
+            return urlMapping;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void insertAll(List<UrlMapping> urlMappings) {
+        writeLock.lock();
+        try {
+            for (UrlMapping urlMapping : urlMappings) {
+                append(urlMapping);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void forEachShortCode(Consumer<String> action) {
+        long end = mappingLog.end();
+        for (long position = mappingLog.first(); position < end; position = mappingLog.next(position)) {
+            action.accept(Base62.encode(mappingLog.idAt(position)));
+        }
+    }
+
+    @Override
+    public List<UrlMapping> findMostRecent(int limit) {
+        // The log is in creation order, so the most recent mappings are its last records
+        long[] recent = new long[Math.max(0, limit)];
+        long seen = 0;
+        long end = mappingLog.end();
+        for (long position = mappingLog.first(); position < end && limit > 0; position = mappingLog.next(position)) {
+            recent[(int) (seen++ % limit)] = position;
+        }
+        List<UrlMapping> mappings = new ArrayList<>();
+        for (long i = seen - 1; i >= Math.max(0, seen - limit); i--) {
+            mappings.add(mappingLog.read(recent[(int) (i % limit)]));
+        }
+        return mappings;
+    }
+
+    @Override
+    public void forEach(Consumer<UrlMapping> action) {
+        long end = mappingLog.end();
+        for (long position = mappingLog.first(); position < end; position = mappingLog.next(position)) {
+            action.accept(mappingLog.read(position));
+        }
+    }
+
+    @Override
+    public int insertMissing(List<UrlMapping> urlMappings) {
+        writeLock.lock();
+        try {
+            int inserted = 0;
+            for (UrlMapping urlMapping : urlMappings) {
+                if (urlMapping.hasLimits() || idIndex.get(urlMapping.getId()) >= 0
+                        || (urlMapping.getUrlHash() != null && findByUrlHash(urlMapping.getUrlHash()).isPresent())) {
+                    continue;
+                }
+                append(urlMapping);
+                inserted++;
+            }
+            return inserted;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean supportsExpiration() {
+        return false;
+    }
+
+    @Override
+    public List<String> deleteExpired(LocalDateTime now, int limit) {
+        return List.of();
+    }
+
+    @Override
+    public void applyClicks(List<ClickUpdate> clickUpdates) {
+        // Records are immutable; click counts are not kept
+    }
+
+    @Override
+    public <T> T atomically(Supplier<T> work) {
+        writeLock.lock();
+        try {
+            return work.get();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        writeLock.lock();
+        try {
+            // Log first, so the indexes never claim to cover records that are not on disk
+            mappingLog.close();
+            idIndex.close();
+            hashIndex.close();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void append(UrlMapping urlMapping) {
+        if (urlMapping.hasLimits()) {
+            throw new InvalidDataAccessApiUsageException("The mmap storage engine does not store expiring links");
+        }
+        if (idIndex.get(urlMapping.getId()) >= 0) {
+            throw new DataIntegrityViolationException("Duplicate mapping id " + urlMapping.getId());
+        }
+        if (urlMapping.getUrlHash() != null && findByUrlHash(urlMapping.getUrlHash()).isPresent()) {
+            throw new DataIntegrityViolationException("Duplicate url hash for " + urlMapping.getOriginalUrl());
+        }
+        try {
+            long position = mappingLog.append(urlMapping);
+            index(position, urlMapping.getId(), hashPrefix(urlMapping.getUrlHash()));
+            idIndex.setLogPosition(mappingLog.end());
+            hashIndex.setLogPosition(mappingLog.end());
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Failed to append to the mapping log", e);
+        }
+        urlMapping.setPersisted(true);
+    }
+
+    private void index(long position, long id, long hashPrefix) {
+        try {
+            idIndex.put(id, position);
+            if (hashPrefix != 0) {
+                hashIndex.put(hashKeyOf(hashPrefix), position);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long hashPrefix(byte[] urlHash) {
+        if (urlHash == null || urlHash.length < 8) {
+            return 0;
+        }
+        long prefix = 0;
+        for (int i = 0; i < 8; i++) {
+            prefix = (prefix << 8) | (urlHash[i] & 0xFF);
+        }
+        return prefix;
+    }
+
+    private static long hashKey(byte[] urlHash) {
+        return hashKeyOf(hashPrefix(urlHash));
+    }
+
+    // 0 marks an empty index slot
+    private static long hashKeyOf(long hashPrefix) {
+        return hashPrefix == 0 ? 1 : hashPrefix;
+    }
+}
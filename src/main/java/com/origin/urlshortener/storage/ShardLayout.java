@@ -0,0 +1,93 @@
+package com.origin.urlshortener.storage;
+
+import com.origin.urlshortener.config.StorageProperties;
+import com.origin.urlshortener.util.SnowflakeIdGenerator;
+import com.origin.urlshortener.util.UrlDigest;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Computes which shard holds a Snowflake ID (and so a short code) under one set of owning shards, so lookups need no
+ * directory.
+ *
+ * HASH places each shard at virtual-nodes points on a ring of 64-bit hashes of its name; an ID belongs to the first
+ * point at or after its own hash. Adding or removing a shard only moves the IDs on the arcs it gains or loses. TIME
+ * gives each shard the IDs created from its start time until the next shard's, read from the ID's timestamp bits.
+ */
+final class ShardLayout {
+    private final StorageProperties.ShardingStrategy strategy;
+    // Ring points (HASH) or start times (TIME) in ascending order, and the shard index at each
+    private final long[] points;
+    private final int[] owners;
+
+    ShardLayout(StorageProperties.Sharded properties, Predicate<StorageProperties.ShardState> member) {
+        this.strategy = properties.getStrategy();
+        List<long[]> entries = new ArrayList<>();
+        List<StorageProperties.Shard> shards = properties.getShards();
+        for (int index = 0; index < shards.size(); index++) {
+            StorageProperties.Shard shard = shards.get(index);
+            if (!member.test(shard.getState())) {
+                continue;
+            }
+            if (strategy == StorageProperties.ShardingStrategy.HASH) {
+                for (int node = 0; node < properties.getVirtualNodes(); node++) {
+                    entries.add(new long[]{pointOf(shard.getName() + "#" + node), index});
+                }
+            } else {
+                long start = shard.getFrom() == null ? Long.MIN_VALUE : shard.getFrom().toEpochMilli();
+                entries.add(new long[]{start, index});
+            }
+        }
+        if (entries.isEmpty()) {
+            throw new IllegalArgumentException("No shard owns mappings in the " + strategy + " layout");
+        }
+        entries.sort(Comparator.comparingLong(entry -> entry[0]));
+        this.points = new long[entries.size()];
+        this.owners = new int[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            points[i] = entries.get(i)[0];
+            owners[i] = (int) entries.get(i)[1];
+        }
+    }
+
+    /**
+     * @return index of the shard holding the ID, into the configured shard list
+     */
+    int shardOf(long id) {
+        if (strategy == StorageProperties.ShardingStrategy.HASH) {
+            int position = ceiling(points, mix(id));
+            return owners[position == points.length ? 0 : position];
+        }
+        int position = floor(points, SnowflakeIdGenerator.timestampOf(id));
+        return owners[Math.max(position, 0)];
+    }
+
+    private static long pointOf(String key) {
+        return ByteBuffer.wrap(UrlDigest.sha256(key)).getLong();
+    }
+
+    // SplitMix64 finalizer: sequential IDs from one worker land far apart on the ring
+    private static long mix(long id) {
+        long z = id;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    // First index whose value is >= key, or the length
+    private static int ceiling(long[] values, long key) {
+        int position = Arrays.binarySearch(values, key);
+        return position >= 0 ? position : -position - 1;
+    }
+
+    // Last index whose value is <= key, or -1
+    private static int floor(long[] values, long key) {
+        int position = Arrays.binarySearch(values, key);
+        return position >= 0 ? position : -position - 2;
+    }
+}
@@ -0,0 +1,247 @@
+package com.origin.urlshortener.storage;
+
+import com.origin.urlshortener.config.StorageProperties;
+import com.origin.urlshortener.model.UrlMapping;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Moves mappings to the shard owning them under the new layout while resharding.
+ *
+ * Each shard is scanned in ID order, batch-size rows at a time. Mappings owned elsewhere are copied to their owner
+ * and only deleted here once the copy is confirmed, so a lookup trying the previous owner first and then the new one
+ * always finds them. A mapping whose URL digest is already held by a different mapping in the owner loses its digest,
+ * which only affects deduplication. Several nodes may rebalance at once; each copy and delete is idempotent.
+ *
+ * Click updates are applied on both shards while resharding, but those made before the copy existed only reached
+ * this one. A mapping is therefore only deleted while its click count is still the one copied; otherwise the copy
+ * catches up with the current row first.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "shortener.storage", name = "engine", havingValue = "sharded")
+public class ShardRebalancer implements SmartLifecycle {
+    private static final String SCAN_SQL = UrlMappingRows.SELECT_COLUMNS + " WHERE id > ? ORDER BY id";
+    private static final String BY_ID_SQL = UrlMappingRows.SELECT_COLUMNS + " WHERE id = ?";
+    private static final String DELETE_SQL = "DELETE FROM url_mappings WHERE id = ? AND click_count = ?";
+    // Never lowers the copy: updates made after it was inserted reached it as well
+    private static final String CATCH_UP_SQL =
+            "UPDATE url_mappings SET " +
+            "click_count = CASE WHEN click_count < ? THEN ? ELSE click_count END, " +
+            "last_accessed_at = CASE WHEN last_accessed_at IS NULL OR last_accessed_at < ? " +
+            "THEN ? ELSE last_accessed_at END, " +
+            "expires_at = CASE WHEN expires_at IS NULL THEN ? ELSE expires_at END " +
+            "WHERE id = ?";
+    private static final RowMapper<UrlMapping> ROW_MAPPER = (rs, rowNum) -> UrlMappingRows.mapRow(rs);
+
+    private final StorageProperties.Sharded properties;
+    private final ShardedUrlMappingStore store;
+    private Thread rebalancer;
+    private volatile boolean running;
+    private volatile boolean stopRequested;
+
+    public ShardRebalancer(StorageProperties storageProperties, ShardedUrlMappingStore store) {
+        this.properties = storageProperties.getSharded();
+        this.store = store;
+    }
+
+    /**
+     * Moves every mapping held by a shard other than its owner.
+     *
+     * @return number of mappings moved
+     */
+    public long rebalance() {
+        List<ShardedUrlMappingStore.Shard> shards = store.shards();
+        ShardLayout layout = store.layout();
+        long moved = 0;
+        for (int index = 0; index < shards.size() && !stopRequested; index++) {
+            ShardedUrlMappingStore.Shard source = shards.get(index);
+            long lastId = Long.MIN_VALUE;
+            while (!stopRequested) {
+                List<UrlMapping> batch = scan(source, lastId);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                lastId = batch.get(batch.size() - 1).getId();
+                Map<ShardedUrlMappingStore.Shard, List<UrlMapping>> misplaced = new LinkedHashMap<>();
+                for (UrlMapping urlMapping : batch) {
+                    int owner = layout.shardOf(urlMapping.getId());
+                    if (owner != index) {
+                        misplaced.computeIfAbsent(shards.get(owner), shard -> new ArrayList<>()).add(urlMapping);
+                    }
+                }
+                for (Map.Entry<ShardedUrlMappingStore.Shard, List<UrlMapping>> entry : misplaced.entrySet()) {
+                    moved += move(source, entry.getKey(), entry.getValue());
+                }
+                if (batch.size() < properties.getRebalanceBatchSize() || !pause()) {
+                    break;
+                }
+            }
+        }
+        return moved;
+    }
+
+    private List<UrlMapping> scan(ShardedUrlMappingStore.Shard shard, long afterId) {
+        return shard.jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(SCAN_SQL);
+            ps.setLong(1, afterId);
+            ps.setMaxRows(properties.getRebalanceBatchSize());
+            return ps;
+        }, ROW_MAPPER);
+    }
+
+    /**
+     * Copies the mappings, as scanned from source, to target and deletes them from source.
+     *
+     * @return number of mappings moved
+     */
+    int move(ShardedUrlMappingStore.Shard source, ShardedUrlMappingStore.Shard target,
+                     List<UrlMapping> urlMappings) {
+        UrlMappingRows.insertMissing(target.jdbcTemplate, target.transaction, urlMappings);
+        Set<Long> copied = presentIds(target, urlMappings);
+        List<UrlMapping> conflicting = new ArrayList<>();
+        for (UrlMapping urlMapping : urlMappings) {
+            if (!copied.contains(urlMapping.getId())) {
+                // Another mapping for the same URL is already in the target
+                urlMapping.setUrlHash(null);
+                conflicting.add(urlMapping);
+            }
+        }
+        if (!conflicting.isEmpty()) {
+            UrlMappingRows.insertMissing(target.jdbcTemplate, target.transaction, conflicting);
+            copied = presentIds(target, urlMappings);
+        }
+        if (copied.isEmpty()) {
+            return 0;
+        }
+        List<UrlMapping> deletes = new ArrayList<>(copied.size());
+        for (UrlMapping urlMapping : urlMappings) {
+            if (copied.contains(urlMapping.getId())) {
+                deletes.add(urlMapping);
+            }
+        }
+        int[][] counts = source.jdbcTemplate.batchUpdate(DELETE_SQL, deletes, deletes.size(), (ps, urlMapping) -> {
+            ps.setLong(1, urlMapping.getId());
+            ps.setLong(2, urlMapping.getClickCount());
+        });
+        int moved = 0;
+        for (int i = 0; i < deletes.size(); i++) {
+            if (counts[0][i] != 0 || catchUpAndDelete(source, target, deletes.get(i).getId())) {
+                moved++;
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Brings the copy up to date with a mapping clicked since it was scanned, then deletes it here.
+     *
+     * @return false if the mapping was deleted meanwhile, or rebalancing is stopping
+     */
+    private boolean catchUpAndDelete(ShardedUrlMappingStore.Shard source, ShardedUrlMappingStore.Shard target,
+                                     long id) {
+        while (!stopRequested) {
+            List<UrlMapping> current = source.jdbcTemplate.query(BY_ID_SQL, ROW_MAPPER, id);
+            if (current.isEmpty()) {
+                return false;
+            }
+            UrlMapping urlMapping = current.get(0);
+            target.jdbcTemplate.update(CATCH_UP_SQL, ps -> {
+                Timestamp lastAccessedAt = toTimestamp(urlMapping.getLastAccessedAt());
+                ps.setLong(1, urlMapping.getClickCount());
+                ps.setLong(2, urlMapping.getClickCount());
+                ps.setTimestamp(3, lastAccessedAt);
+                ps.setTimestamp(4, lastAccessedAt);
+                ps.setTimestamp(5, toTimestamp(urlMapping.getExpiresAt()));
+                ps.setLong(6, id);
+            });
+            // Clicked again in between: catch up once more
+            if (source.jdbcTemplate.update(DELETE_SQL, id, urlMapping.getClickCount()) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Timestamp toTimestamp(LocalDateTime dateTime) {
+        return dateTime == null ? null : Timestamp.valueOf(dateTime);
+    }
+
+    private static Set<Long> presentIds(ShardedUrlMappingStore.Shard shard, List<UrlMapping> urlMappings) {
+        String sql = "SELECT id FROM url_mappings WHERE id IN ("
+                + String.join(", ", Collections.nCopies(urlMappings.size(), "?")) + ")";
+        Object[] ids = urlMappings.stream().map(UrlMapping::getId).toArray();
+        return new HashSet<>(shard.jdbcTemplate.queryForList(sql, Long.class, ids));
+    }
+
+    private boolean pause() {
+        try {
+            // Interrupted by stop()
+            Thread.sleep(properties.getRebalancePause());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void rebalanceQuietly() {
+        try {
+            long moved = rebalance();
+            if (!stopRequested) {
+                log.info("Rebalancing complete, {} mappings moved; set JOINING shards to ACTIVE and remove "
+                        + "DRAINING shards on every node", moved);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Shard rebalancing failed, restart to resume: {}", e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Shard rebalancing failed", e);
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!properties.isRebalance() || !store.isResharding()) {
+            return;
+        }
+        running = true;
+        rebalancer = new Thread(this::rebalanceQuietly, "shard-rebalancer");
+        rebalancer.setDaemon(true);
+        rebalancer.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        stopRequested = true;
+        rebalancer.interrupt();
+        try {
+            rebalancer.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,358 @@
+package com.origin.urlshortener.storage;
+
+import com.origin.urlshortener.config.StorageProperties;
+import com.origin.urlshortener.model.UrlMapping;
+import com.origin.urlshortener.util.Base62;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Storage engine spreading url_mappings over several databases (shortener.storage.sharded.*).
+ *
+ * The shard holding a short code is computed from the code by {@link ShardLayout}, so a lookup is a single primary
+ * key query on one shard. Deduplication by URL digest cannot be routed that way and queries every shard in parallel;
+ * the unique digest index only holds within a shard, so two nodes creating the same URL at the same moment can both
+ * succeed, each code working.
+ *
+ * While resharding (any shard JOINING or DRAINING) a mapping may still be in the shard that held it under the
+ * previous layout, until {@link ShardRebalancer} moves it. Lookups then also try that shard, and new mappings go to
+ * the new owner. Writes across shards (bulk inserts) are not atomic.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "shortener.storage", name = "engine", havingValue = "sharded")
+public class ShardedUrlMappingStore implements UrlMappingStore, DisposableBean {
+    private static final int FETCH_SIZE = 1000;
+    private static final String BY_ID_SQL = UrlMappingRows.SELECT_COLUMNS + " WHERE id = ?";
+    private static final String BY_URL_HASH_SQL = UrlMappingRows.SELECT_COLUMNS + " WHERE url_hash = ?";
+    private static final String SHORT_CODES_SQL = "SELECT short_code FROM url_mappings";
+    private static final String MOST_RECENT_SQL = UrlMappingRows.SELECT_COLUMNS + " ORDER BY created_at DESC";
+    private static final RowMapper<UrlMapping> ROW_MAPPER = (rs, rowNum) -> UrlMappingRows.mapRow(rs);
+
+    private final List<Shard> shards = new ArrayList<>();
+    private final ShardLayout layout;
+    // Layout before the resharding in progress, or null
+    private final ShardLayout previousLayout;
+    private final ExecutorService fanOut = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ShardedUrlMappingStore(StorageProperties storageProperties) {
+        StorageProperties.Sharded properties = storageProperties.getSharded();
+        Set<String> names = new HashSet<>();
+        for (StorageProperties.Shard shard : properties.getShards()) {
+            if (!StringUtils.hasText(shard.getName()) || !names.add(shard.getName())
+                    || !StringUtils.hasText(shard.getUrl())) {
+                throw new IllegalArgumentException("Every shard needs a unique name and a url: " + shard);
+            }
+        }
+        this.layout = new ShardLayout(properties, state -> state != StorageProperties.ShardState.DRAINING);
+        boolean resharding = properties.getShards().stream()
+                .anyMatch(shard -> shard.getState() != StorageProperties.ShardState.ACTIVE);
+        this.previousLayout = resharding
+                ? new ShardLayout(properties, state -> state != StorageProperties.ShardState.JOINING) : null;
+
+        ResourceDatabasePopulator schema =
+                new ResourceDatabasePopulator(new DefaultResourceLoader().getResource(properties.getSchema()));
+        for (StorageProperties.Shard config : properties.getShards()) {
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName("shard-" + config.getName());
+            dataSource.setJdbcUrl(config.getUrl());
+            dataSource.setUsername(config.getUsername());
+            dataSource.setPassword(config.getPassword());
+            dataSource.setMaximumPoolSize(properties.getMaximumPoolSize());
+            schema.execute(dataSource);
+            shards.add(new Shard(config.getName(), dataSource));
+        }
+        log.info("Sharded storage over {} shards by {}{}", shards.size(), properties.getStrategy(),
+                resharding ? ", resharding in progress" : "");
+    }
+
+    @Override
+    public Optional<UrlMapping> findByShortCode(String shortCode) {
+        long id = Base62.decode(shortCode);
+        if (id < 0) {
+            return Optional.empty();
+        }
+        int owner = layout.shardOf(id);
+        if (previousLayout != null) {
+            int previousOwner = previousLayout.shardOf(id);
+            // The previous owner first: a mapping is copied to its new owner before it is deleted here, so a miss
+            // means it is already there
+            if (previousOwner != owner) {
+                Optional<UrlMapping> found = findById(shards.get(previousOwner), id);
+                if (found.isPresent()) {
+                    return found;
+                }
+            }
+        }
+        return findById(shards.get(owner), id);
+    }
+
+    @Override
+    public Optional<UrlMapping> findByUrlHash(byte[] urlHash) {
+        List<List<UrlMapping>> byShard =
+                fanOut(shard -> shard.jdbcTemplate.query(BY_URL_HASH_SQL, ROW_MAPPER, urlHash));
+        for (List<UrlMapping> found : byShard) {
+            if (!found.isEmpty()) {
+                return Optional.of(found.get(0));
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public List<UrlMapping> findByUrlHashIn(Collection<byte[]> urlHashes) {
+        if (urlHashes.isEmpty()) {
+            return List.of();
+        }
+        String sql = UrlMappingRows.SELECT_COLUMNS + " WHERE url_hash IN ("
+                + String.join(", ", Collections.nCopies(urlHashes.size(), "?")) + ")";
+        Object[] args = urlHashes.toArray();
+        Map<ByteBuffer, UrlMapping> found = new LinkedHashMap<>();
+        for (List<UrlMapping> shardFound : fanOut(shard -> shard.jdbcTemplate.query(sql, ROW_MAPPER, args))) {
+            for (UrlMapping urlMapping : shardFound) {
+                found.putIfAbsent(ByteBuffer.wrap(urlMapping.getUrlHash()), urlMapping);
+            }
+        }
+        return new ArrayList<>(found.values());
+    }
+
+    @Override
+    public UrlMapping save(UrlMapping urlMapping) {
+        // A duplicate digest in the owning shard surfaces as DataIntegrityViolationException, as with JPA
+        ownerOf(urlMapping).jdbcTemplate.update(UrlMappingRows.INSERT_SQL,
+                ps -> UrlMappingRows.bindColumns(ps, urlMapping));
+        urlMapping.setPersisted(true);
+        return urlMapping;
+    }
+
+    @Override
+    public void insertAll(List<UrlMapping> urlMappings) {
+        // One transaction per shard
+        byOwner(urlMappings).forEach((shard, owned) -> shard.transaction.executeWithoutResult(status ->
+                shard.jdbcTemplate.batchUpdate(UrlMappingRows.INSERT_SQL, owned, owned.size(),
+                        UrlMappingRows::bindColumns)));
+        urlMappings.forEach(urlMapping -> urlMapping.setPersisted(true));
+    }
+
+    @Override
+    public void forEachShortCode(Consumer<String> action) {
+        for (Shard shard : shards) {
+            shard.readOnlyTransaction.executeWithoutResult(status ->
+                    shard.streamingJdbcTemplate.query(SHORT_CODES_SQL, rs -> {
+                        action.accept(rs.getString(1));
+                    }));
+        }
+    }
+
+    @Override
+    public List<UrlMapping> findMostRecent(int limit) {
+        List<UrlMapping> recent = new ArrayList<>();
+        fanOut(shard -> shard.jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(MOST_RECENT_SQL);
+            ps.setMaxRows(limit);
+            return ps;
+        }, ROW_MAPPER)).forEach(recent::addAll);
+        Set<Long> seen = new HashSet<>();
+        return recent.stream()
+                .filter(urlMapping -> seen.add(urlMapping.getId()))
+                .sorted(Comparator.comparing(UrlMapping::getCreatedAt).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Visits the shards one after another. While resharding, a mapping being moved at that moment can be visited twice.
+     */
+    @Override
+    public void forEach(Consumer<UrlMapping> action) {
+        for (Shard shard : shards) {
+            shard.readOnlyTransaction.executeWithoutResult(status ->
+                    shard.streamingJdbcTemplate.query(UrlMappingRows.SELECT_ALL_SQL, rs -> {
+                        action.accept(UrlMappingRows.mapRow(rs));
+                    }));
+        }
+    }
+
+    @Override
+    public int insertMissing(List<UrlMapping> urlMappings) {
+        int inserted = 0;
+        for (Map.Entry<Shard, List<UrlMapping>> owned : byOwner(urlMappings).entrySet()) {
+            Shard shard = owned.getKey();
+            inserted += UrlMappingRows.insertMissing(shard.jdbcTemplate, shard.transaction, owned.getValue());
+        }
+        return inserted;
+    }
+
+    @Override
+    public boolean supportsExpiration() {
+        return true;
+    }
+
+    @Override
+    public List<String> deleteExpired(LocalDateTime now, int limit) {
+        Timestamp cutoff = Timestamp.valueOf(now);
+        List<String> deleted = new ArrayList<>();
+        for (Shard shard : shards) {
+            int remaining = limit - deleted.size();
+            if (remaining <= 0) {
+                break;
+            }
+            deleted.addAll(shard.transaction.execute(status ->
+                    UrlMappingRows.deleteExpired(shard.jdbcTemplate, cutoff, remaining)));
+        }
+        return deleted;
+    }
+
+    /**
+     * Runs the work without a transaction, which could not span shards. Concurrent creates of the same URL on this
+     * node are coalesced by the service, and each shard's unique indexes reject conflicting inserts.
+     */
+    @Override
+    public <T> T atomically(Supplier<T> work) {
+        return work.get();
+    }
+
+    /**
+     * Applies each update on the shard owning its short code. While resharding it is also applied on the previous
+     * owner, where a mapping not moved yet still is; ShardRebalancer relies on both receiving every update.
+     */
+    @Override
+    public void applyClicks(List<ClickUpdate> clickUpdates) {
+        Map<Shard, List<ClickUpdate>> byShard = new LinkedHashMap<>();
+        for (ClickUpdate clickUpdate : clickUpdates) {
+            long id = Base62.decode(clickUpdate.shortCode());
+            if (id < 0) {
+                continue;
+            }
+            Shard owner = shards.get(layout.shardOf(id));
+            byShard.computeIfAbsent(owner, shard -> new ArrayList<>()).add(clickUpdate);
+            if (previousLayout != null) {
+                Shard previousOwner = shards.get(previousLayout.shardOf(id));
+                if (previousOwner != owner) {
+                    byShard.computeIfAbsent(previousOwner, shard -> new ArrayList<>()).add(clickUpdate);
+                }
+            }
+        }
+        byShard.forEach((shard, updates) -> UrlMappingRows.applyClicks(shard.jdbcTemplate, updates));
+    }
+
+    boolean isResharding() {
+        return previousLayout != null;
+    }
+
+    List<Shard> shards() {
+        return shards;
+    }
+
+    ShardLayout layout() {
+        return layout;
+    }
+
+    private Shard ownerOf(UrlMapping urlMapping) {
+        return shards.get(layout.shardOf(urlMapping.getId()));
+    }
+
+    private Map<Shard, List<UrlMapping>> byOwner(List<UrlMapping> urlMappings) {
+        Map<Shard, List<UrlMapping>> byShard = new LinkedHashMap<>();
+        for (UrlMapping urlMapping : urlMappings) {
+            byShard.computeIfAbsent(ownerOf(urlMapping), shard -> new ArrayList<>()).add(urlMapping);
+        }
+        return byShard;
+    }
+
+    private static Optional<UrlMapping> findById(Shard shard, long id) {
+        return shard.jdbcTemplate.query(BY_ID_SQL, ROW_MAPPER, id).stream().findFirst();
+    }
+
+    /**
+     * Runs the query on every shard at once, on virtual threads.
+     *
+     * @return the results in shard order
+     */
+    private <T> List<T> fanOut(Function<Shard, T> query) {
+        if (shards.size() == 1) {
+            return List.of(query.apply(shards.get(0)));
+        }
+        List<Future<T>> futures = new ArrayList<>(shards.size());
+        for (Shard shard : shards) {
+            futures.add(fanOut.submit(() -> query.apply(shard)));
+        }
+        List<T> results = new ArrayList<>(shards.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while querying shards", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+        return results;
+    }
+
+    @Override
+    public void destroy() {
+        fanOut.shutdownNow();
+        shards.forEach(shard -> shard.dataSource.close());
+    }
+
+    static final class Shard {
+        final String name;
+        final HikariDataSource dataSource;
+        final JdbcTemplate jdbcTemplate;
+        // Fetches in chunks for full scans; setMaxRows queries use jdbcTemplate, as H2 rejects a larger fetch size
+        final JdbcTemplate streamingJdbcTemplate;
+        final TransactionTemplate transaction;
+        final TransactionTemplate readOnlyTransaction;
+
+        Shard(String name, HikariDataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.jdbcTemplate = new JdbcTemplate(dataSource);
+            this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+            this.streamingJdbcTemplate.setFetchSize(FETCH_SIZE);
+            DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+            this.transaction = new TransactionTemplate(transactionManager);
+            this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+            this.readOnlyTransaction.setReadOnly(true);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.origin.urlshortener.storage;
+
+import com.origin.urlshortener.model.UrlMapping;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Plain JDBC access to a url_mappings table, shared by the engines that store mappings in one or more of them.
+ */
+final class UrlMappingRows {
+    static final String SELECT_COLUMNS =
+            "SELECT id, original_url, short_code, url_hash, created_at, click_count, last_accessed_at, " +
+            "expires_at, max_clicks FROM url_mappings";
+    static final String SELECT_ALL_SQL = SELECT_COLUMNS + " ORDER BY id";
+    static final String INSERT_SQL =
+            "INSERT INTO url_mappings (id, original_url, short_code, url_hash, created_at, click_count, " +
+            "last_accessed_at, expires_at, max_clicks) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    // Portable ON CONFLICT DO NOTHING: the row is only selected for insert if it conflicts with no unique key
+    static final String INSERT_MISSING_SQL =
+            "INSERT INTO url_mappings (id, original_url, short_code, url_hash, created_at, click_count, " +
+            "last_accessed_at, expires_at, max_clicks) SELECT ?, ?, ?, ?, ?, ?, ?, ?, ? WHERE NOT EXISTS " +
+            "(SELECT 1 FROM url_mappings WHERE id = ? OR short_code = ? OR url_hash = ?)";
+    // Range scan of idx_expires_at; the row count is capped with setMaxRows rather than a dialect-specific LIMIT
+    private static final String SELECT_EXPIRED_SQL =
+            "SELECT id, short_code FROM url_mappings WHERE expires_at <= ? ORDER BY expires_at";
+    private static final String DELETE_EXPIRED_SQL = "DELETE FROM url_mappings WHERE id = ? AND expires_at <= ?";
+
+    // expires_at comes first so it sees the click count before this update on every database; a link reaching
+    // max_clicks expires at its last access and is left to the ExpirationSweeper
+    private static final String APPLY_CLICKS_SQL =
+            "UPDATE url_mappings SET " +
+            "expires_at = CASE WHEN max_clicks IS NOT NULL AND click_count + ? >= max_clicks " +
+            "AND (expires_at IS NULL OR expires_at > ?) THEN ? ELSE expires_at END, " +
+            "click_count = click_count + ?, " +
+            "last_accessed_at = CASE WHEN last_accessed_at IS NULL OR last_accessed_at < ? THEN ? ELSE last_accessed_at END " +
+            "WHERE short_code = ?";
+
+    private UrlMappingRows() {
+    }
+
+    /**
+     * Inserts the mappings that conflict with no stored row, in one transaction.
+     *
+     * @return how many were inserted
+     */
+    static int insertMissing(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                             List<UrlMapping> urlMappings) {
+        try {
+            return transactionTemplate.execute(status -> insertMissingBatch(jdbcTemplate, urlMappings));
+        } catch (DataIntegrityViolationException e) {
+            // A conflicting row was inserted concurrently; insert one at a time so only that row is skipped
+            int inserted = 0;
+            for (UrlMapping urlMapping : urlMappings) {
+                try {
+                    inserted += insertMissingBatch(jdbcTemplate, List.of(urlMapping));
+                } catch (DataIntegrityViolationException conflict) {
+                    // Skipped
+                }
+            }
+            return inserted;
+        }
+    }
+
+    private static int insertMissingBatch(JdbcTemplate jdbcTemplate, List<UrlMapping> urlMappings) {
+        int[][] counts = jdbcTemplate.batchUpdate(INSERT_MISSING_SQL, urlMappings, urlMappings.size(),
+                (ps, urlMapping) -> {
+                    bindColumns(ps, urlMapping);
+                    ps.setLong(10, urlMapping.getId());
+                    ps.setString(11, urlMapping.getShortCode());
+                    ps.setBytes(12, urlMapping.getUrlHash());
+                });
+        return Arrays.stream(counts).flatMapToInt(Arrays::stream).map(count -> Math.max(count, 0)).sum();
+    }
+
+    /**
+     * Binds the nine columns of INSERT_SQL, in order.
+     */
+    static void bindColumns(PreparedStatement ps, UrlMapping urlMapping) throws SQLException {
+        ps.setLong(1, urlMapping.getId());
+        ps.setString(2, urlMapping.getOriginalUrl());
+        ps.setString(3, urlMapping.getShortCode());
+        ps.setBytes(4, urlMapping.getUrlHash());
+        ps.setTimestamp(5, Timestamp.valueOf(urlMapping.getCreatedAt()));
+        ps.setLong(6, urlMapping.getClickCount());
+        ps.setTimestamp(7, urlMapping.getLastAccessedAt() == null
+                ? null : Timestamp.valueOf(urlMapping.getLastAccessedAt()));
+        ps.setTimestamp(8, urlMapping.getExpiresAt() == null
+                ? null : Timestamp.valueOf(urlMapping.getExpiresAt()));
+        ps.setObject(9, urlMapping.getMaxClicks(), Types.BIGINT);
+    }
+
+    /**
+     * Deletes up to limit rows that expired at or before the cutoff. Run it in a transaction.
+     *
+     * @return short codes of the deleted rows
+     */
+    static List<String> deleteExpired(JdbcTemplate jdbcTemplate, Timestamp cutoff, int limit) {
+        List<Object[]> expired = jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(SELECT_EXPIRED_SQL);
+            ps.setTimestamp(1, cutoff);
+            ps.setMaxRows(limit);
+            return ps;
+        }, (rs, rowNum) -> new Object[]{rs.getLong(1), rs.getString(2)});
+        if (expired.isEmpty()) {
+            return List.of();
+        }
+        // Deleted by primary key, re-checking the expiry in case the row changed since it was selected
+        int[][] counts = jdbcTemplate.batchUpdate(DELETE_EXPIRED_SQL, expired, expired.size(),
+                (ps, row) -> {
+                    ps.setLong(1, (Long) row[0]);
+                    ps.setTimestamp(2, cutoff);
+                });
+        List<String> deleted = new ArrayList<>(expired.size());
+        int[] batchCounts = counts[0];
+        for (int i = 0; i < expired.size(); i++) {
+            if (batchCounts[i] != 0) {
+                deleted.add((String) expired.get(i)[1]);
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Applies the click updates as one JDBC batch.
+     */
+    static void applyClicks(JdbcTemplate jdbcTemplate, List<ClickUpdate> clickUpdates) {
+        jdbcTemplate.batchUpdate(APPLY_CLICKS_SQL, clickUpdates, clickUpdates.size(), (ps, clickUpdate) -> {
+            Timestamp lastAccessedAt = Timestamp.valueOf(clickUpdate.lastAccessedAt());
+            ps.setLong(1, clickUpdate.clicks());
+            ps.setTimestamp(2, lastAccessedAt);
+            ps.setTimestamp(3, lastAccessedAt);
+            ps.setLong(4, clickUpdate.clicks());
+            ps.setTimestamp(5, lastAccessedAt);
+            ps.setTimestamp(6, lastAccessedAt);
+            ps.setString(7, clickUpdate.shortCode());
+        });
+    }
+
+    static UrlMapping mapRow(ResultSet rs) throws SQLException {
+        return new UrlMapping(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getBytes(4),
+                rs.getTimestamp(5).toLocalDateTime(), rs.getLong(6), toLocalDateTime(rs.getTimestamp(7)),
+                toLocalDateTime(rs.getTimestamp(8)), rs.getObject(9, Long.class), true);
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toLocalDateTime();
+    }
+}
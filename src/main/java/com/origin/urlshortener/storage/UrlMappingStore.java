@@ -0,0 +1,76 @@
+package com.origin.urlshortener.storage;
+
+import com.origin.urlshortener.model.UrlMapping;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * The mapping operations the service and caches rely on, implemented by the selected storage engine
+ * (shortener.storage.engine): JPA over url_mappings, the embedded memory-mapped log, or url_mappings sharded over
+ * several databases.
+ */
+public interface UrlMappingStore {
+
+    Optional<UrlMapping> findByShortCode(String shortCode);
+
+    Optional<UrlMapping> findByUrlHash(byte[] urlHash);
+
+    List<UrlMapping> findByUrlHashIn(Collection<byte[]> urlHashes);
+
+    UrlMapping save(UrlMapping urlMapping);
+
+    /**
+     * Inserts new mappings together, as one JDBC batch for the JPA engine.
+     */
+    void insertAll(List<UrlMapping> urlMappings);
+
+    /**
+     * Visits the short code of every stored mapping without holding them all in memory.
+     */
+    void forEachShortCode(Consumer<String> action);
+
+    List<UrlMapping> findMostRecent(int limit);
+
+    /**
+     * Visits every stored mapping, streamed from the storage engine rather than loaded into memory.
+     * Visited mappings are detached copies.
+     */
+    void forEach(Consumer<UrlMapping> action);
+
+    /**
+     * Inserts the mappings that do not conflict with a stored one (same ID, short code or digest) and skips the rest,
+     * including mappings with limits when the engine does not support expiration.
+     *
+     * @return how many were inserted
+     */
+    int insertMissing(List<UrlMapping> urlMappings);
+
+    /**
+     * Whether mappings with an expiry time or click limit can be stored. The mmap log is immutable, so only the
+     * JPA engine supports them.
+     */
+    boolean supportsExpiration();
+
+    /**
+     * Deletes up to limit mappings that expired at or before now, in one short transaction.
+     *
+     * @return short codes of the deleted mappings
+     */
+    List<String> deleteExpired(LocalDateTime now, int limit);
+
+    /**
+     * Adds click counts and advances last access times, expiring links that reach their click limit. Short codes
+     * that are not stored are skipped; the mmap log is immutable and keeps no click counts.
+     */
+    void applyClicks(List<ClickUpdate> clickUpdates);
+
+    /**
+     * Runs a read-check-insert sequence atomically: in a transaction for JPA, under the writer lock for mmap.
+     */
+    <T> T atomically(Supplier<T> work);
+}
@@ -0,0 +1,494 @@
+package com.origin.urlshortener.storage;
+
+import com.origin.urlshortener.config.StorageProperties;
+import com.origin.urlshortener.exception.AdmissionRejectedException;
+import com.origin.urlshortener.model.UrlMapping;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Write-behind in front of the JPA engine (shortener.storage.write-behind.enabled).
+ *
+ * New mappings are appended to a local write-ahead log and staged in memory, and the create returns without a
+ * database transaction: the Snowflake ID is assigned up front, so the code is final before its row exists. Lookups by
+ * short code or digest see staged mappings first, so redirects and deduplication on this node see them at once.
+ * A background flusher inserts staged mappings into url_mappings in batches of batch-size, one transaction per batch,
+ * and unstages them once committed.
+ *
+ * The log uses MappingLog's checksummed record format and is rotated into a new file once it passes ROTATE_BYTES; a
+ * file is deleted when every mapping in it has been committed. On startup the remaining files are replayed into the
+ * stage. Inserts skip rows that already exist, so a replay of mappings committed before a crash is harmless. A staged
+ * mapping whose URL was inserted by another node in the meantime is stored without its digest, as on a digest
+ * collision, so that the code already handed out keeps working.
+ *
+ * Links with limits are written through: the log records do not hold expiry or click limits.
+ */
+@Slf4j
+@Primary
+@Component
+@ConditionalOnProperty(prefix = "shortener.storage.write-behind", name = "enabled", havingValue = "true")
+public class WriteBehindUrlMappingStore implements UrlMappingStore, SmartLifecycle {
+    // Files are rotated well inside one 64 MiB log segment
+    static final long ROTATE_BYTES = 16 << 20;
+
+    private static final String FILE_PREFIX = "write-behind-";
+    private static final String FILE_SUFFIX = ".log";
+
+    private final JpaUrlMappingStore delegate;
+    private final StorageProperties.WriteBehind properties;
+    private final Path directory;
+    private final ConcurrentHashMap<String, UrlMapping> stagedByShortCode = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<ByteBuffer, UrlMapping> stagedByHash = new ConcurrentHashMap<>();
+    private final AtomicBoolean earlyFlushRequested = new AtomicBoolean();
+    private final Object flushLock = new Object();
+
+    // Guards the fields below: appends are serialized, and the flusher drains and rotates under the same lock
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private MappingLog writeAheadLog;
+    private long generation;
+    // Staged mappings not taken by the flusher yet, in log order
+    private List<UrlMapping> pending = new ArrayList<>();
+    // Rotated files whose mappings may not all be committed yet
+    private final List<RetiredLog> retired = new ArrayList<>();
+
+    private ScheduledExecutorService flusher;
+    private volatile boolean running;
+
+    // StorageProperties comes first, so that its check of the engine reports a non-JPA engine before the missing
+    // JpaUrlMappingStore does
+    public WriteBehindUrlMappingStore(StorageProperties storageProperties, JpaUrlMappingStore delegate)
+            throws IOException {
+        this.delegate = delegate;
+        this.properties = storageProperties.getWriteBehind();
+        this.directory = Path.of(properties.getDirectory());
+        Files.createDirectories(directory);
+
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(file -> generationOf(file) >= 0)
+                    .sorted(Comparator.comparingLong(WriteBehindUrlMappingStore::generationOf))
+                    .toList();
+        }
+        for (Path file : files) {
+            MappingLog mappingLog = new MappingLog(file, properties.isFsync());
+            mappingLog.recover();
+            long end = mappingLog.end();
+            for (long position = mappingLog.first(); position < end; position = mappingLog.next(position)) {
+                stage(mappingLog.read(position));
+            }
+            retired.add(new RetiredLog(file, mappingLog));
+            generation = generationOf(file);
+        }
+        this.writeAheadLog = openNextLog();
+        log.info("Write-behind log in {}, {} staged mappings recovered", directory.toAbsolutePath(), pending.size());
+    }
+
+    @Override
+    public Optional<UrlMapping> findByShortCode(String shortCode) {
+        UrlMapping staged = stagedByShortCode.get(shortCode);
+        return staged != null ? Optional.of(staged) : delegate.findByShortCode(shortCode);
+    }
+
+    @Override
+    public Optional<UrlMapping> findByUrlHash(byte[] urlHash) {
+        UrlMapping staged = stagedByHash.get(ByteBuffer.wrap(urlHash));
+        return staged != null ? Optional.of(staged) : delegate.findByUrlHash(urlHash);
+    }
+
+    @Override
+    public List<UrlMapping> findByUrlHashIn(Collection<byte[]> urlHashes) {
+        List<UrlMapping> found = new ArrayList<>();
+        List<byte[]> unstaged = new ArrayList<>();
+        for (byte[] urlHash : urlHashes) {
+            UrlMapping staged = stagedByHash.get(ByteBuffer.wrap(urlHash));
+            if (staged != null) {
+                found.add(staged);
+            } else {
+                unstaged.add(urlHash);
+            }
+        }
+        if (!unstaged.isEmpty()) {
+            found.addAll(delegate.findByUrlHashIn(unstaged));
+        }
+        return found;
+    }
+
+    @Override
+    public UrlMapping save(UrlMapping urlMapping) {
+        if (urlMapping.hasLimits() || !append(List.of(urlMapping))) {
+            return delegate.atomically(() -> delegate.save(urlMapping));
+        }
+        return urlMapping;
+    }
+
+    @Override
+    public void insertAll(List<UrlMapping> urlMappings) {
+        if (urlMappings.stream().anyMatch(UrlMapping::hasLimits) || !append(urlMappings)) {
+            delegate.atomically(() -> {
+                delegate.insertAll(urlMappings);
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public void forEachShortCode(Consumer<String> action) {
+        Set<String> staged = new HashSet<>(stagedByShortCode.keySet());
+        staged.forEach(action);
+        delegate.forEachShortCode(shortCode -> {
+            if (!staged.contains(shortCode)) {
+                action.accept(shortCode);
+            }
+        });
+    }
+
+    @Override
+    public List<UrlMapping> findMostRecent(int limit) {
+        List<UrlMapping> recent = new ArrayList<>(stagedByShortCode.values());
+        recent.addAll(delegate.findMostRecent(limit));
+        Set<String> seen = new HashSet<>();
+        return recent.stream()
+                .filter(urlMapping -> seen.add(urlMapping.getShortCode()))
+                .sorted(Comparator.comparing(UrlMapping::getCreatedAt).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    @Override
+    public void forEach(Consumer<UrlMapping> action) {
+        List<UrlMapping> staged = new ArrayList<>(stagedByShortCode.values());
+        Set<String> stagedCodes = new HashSet<>();
+        for (UrlMapping urlMapping : staged) {
+            stagedCodes.add(urlMapping.getShortCode());
+            action.accept(urlMapping);
+        }
+        delegate.forEach(urlMapping -> {
+            if (!stagedCodes.contains(urlMapping.getShortCode())) {
+                action.accept(urlMapping);
+            }
+        });
+    }
+
+    @Override
+    public int insertMissing(List<UrlMapping> urlMappings) {
+        return delegate.insertMissing(urlMappings);
+    }
+
+    @Override
+    public boolean supportsExpiration() {
+        return delegate.supportsExpiration();
+    }
+
+    @Override
+    public List<String> deleteExpired(LocalDateTime now, int limit) {
+        return delegate.deleteExpired(now, limit);
+    }
+
+    /**
+     * Applies the clicks to url_mappings. Clicks on a mapping still staged are not counted, as before it was staged.
+     */
+    @Override
+    public void applyClicks(List<ClickUpdate> clickUpdates) {
+        delegate.applyClicks(clickUpdates);
+    }
+
+    /**
+     * Runs the work without a database transaction: staged writes need none, and the lookups it makes use their own
+     * read-only ones. Concurrent creates of the same URL on this node are coalesced by the service.
+     */
+    @Override
+    public <T> T atomically(Supplier<T> work) {
+        return work.get();
+    }
+
+    /**
+     * @return staged mappings not committed to url_mappings yet
+     */
+    int stagedMappings() {
+        return stagedByShortCode.size();
+    }
+
+    /**
+     * Logs and stages the mappings.
+     *
+     * @return false, with nothing staged, once the store has stopped: the mappings are to be written through
+     */
+    private boolean append(List<UrlMapping> urlMappings) {
+        boolean batchReady;
+        appendLock.lock();
+        try {
+            // Cleared by stop() under this lock, so nothing is staged after its final flush or logged to a closed log
+            if (!running) {
+                return false;
+            }
+            if (stagedByShortCode.size() + urlMappings.size() > properties.getMaxPending()) {
+                requestEarlyFlush();
+                throw new AdmissionRejectedException(HttpStatus.SERVICE_UNAVAILABLE,
+                        "Too many new mappings waiting to be written, try again later", 1);
+            }
+            try {
+                for (UrlMapping urlMapping : urlMappings) {
+                    writeAheadLog.append(urlMapping);
+                }
+            } catch (IOException e) {
+                throw new DataAccessResourceFailureException("Failed to append to the write-behind log", e);
+            }
+            urlMappings.forEach(this::stage);
+            batchReady = pending.size() >= properties.getBatchSize();
+        } finally {
+            appendLock.unlock();
+        }
+        if (batchReady) {
+            requestEarlyFlush();
+        }
+        return true;
+    }
+
+    private void stage(UrlMapping urlMapping) {
+        // Accepted: later requests for the URL are answered as for a stored mapping
+        urlMapping.setPersisted(true);
+        stagedByShortCode.put(urlMapping.getShortCode(), urlMapping);
+        if (urlMapping.getUrlHash() != null) {
+            stagedByHash.putIfAbsent(ByteBuffer.wrap(urlMapping.getUrlHash()), urlMapping);
+        }
+        pending.add(urlMapping);
+    }
+
+    /**
+     * Inserts everything staged so far, in batches, and unstages what was committed. Mappings of a failed batch stay
+     * staged and are retried on the next flush.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            List<UrlMapping> drained;
+            List<RetiredLog> covered;
+            appendLock.lock();
+            try {
+                drained = pending;
+                pending = new ArrayList<>();
+                if (writeAheadLog.end() >= ROTATE_BYTES) {
+                    rotate();
+                }
+                // Every mapping in these files is in drained or was committed by an earlier flush
+                covered = new ArrayList<>(retired);
+            } finally {
+                appendLock.unlock();
+            }
+
+            for (int from = 0; from < drained.size(); from += properties.getBatchSize()) {
+                int to = Math.min(drained.size(), from + properties.getBatchSize());
+                List<UrlMapping> batch = drained.subList(from, to);
+                try {
+                    insert(batch);
+                } catch (DataAccessException | TransactionException e) {
+                    log.warn("Failed to write {} staged mappings, will retry: {}",
+                            drained.size() - from, e.getMessage());
+                    requeue(drained.subList(from, drained.size()));
+                    return;
+                }
+                for (UrlMapping urlMapping : batch) {
+                    stagedByShortCode.remove(urlMapping.getShortCode(), urlMapping);
+                    if (urlMapping.getUrlHash() != null) {
+                        stagedByHash.remove(ByteBuffer.wrap(urlMapping.getUrlHash()), urlMapping);
+                    }
+                }
+            }
+
+            for (RetiredLog retiredLog : covered) {
+                retiredLog.delete();
+            }
+            appendLock.lock();
+            try {
+                retired.removeAll(covered);
+            } finally {
+                appendLock.unlock();
+            }
+        }
+    }
+
+    private void insert(List<UrlMapping> batch) {
+        if (delegate.insertMissing(batch) == batch.size()) {
+            return;
+        }
+        // Already stored (replayed after a crash), or the same URL was inserted by another node since it was staged.
+        // The code of the latter has been handed out, so store it outside deduplication as on a digest collision.
+        List<UrlMapping> conflicting = new ArrayList<>();
+        for (UrlMapping urlMapping : batch) {
+            if (delegate.findByShortCode(urlMapping.getShortCode()).isEmpty()) {
+                conflicting.add(urlMapping);
+            }
+        }
+        if (!conflicting.isEmpty()) {
+            for (UrlMapping urlMapping : conflicting) {
+                if (urlMapping.getUrlHash() != null) {
+                    stagedByHash.remove(ByteBuffer.wrap(urlMapping.getUrlHash()), urlMapping);
+                    urlMapping.setUrlHash(null);
+                }
+            }
+            delegate.insertMissing(conflicting);
+        }
+    }
+
+    private void requeue(List<UrlMapping> unwritten) {
+        appendLock.lock();
+        try {
+            List<UrlMapping> requeued = new ArrayList<>(unwritten.size() + pending.size());
+            requeued.addAll(unwritten);
+            requeued.addAll(pending);
+            pending = requeued;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void requestEarlyFlush() {
+        if (running && earlyFlushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(() -> {
+                    earlyFlushRequested.set(false);
+                    flushQuietly();
+                });
+            } catch (RejectedExecutionException e) {
+                // Stopped meanwhile; its final flush writes what is staged
+                earlyFlushRequested.set(false);
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Write-behind flush failed", e);
+        }
+    }
+
+    private void rotate() {
+        Path file = logFile(generation);
+        try {
+            MappingLog next = openNextLog();
+            retired.add(new RetiredLog(file, writeAheadLog));
+            writeAheadLog = next;
+        } catch (IOException e) {
+            // Keep appending to the current file and try again on the next flush
+            generation--;
+            log.warn("Failed to rotate the write-behind log: {}", e.getMessage());
+        }
+    }
+
+    private MappingLog openNextLog() throws IOException {
+        generation++;
+        MappingLog mappingLog = new MappingLog(logFile(generation), properties.isFsync());
+        mappingLog.recover();
+        return mappingLog;
+    }
+
+    private Path logFile(long generation) {
+        return directory.resolve(FILE_PREFIX + generation + FILE_SUFFIX);
+    }
+
+    private static long generationOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(FILE_PREFIX) || !name.endsWith(FILE_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "write-behind-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = properties.getFlushInterval().toMillis();
+        running = true;
+        // Recovered mappings are written before new ones are accepted, unless the database is unavailable
+        flushQuietly();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        // Later creates are written through
+        appendLock.lock();
+        try {
+            running = false;
+        } finally {
+            appendLock.unlock();
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+        appendLock.lock();
+        try {
+            writeAheadLog.close();
+            if (pending.isEmpty() && retired.isEmpty()) {
+                Files.deleteIfExists(logFile(generation));
+            }
+        } catch (IOException e) {
+            log.warn("Failed to close the write-behind log: {}", e.getMessage());
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private record RetiredLog(Path file, MappingLog log) {
+        void delete() {
+            try {
+                log.close();
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
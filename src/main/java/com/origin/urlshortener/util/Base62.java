@@ -0,0 +1,71 @@
+package com.origin.urlshortener.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fixed-width Base62 codec for Snowflake IDs (0-9, A-Z, a-z).
+ *
+ * Every non-negative long encodes to exactly 11 characters, left-padded with '0', which matches the
+ * short codes the service has always issued. Encoding writes digits straight into a byte buffer and
+ * builds a Latin-1 string from it; decoding uses a lookup table and never throws on bad input.
+ */
+public final class Base62 {
+    public static final int LENGTH = 11;
+
+    private static final byte[] DIGITS =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] VALUES = new byte[128];
+    private static final long MAX_BEFORE_MULTIPLY = Long.MAX_VALUE / 62;
+
+    static {
+        java.util.Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < DIGITS.length; i++) {
+            VALUES[DIGITS[i]] = (byte) i;
+        }
+    }
+
+    private Base62() {
+    }
+
+    public static String encode(long value) {
+        byte[] buffer = new byte[LENGTH];
+        encode(value, buffer, 0);
+        return new String(buffer, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Writes the 11-character code for value into buffer[offset, offset + 11).
+     */
+    public static void encode(long value, byte[] buffer, int offset) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Only non-negative values can be Base62 encoded: " + value);
+        }
+        for (int i = offset + LENGTH - 1; i >= offset; i--) {
+            long quotient = value / 62;
+            buffer[i] = DIGITS[(int) (value - quotient * 62)];
+            value = quotient;
+        }
+    }
+
+    /**
+     * @return the decoded value, or -1 if code is not an 11-character Base62 string within the long range
+     */
+    public static long decode(CharSequence code) {
+        if (code == null || code.length() != LENGTH) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            char c = code.charAt(i);
+            int digit = c < 128 ? VALUES[c] : -1;
+            if (digit < 0 || value > MAX_BEFORE_MULTIPLY) {
+                return -1;
+            }
+            value = value * 62 + digit;
+            if (value < 0) {
+                return -1;
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,44 @@
+package com.origin.urlshortener.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Location header value for a stored URL. Header values are sent as ISO-8859-1, so characters outside printable
+ * ASCII are percent-encoded as their UTF-8 bytes. The URL is not parsed: imported rows that java.net.URI rejects
+ * still redirect, with everything else passed through as stored.
+ */
+public final class RedirectLocation {
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private RedirectLocation() {
+    }
+
+    public static String of(String url) {
+        int first = 0;
+        while (first < url.length() && !needsEncoding(url.charAt(first))) {
+            first++;
+        }
+        if (first == url.length()) {
+            return url;
+        }
+        StringBuilder location = new StringBuilder(url.length() + 16).append(url, 0, first);
+        for (int i = first; i < url.length(); ) {
+            int codePoint = url.codePointAt(i);
+            int end = i + Character.charCount(codePoint);
+            if (needsEncoding(url.charAt(i))) {
+                for (byte b : url.substring(i, end).getBytes(StandardCharsets.UTF_8)) {
+                    location.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+                }
+            } else {
+                location.append(url, i, end);
+            }
+            i = end;
+        }
+        return location.toString();
+    }
+
+    // Space and control characters too: a raw CR or LF would otherwise end the header
+    private static boolean needsEncoding(char c) {
+        return c <= 0x20 || c >= 0x7F;
+    }
+}
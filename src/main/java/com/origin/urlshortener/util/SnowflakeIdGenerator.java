@@ -1,8 +1,14 @@
 package com.origin.urlshortener.util;
 
-import org.springframework.stereotype.Component;
-
-@Component
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Snowflake ID generator. Instances must be created with a datacenter/machine pair that is unique
+ * across all running nodes, see IdGeneratorConfig.
+ */
 public class SnowflakeIdGenerator {
     private static final long EPOCH = 1288834974657L; // Twitter snowflake epoch (Nov 04, 2010, 01:42:54 UTC)
 
@@ -14,8 +20,8 @@ public class SnowflakeIdGenerator {
     private static final long SEQUENCE_BITS = 12L;   // 4096 sequences per millisecond
 
     // Maximum values for each component
-    private static final long MAX_DATACENTER_ID = ~(-1L << DATACENTER_ID_BITS);  // 31
-    private static final long MAX_MACHINE_ID = ~(-1L << MACHINE_ID_BITS);        // 31
+    public static final long MAX_DATACENTER_ID = ~(-1L << DATACENTER_ID_BITS);  // 31
+    public static final long MAX_MACHINE_ID = ~(-1L << MACHINE_ID_BITS);        // 31
     private static final long MAX_SEQUENCE = ~(-1L << SEQUENCE_BITS);            // 4095
     // Maximum timestamp value (69 years from epoch)
     private static final long MAX_TIMESTAMP = ~(-1L << TIMESTAMP_BITS);          // 2^41 - 1
@@ -24,51 +30,156 @@ public class SnowflakeIdGenerator {
     private static final long MACHINE_ID_SHIFT = SEQUENCE_BITS;
     private static final long DATACENTER_ID_SHIFT = SEQUENCE_BITS + MACHINE_ID_BITS;
     private static final long TIMESTAMP_SHIFT = SEQUENCE_BITS + MACHINE_ID_BITS + DATACENTER_ID_BITS;
-    private static final String BASE62_CHARS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+    // How long to park between clock checks when the sequence for the current millisecond is exhausted
+    private static final long OVERFLOW_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
 
     private final long datacenterId;
-    private final long machineId;
-    private long sequence = 0L;
-    private long lastTimestamp = -1L;
+    // Only changed by reassignMachineId(), while generation is suspended
+    private volatile long machineId;
+    // Last issued timestamp and sequence packed into one word: (lastTimestamp << SEQUENCE_BITS) | sequence
+    private final AtomicLong state = new AtomicLong();
+    // Non-null while this node may not issue IDs, e.g. after losing its worker ID lease
+    private volatile String suspendedReason;
+    // Epoch milliseconds from which no ID may be issued until the deadline is moved, e.g. a worker ID lease's expiry
+    private volatile long validUntil = Long.MAX_VALUE;
+    // Times a caller found the current millisecond's sequence exhausted and had to wait for the next one
+    private final LongAdder sequenceOverflows = new LongAdder();
+    // Times the clock was found to have moved backwards (each one failed an ID request)
+    private final LongAdder clockBackwardsEvents = new LongAdder();
 
     public SnowflakeIdGenerator() {
-        // For simplicity, we'll use fixed values for datacenter and machine IDs
-        // In a real distributed system, these would be configured per instance
-        this.datacenterId = 1L;
-        this.machineId = 1L;
+        // Single-node default, matching the default configuration
+        this(1L, 1L);
+    }
+
+    public SnowflakeIdGenerator(long datacenterId, long machineId) {
+        this.datacenterId = datacenterId;
+        this.machineId = machineId;
 
         validateIds();
     }
 
+    /**
+     * Moves this generator to another machine ID within its datacenter, e.g. after its worker ID lease was taken
+     * over and a free one leased instead. Callers suspend generation first and resume it once reassigned.
+     */
+    public void reassignMachineId(long machineId) {
+        if (machineId > MAX_MACHINE_ID || machineId < 0) {
+            throw new IllegalArgumentException(
+                    String.format("Machine ID can't be greater than %d or less than 0", MAX_MACHINE_ID));
+        }
+        this.machineId = machineId;
+    }
+
+    public long getDatacenterId() {
+        return datacenterId;
+    }
+
+    public long getMachineId() {
+        return machineId;
+    }
+
+    /**
+     * Stops ID generation until resume() is called. Used when this node can no longer prove
+     * that its worker ID is exclusively its own.
+     */
+    public void suspend(String reason) {
+        this.suspendedReason = reason;
+    }
+
+    public void resume() {
+        this.suspendedReason = null;
+    }
+
+    /**
+     * Fences ID generation at a deadline, checked on every call: from then on nextId() fails until the deadline is
+     * moved forward. Used to stop issuing IDs before a worker ID lease can have lapsed, without relying on anything
+     * running in time to call suspend().
+     */
+    public void validUntil(long epochMillis) {
+        this.validUntil = epochMillis;
+    }
+
+    public boolean isSuspended() {
+        return suspendedReason != null || timeGen() >= validUntil;
+    }
+
     public String generateShortCode() {
         long id = nextId();
-        return toBase62(id);
+        return Base62.encode(id);
     }
 
-    public synchronized long nextId() {
-        long currentTimestamp = timeGen();
+    public long getSequenceOverflows() {
+        return sequenceOverflows.sum();
+    }
 
-        // Handle clock drift
-        if (currentTimestamp < lastTimestamp) {
-            throw new RuntimeException(
-                String.format("Clock moved backwards. Refusing to generate id for %d milliseconds",
-                    lastTimestamp - currentTimestamp));
+    public long getClockBackwardsEvents() {
+        return clockBackwardsEvents.sum();
+    }
+
+    public long getWorkerId() {
+        return (datacenterId << MACHINE_ID_BITS) | machineId;
+    }
+
+    /**
+     * @return the creation time (epoch milliseconds) embedded in a Snowflake ID
+     */
+    public static long timestampOf(long id) {
+        return (id >>> TIMESTAMP_SHIFT) + EPOCH;
+    }
+
+    /**
+     * @return the (datacenterId << 5) | machineId of the node that issued a Snowflake ID
+     */
+    public static long workerIdOf(long id) {
+        return (id >>> MACHINE_ID_SHIFT) & ~(-1L << (DATACENTER_ID_BITS + MACHINE_ID_BITS));
+    }
+
+    /**
+     * Lock-free: timestamp and sequence are advanced together with a single CAS on the packed state,
+     * so concurrent callers never block each other and a lost race simply retries.
+     */
+    public long nextId() {
+        String suspended = suspendedReason;
+        if (suspended != null) {
+            throw new IllegalStateException("ID generation is suspended: " + suspended);
         }
+        while (true) {
+            // Read the state before the clock, so a timestamp published by another thread is never ahead of ours
+            long current = state.get();
+            long lastTimestamp = current >>> SEQUENCE_BITS;
+            long currentTimestamp = timeGen();
+            if (currentTimestamp >= validUntil) {
+                throw new IllegalStateException("ID generation is suspended: worker ID lease was not renewed in time");
+            }
 
-        // If we're in the same millisecond, increment sequence
-        if (currentTimestamp == lastTimestamp) {
-            sequence = (sequence + 1) & MAX_SEQUENCE;
-            if (sequence == 0) {
-                // Sequence overflow, wait for next millisecond
-                currentTimestamp = waitNextMillis(lastTimestamp);
+            // Handle clock drift
+            if (currentTimestamp < lastTimestamp) {
+                clockBackwardsEvents.increment();
+                throw new RuntimeException(
+                    String.format("Clock moved backwards. Refusing to generate id for %d milliseconds",
+                        lastTimestamp - currentTimestamp));
             }
-        } else {
-            // New millisecond, reset sequence
-            sequence = 0;
-        }
 
-        lastTimestamp = currentTimestamp;
-        return generateId(currentTimestamp, sequence);
+            long next;
+            if (currentTimestamp == lastTimestamp) {
+                // Same millisecond, increment sequence
+                if ((current & MAX_SEQUENCE) == MAX_SEQUENCE) {
+                    // Sequence overflow, wait for next millisecond and retry
+                    sequenceOverflows.increment();
+                    waitNextMillis(lastTimestamp);
+                    continue;
+                }
+                next = current + 1;
+            } else {
+                // New millisecond, reset sequence
+                next = currentTimestamp << SEQUENCE_BITS;
+            }
+
+            if (state.compareAndSet(current, next)) {
+                return generateId(next >>> SEQUENCE_BITS, next & MAX_SEQUENCE);
+            }
+        }
     }
 
     private void validateIds() {
@@ -82,12 +193,11 @@ public class SnowflakeIdGenerator {
         }
     }
 
-    private long waitNextMillis(long lastTimestamp) {
-        long timestamp = timeGen();
-        while (timestamp <= lastTimestamp) {
-            timestamp = timeGen();
+    private void waitNextMillis(long lastTimestamp) {
+        // Park rather than spin so an exhausted millisecond does not burn a core per waiting thread
+        while (timeGen() <= lastTimestamp) {
+            LockSupport.parkNanos(OVERFLOW_PARK_NANOS);
         }
-        return timestamp;
     }
 
     private long generateId(long timestamp, long sequence) {
@@ -111,17 +221,4 @@ public class SnowflakeIdGenerator {
     private long timeGen() {
         return System.currentTimeMillis();
     }
-
-    private String toBase62(long num) {
-        StringBuilder sb = new StringBuilder();
-        while (num > 0) {
-            sb.append(BASE62_CHARS.charAt((int) (num % 62)));
-            num /= 62;
-        }
-        // Pad with leading zeros if necessary to maintain consistent length
-        while (sb.length() < 11) {  // Updated to 11 for classic Snowflake (64 bits)
-            sb.append('0');
-        }
-        return sb.reverse().toString();
-    }
-}
\ No newline at end of file
+}
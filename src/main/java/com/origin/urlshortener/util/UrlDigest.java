@@ -0,0 +1,29 @@
+package com.origin.urlshortener.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Fixed-width SHA-256 digest of a URL, used as the indexed deduplication key instead of the 2048-char URL itself.
+ */
+public final class UrlDigest {
+    public static final int LENGTH = 32;
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    private UrlDigest() {
+    }
+
+    public static byte[] sha256(String url) {
+        MessageDigest digest = SHA_256.get();
+        digest.reset();
+        return digest.digest(url.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,16 @@
+-- url_mappings in each shard of the sharded storage engine, as the JPA entity maps it.
+-- Written for H2; point shortener.storage.sharded.schema at an equivalent script for other databases.
+CREATE TABLE IF NOT EXISTS url_mappings (
+    id BIGINT NOT NULL PRIMARY KEY,
+    original_url VARCHAR(2048) NOT NULL,
+    short_code VARCHAR(11) NOT NULL,
+    url_hash VARBINARY(32),
+    created_at TIMESTAMP NOT NULL,
+    click_count BIGINT DEFAULT 0 NOT NULL,
+    last_accessed_at TIMESTAMP,
+    expires_at TIMESTAMP,
+    max_clicks BIGINT
+);
+CREATE UNIQUE INDEX IF NOT EXISTS idx_short_code ON url_mappings (short_code);
+CREATE UNIQUE INDEX IF NOT EXISTS idx_url_hash ON url_mappings (url_hash);
+CREATE INDEX IF NOT EXISTS idx_expires_at ON url_mappings (expires_at);
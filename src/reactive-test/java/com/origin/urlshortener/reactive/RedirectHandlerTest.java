@@ -0,0 +1,153 @@
+package com.origin.urlshortener.reactive;
+
+import com.origin.urlshortener.cache.LocalShortCodeCache;
+import com.origin.urlshortener.cache.ShortCodeFilter;
+import com.origin.urlshortener.cache.UrlMappingCache;
+import com.origin.urlshortener.config.CacheProperties;
+import com.origin.urlshortener.config.CanonicalizationProperties;
+import com.origin.urlshortener.config.RedirectProperties;
+import com.origin.urlshortener.config.StorageProperties;
+import com.origin.urlshortener.metrics.ShortenerMetrics;
+import com.origin.urlshortener.service.ClickTracker;
+import com.origin.urlshortener.service.ShortCodePool;
+import com.origin.urlshortener.service.UrlCanonicalizer;
+import com.origin.urlshortener.service.UrlMappingKeyMigration;
+import com.origin.urlshortener.service.UrlShortenerService;
+import com.origin.urlshortener.storage.UrlMappingStore;
+import com.origin.urlshortener.util.Base62;
+import com.origin.urlshortener.util.SnowflakeIdGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class RedirectHandlerTest {
+    private static final String URL = "https://example.com/reactive";
+
+    private final SnowflakeIdGenerator generator = new SnowflakeIdGenerator();
+    // Unique per test so in-memory databases are not shared between tests
+    private final String database = UUID.randomUUID().toString();
+    private JdbcTemplate jdbcTemplate;
+    private SimpleMeterRegistry registry;
+    private UrlMappingCache urlMappingCache;
+    private LocalShortCodeCache sharedCache;
+    private ClickTracker clickTracker;
+    private ReactiveUrlMappingLookup lookup;
+    private WebTestClient client;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource =
+                new DriverManagerDataSource("jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("db/url-mappings-shard.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        UrlMappingStore store = mock(UrlMappingStore.class);
+        ShortCodeFilter filter = mock(ShortCodeFilter.class);
+        when(filter.mightContain(anyString())).thenReturn(true);
+        ShortCodePool pool = mock(ShortCodePool.class);
+        clickTracker = mock(ClickTracker.class);
+        registry = new SimpleMeterRegistry();
+        urlMappingCache = new UrlMappingCache(new CacheProperties(), store);
+        sharedCache = new LocalShortCodeCache(new CacheProperties());
+        // A real instance: an inline mock would instrument ShortenerMetrics for every test in the JVM
+        ShortenerMetrics metrics =
+                new ShortenerMetrics(registry, generator, urlMappingCache, clickTracker, pool, sharedCache);
+        UrlShortenerService service = new UrlShortenerService(store, pool, urlMappingCache, sharedCache, filter,
+                metrics, clickTracker, new UrlCanonicalizer(new CanonicalizationProperties()));
+
+        R2dbcProperties r2dbcProperties = new R2dbcProperties();
+        r2dbcProperties.setUrl("r2dbc:h2:mem:///" + database);
+        r2dbcProperties.setUsername("sa");
+        r2dbcProperties.setPassword("");
+        lookup = new ReactiveUrlMappingLookup(service, metrics, store, noKeyMigration(), new StorageProperties(),
+                r2dbcProperties);
+
+        RedirectProperties redirectProperties = new RedirectProperties();
+        redirectProperties.setStatus(301);
+        redirectProperties.setCacheControl("max-age=3600");
+        RedirectHandler handler = new RedirectHandler(lookup, clickTracker, metrics, redirectProperties);
+        client = WebTestClient.bindToRouterFunction(new ReactiveRedirectConfig().redirectRoutes(handler)).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        lookup.destroy();
+    }
+
+    @Test
+    void testRedirectLoadsAndCachesTheMapping() {
+        String shortCode = insert(URL, null);
+
+        client.get().uri("/api/v1/shortener/" + shortCode).exchange()
+                .expectStatus().isEqualTo(301)
+                .expectHeader().valueEquals(HttpHeaders.LOCATION, URL)
+                .expectHeader().valueEquals(HttpHeaders.CACHE_CONTROL, "max-age=3600");
+
+        assertNotNull(urlMappingCache.get(shortCode), "loaded() should fill the in-process cache");
+        assertNotNull(sharedCache.get(shortCode), "loaded() should fill the shared cache");
+        jdbcTemplate.update("DELETE FROM url_mappings");
+        client.get().uri("/" + shortCode).exchange()
+                .expectStatus().isEqualTo(301)
+                .expectHeader().valueEquals(HttpHeaders.LOCATION, URL);
+
+        verify(clickTracker, times(2)).record(shortCode);
+        assertEquals(2, registry.get("shortener.lookup").timer().count());
+        assertEquals(2, registry.get("shortener.http.redirect").timer().count());
+    }
+
+    @Test
+    void testUnknownAndExpiredCodesAreMapped() {
+        String expired = insert(URL, LocalDateTime.now().minusMinutes(1));
+
+        client.get().uri("/" + Base62.encode(generator.nextId())).exchange()
+                .expectStatus().isNotFound()
+                .expectBody().jsonPath("$.status").isEqualTo(404);
+        client.get().uri("/" + expired).exchange()
+                .expectStatus().isEqualTo(410)
+                .expectBody().jsonPath("$.status").isEqualTo(410);
+
+        verifyNoInteractions(clickTracker);
+        assertEquals(2, registry.get("shortener.lookup").timer().count());
+        assertEquals(1, registry.get("shortener.lookup.not.found").tag("source", "database").counter().count());
+        assertEquals(1, registry.get("shortener.lookup.expired").counter().count());
+    }
+
+    @Test
+    void testRedirectEncodesUrlsThatUriRejects() {
+        // An imported row that was never canonicalized
+        String shortCode = insert("http://[::1é]/menu du café", null);
+
+        client.get().uri("/" + shortCode).exchange()
+                .expectStatus().isEqualTo(301)
+                .expectHeader().valueEquals(HttpHeaders.LOCATION, "http://[::1%C3%A9]/menu%20du%20caf%C3%A9");
+    }
+
+    private String insert(String url, LocalDateTime expiresAt) {
+        long id = generator.nextId();
+        String shortCode = Base62.encode(id);
+        jdbcTemplate.update("INSERT INTO url_mappings (id, original_url, short_code, created_at, click_count, "
+                + "expires_at) VALUES (?, ?, ?, ?, 0, ?)", id, url, shortCode, LocalDateTime.now(), expiresAt);
+        return shortCode;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ObjectProvider<UrlMappingKeyMigration> noKeyMigration() {
+        return mock(ObjectProvider.class);
+    }
+}
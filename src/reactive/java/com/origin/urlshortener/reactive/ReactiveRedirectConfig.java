@@ -0,0 +1,63 @@
+package com.origin.urlshortener.reactive;
+
+import io.micrometer.observation.ObservationPredicate;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.observation.ServerRequestObservationContext;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+/**
+ * Reactive redirect tier, active when the application runs as a reactive web application (the reactive Spring
+ * profile). Serves only redirects, on Netty's event loops; creation and the other endpoints stay on the servlet stack,
+ * whose controllers are not registered in this mode.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@EnableConfigurationProperties(R2dbcProperties.class)
+public class ReactiveRedirectConfig {
+    // Base62 Snowflake codes, so that other paths such as /actuator are not taken for short codes
+    private static final String SHORT_CODE = "{shortCode:[0-9A-Za-z]{11}}";
+    private static final int SHORT_CODE_LENGTH = 11;
+    private static final String SHORTENER_PATH = "/api/v1/shortener/";
+
+    @Bean
+    public RouterFunction<ServerResponse> redirectRoutes(RedirectHandler redirectHandler) {
+        return RouterFunctions.route()
+                .GET("/" + SHORT_CODE, redirectHandler::redirect)
+                .GET(SHORTENER_PATH + SHORT_CODE, redirectHandler::redirect)
+                .build();
+    }
+
+    // Redirects are timed by ShortenerMetrics; see ShortenerObservationPredicate for the servlet stack. Decided from
+    // the path, the route not being matched yet when the observation starts
+    @Bean
+    public ObservationPredicate redirectObservationPredicate() {
+        return (name, context) -> !("http.server.requests".equals(name)
+                && context instanceof ServerRequestObservationContext serverContext
+                && isRedirect(serverContext.getCarrier()));
+    }
+
+    private static boolean isRedirect(ServerHttpRequest request) {
+        if (request.getMethod() != HttpMethod.GET) {
+            return false;
+        }
+        String path = request.getPath().pathWithinApplication().value();
+        int codeStart = path.lastIndexOf('/') + 1;
+        return path.length() - codeStart == SHORT_CODE_LENGTH
+                && (codeStart == 1 || codeStart == SHORTENER_PATH.length() && path.startsWith(SHORTENER_PATH));
+    }
+
+    // Tomcat is on the classpath too, and would be preferred by auto-configuration
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+}
@@ -0,0 +1,145 @@
+package com.origin.urlshortener.reactive;
+
+import com.origin.urlshortener.config.StorageProperties;
+import com.origin.urlshortener.metrics.ShortenerMetrics;
+import com.origin.urlshortener.model.UrlMapping;
+import com.origin.urlshortener.service.UrlMappingKeyMigration;
+import com.origin.urlshortener.service.UrlShortenerService;
+import com.origin.urlshortener.storage.UrlMappingStore;
+import com.origin.urlshortener.util.Base62;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.r2dbc.ConnectionFactoryBuilder;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Non-blocking short code lookup for the reactive redirect stack.
+ *
+ * Cache hits and filtered codes are answered by UrlShortenerService without leaving the event loop. Misses are loaded
+ * from url_mappings through R2DBC, by short code or, in primary-key lookup mode once the key migration is complete, by
+ * the decoded ID, and handed back to the service to be cached and checked for expiry. The mmap engine reads its own
+ * memory-mapped files, so its lookups are called inline; the sharded engine's are blocking JDBC queries and run on
+ * the bounded elastic scheduler. Lookups are timed like UrlShortenerService#getOriginalUrl, up to the mapping or
+ * error being emitted.
+ *
+ * The connection pool is built from spring.r2dbc.* and kept private: a ConnectionFactory bean would make Spring Boot
+ * skip the JDBC DataSource that everything else runs on.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveUrlMappingLookup implements DisposableBean {
+    private static final String COLUMNS =
+            "SELECT id, original_url, short_code, created_at, click_count, last_accessed_at, expires_at, max_clicks "
+                    + "FROM url_mappings WHERE ";
+    private static final String BY_SHORT_CODE_SQL = COLUMNS + "short_code = :shortCode";
+    private static final String BY_ID_SQL = COLUMNS + "id = :id";
+
+    private final UrlShortenerService urlShortenerService;
+    private final ShortenerMetrics metrics;
+    private final UrlMappingStore urlMappingStore;
+    private final UrlMappingKeyMigration keyMigration;
+    private final ConnectionPool connectionPool;
+    private final DatabaseClient databaseClient;
+    private final boolean jpaEngine;
+    private final boolean shardedEngine;
+    private final boolean primaryKeyLookup;
+
+    public ReactiveUrlMappingLookup(UrlShortenerService urlShortenerService,
+                                    ShortenerMetrics metrics,
+                                    UrlMappingStore urlMappingStore,
+                                    ObjectProvider<UrlMappingKeyMigration> keyMigration,
+                                    StorageProperties storageProperties,
+                                    R2dbcProperties r2dbcProperties) {
+        this.urlShortenerService = urlShortenerService;
+        this.metrics = metrics;
+        this.urlMappingStore = urlMappingStore;
+        this.keyMigration = keyMigration.getIfAvailable();
+        R2dbcProperties.Pool pool = r2dbcProperties.getPool();
+        this.connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactoryBuilder
+                        .withUrl(r2dbcProperties.getUrl())
+                        .username(r2dbcProperties.getUsername())
+                        .password(r2dbcProperties.getPassword())
+                        .build())
+                .initialSize(pool.getInitialSize())
+                .maxSize(pool.getMaxSize())
+                .maxIdleTime(pool.getMaxIdleTime())
+                .build());
+        this.databaseClient = DatabaseClient.create(connectionPool);
+        this.jpaEngine = storageProperties.getEngine() == StorageProperties.Engine.JPA;
+        this.shardedEngine = storageProperties.getEngine() == StorageProperties.Engine.SHARDED;
+        this.primaryKeyLookup = storageProperties.getLookupMode() == StorageProperties.LookupMode.PRIMARY_KEY;
+    }
+
+    /**
+     * @return the mapping, or an error with UrlNotFoundException or UrlExpiredException like
+     * {@link UrlShortenerService#getOriginalUrl}
+     */
+    public Mono<UrlMapping> getOriginalUrl(String shortCode) {
+        long start = System.nanoTime();
+        UrlMapping cached;
+        try {
+            cached = urlShortenerService.lookUpCached(shortCode);
+        } catch (RuntimeException e) {
+            metrics.recordLookup(start);
+            return Mono.error(e);
+        }
+        if (cached != null) {
+            metrics.recordLookup(start);
+            return Mono.just(cached);
+        }
+        return load(shortCode)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .map(found -> urlShortenerService.loaded(shortCode, found.orElse(null)))
+                .doFinally(signal -> metrics.recordLookup(start));
+    }
+
+    private Mono<UrlMapping> load(String shortCode) {
+        if (!jpaEngine) {
+            Mono<Optional<UrlMapping>> found = Mono.fromCallable(() -> urlMappingStore.findByShortCode(shortCode));
+            if (shardedEngine) {
+                found = found.subscribeOn(Schedulers.boundedElastic());
+            }
+            return found.flatMap(Mono::justOrEmpty);
+        }
+        if (primaryKeyLookup && keyMigration != null && keyMigration.isComplete()) {
+            // The short code is the Base62 form of the primary key
+            long id = Base62.decode(shortCode);
+            return id < 0 ? Mono.empty() : databaseClient.sql(BY_ID_SQL).bind("id", id)
+                    .map(ReactiveUrlMappingLookup::toUrlMapping).one();
+        }
+        return databaseClient.sql(BY_SHORT_CODE_SQL).bind("shortCode", shortCode)
+                .map(ReactiveUrlMappingLookup::toUrlMapping).one();
+    }
+
+    @Override
+    public void destroy() {
+        connectionPool.dispose();
+    }
+
+    private static UrlMapping toUrlMapping(Readable row) {
+        Long clickCount = row.get("click_count", Long.class);
+        return new UrlMapping(
+                row.get("id", Long.class),
+                row.get("original_url", String.class),
+                row.get("short_code", String.class),
+                null,
+                row.get("created_at", LocalDateTime.class),
+                clickCount == null ? 0 : clickCount,
+                row.get("last_accessed_at", LocalDateTime.class),
+                row.get("expires_at", LocalDateTime.class),
+                row.get("max_clicks", Long.class),
+                true);
+    }
+}
@@ -0,0 +1,74 @@
+package com.origin.urlshortener.reactive;
+
+import com.origin.urlshortener.config.RedirectProperties;
+import com.origin.urlshortener.exception.ErrorResponse;
+import com.origin.urlshortener.exception.UrlExpiredException;
+import com.origin.urlshortener.exception.UrlNotFoundException;
+import com.origin.urlshortener.metrics.ShortenerMetrics;
+import com.origin.urlshortener.service.ClickTracker;
+import com.origin.urlshortener.util.RedirectLocation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+/**
+ * Redirects of the reactive stack, with the status, Cache-Control, click tracking, metrics and error bodies of
+ * UrlShortenerController's redirect endpoint.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class RedirectHandler {
+    private final ReactiveUrlMappingLookup lookup;
+    private final ClickTracker clickTracker;
+    private final ShortenerMetrics metrics;
+    private final HttpStatus redirectStatus;
+    private final String redirectCacheControl;
+
+    public RedirectHandler(ReactiveUrlMappingLookup lookup,
+                           ClickTracker clickTracker,
+                           ShortenerMetrics metrics,
+                           RedirectProperties redirectProperties) {
+        this.lookup = lookup;
+        this.clickTracker = clickTracker;
+        this.metrics = metrics;
+        HttpStatus status = HttpStatus.resolve(redirectProperties.getStatus());
+        if (status == null || !status.is3xxRedirection() || status == HttpStatus.NOT_MODIFIED) {
+            throw new IllegalArgumentException("Invalid redirect status: " + redirectProperties.getStatus());
+        }
+        this.redirectStatus = status;
+        String cacheControl = redirectProperties.getCacheControl();
+        this.redirectCacheControl = cacheControl == null || cacheControl.isBlank() ? null : cacheControl;
+    }
+
+    public Mono<ServerResponse> redirect(ServerRequest request) {
+        long start = System.nanoTime();
+        String shortCode = request.pathVariable("shortCode");
+        return lookup.getOriginalUrl(shortCode)
+                .flatMap(urlMapping -> {
+                    clickTracker.record(urlMapping.getShortCode());
+                    ServerResponse.BodyBuilder response = ServerResponse.status(redirectStatus)
+                            .header(HttpHeaders.LOCATION, RedirectLocation.of(urlMapping.getOriginalUrl()));
+                    if (redirectCacheControl != null) {
+                        response.header(HttpHeaders.CACHE_CONTROL, redirectCacheControl);
+                    }
+                    return response.build();
+                })
+                .onErrorResume(UrlNotFoundException.class, e -> error(HttpStatus.NOT_FOUND, e))
+                .onErrorResume(UrlExpiredException.class, e -> error(HttpStatus.GONE, e))
+                .onErrorResume(DataAccessResourceFailureException.class, e -> error(HttpStatus.SERVICE_UNAVAILABLE, e))
+                .doFinally(signal -> metrics.recordRedirect(start));
+    }
+
+    private static Mono<ServerResponse> error(HttpStatusCode status, Exception e) {
+        return ServerResponse.status(status)
+                .bodyValue(new ErrorResponse(status.value(), e.getMessage(), LocalDateTime.now()));
+    }
+}
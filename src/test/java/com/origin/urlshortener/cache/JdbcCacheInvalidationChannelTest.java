@@ -0,0 +1,70 @@
+package com.origin.urlshortener.cache;
+
+import com.origin.urlshortener.config.CacheProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class JdbcCacheInvalidationChannelTest {
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("CREATE TABLE cache_invalidations (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                + "short_code VARCHAR(11) NOT NULL, created_at TIMESTAMP NOT NULL)");
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void testPublishedCodesAreInvalidatedOnEveryNode() {
+        UrlMappingCache publisherCache = mock(UrlMappingCache.class);
+        UrlMappingCache otherCache = mock(UrlMappingCache.class);
+        JdbcCacheInvalidationChannel publisher = channel(publisherCache);
+        JdbcCacheInvalidationChannel other = channel(otherCache);
+        other.poll();
+
+        publisher.publish(List.of("aaaaaaaaaaa", "bbbbbbbbbbb"));
+
+        verify(publisherCache).invalidate("aaaaaaaaaaa");
+        verify(publisherCache).invalidate("bbbbbbbbbbb");
+        assertEquals(2, other.poll());
+        verify(otherCache).invalidate("aaaaaaaaaaa");
+        verify(otherCache).invalidate("bbbbbbbbbbb");
+    }
+
+    @Test
+    void testRowsPastRetentionAreDeleted() {
+        jdbcTemplate.update("INSERT INTO cache_invalidations (short_code, created_at) "
+                + "VALUES ('aaaaaaaaaaa', DATEADD('MINUTE', -2, LOCALTIMESTAMP))");
+        jdbcTemplate.update("INSERT INTO cache_invalidations (short_code, created_at) "
+                + "VALUES ('bbbbbbbbbbb', LOCALTIMESTAMP)");
+
+        channel(mock(UrlMappingCache.class)).poll();
+
+        assertEquals(List.of("bbbbbbbbbbb"),
+                jdbcTemplate.queryForList("SELECT short_code FROM cache_invalidations", String.class));
+    }
+
+    private JdbcCacheInvalidationChannel channel(UrlMappingCache urlMappingCache) {
+        return new JdbcCacheInvalidationChannel(new CacheProperties(), urlMappingCache, jdbcTemplate);
+    }
+}
@@ -0,0 +1,103 @@
+package com.origin.urlshortener.cache;
+
+import com.origin.urlshortener.config.CacheProperties;
+import com.origin.urlshortener.config.ExpirationProperties;
+import com.origin.urlshortener.metrics.ShortenerMetrics;
+import com.origin.urlshortener.model.UrlMapping;
+import com.origin.urlshortener.service.ClickTracker;
+import com.origin.urlshortener.service.ExpirationSweeper;
+import com.origin.urlshortener.service.ShortCodePool;
+import com.origin.urlshortener.storage.UrlMappingStore;
+import com.origin.urlshortener.util.Base62;
+import com.origin.urlshortener.util.SnowflakeIdGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class UrlMappingCacheTest {
+    private final SnowflakeIdGenerator generator = new SnowflakeIdGenerator();
+    private final CacheProperties properties = new CacheProperties();
+    private UrlMappingStore urlMappingStore;
+
+    @BeforeEach
+    void setUp() {
+        urlMappingStore = mock(UrlMappingStore.class);
+        properties.setExpiredRetention(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void testClickLimitedMappingsAreNeverCached() {
+        UrlMappingCache urlMappingCache = new UrlMappingCache(properties, urlMappingStore);
+        LocalShortCodeCache sharedCache = new LocalShortCodeCache(properties);
+        UrlMapping limited = mapping(null, 10L);
+
+        urlMappingCache.put(limited);
+        sharedCache.put(limited);
+
+        assertNull(urlMappingCache.get(limited.getShortCode()));
+        assertNull(sharedCache.get(limited.getShortCode()));
+        assertEquals(0, urlMappingCache.size());
+    }
+
+    @Test
+    void testExpiringMappingsAreDroppedByTheirExpiry() throws Exception {
+        UrlMappingCache urlMappingCache = new UrlMappingCache(properties, urlMappingStore);
+        LocalShortCodeCache sharedCache = new LocalShortCodeCache(properties);
+        UrlMapping expiring = mapping(LocalDateTime.now().plus(Duration.ofMillis(300)), null);
+        UrlMapping expiredLongAgo = mapping(LocalDateTime.now().minusMinutes(1), null);
+
+        urlMappingCache.put(expiring);
+        sharedCache.put(expiring);
+        urlMappingCache.put(expiredLongAgo);
+        assertSame(expiring, urlMappingCache.get(expiring.getShortCode()));
+        assertSame(expiring, sharedCache.get(expiring.getShortCode()));
+        assertNull(urlMappingCache.get(expiredLongAgo.getShortCode()));
+
+        // Past its expiry the shared tier drops it, the in-process cache only once the retention has passed as well
+        Thread.sleep(400);
+        assertNull(sharedCache.get(expiring.getShortCode()));
+        assertSame(expiring, urlMappingCache.get(expiring.getShortCode()), "Still rejected from memory");
+        Thread.sleep(1000);
+        assertNull(urlMappingCache.get(expiring.getShortCode()));
+    }
+
+    @Test
+    void testSweptMappingsAreInvalidatedInEveryTier() {
+        UrlMappingCache urlMappingCache = new UrlMappingCache(properties, urlMappingStore);
+        LocalShortCodeCache sharedCache = new LocalShortCodeCache(properties);
+        UrlMapping deleted = mapping(LocalDateTime.now().plusDays(1), null);
+        UrlMapping kept = mapping(null, null);
+        for (UrlMapping urlMapping : List.of(deleted, kept)) {
+            urlMappingCache.put(urlMapping);
+            sharedCache.put(urlMapping);
+        }
+        when(urlMappingStore.deleteExpired(any(), anyInt())).thenReturn(List.of(deleted.getShortCode()));
+        // Delivered to this node directly, as every channel does
+        CacheInvalidationChannel channel = shortCodes -> shortCodes.forEach(urlMappingCache::invalidate);
+        // A real instance: an inline mock would instrument ShortenerMetrics for every test in the JVM
+        ShortenerMetrics metrics = new ShortenerMetrics(new SimpleMeterRegistry(), generator, urlMappingCache,
+                mock(ClickTracker.class), mock(ShortCodePool.class), sharedCache);
+
+        new ExpirationSweeper(new ExpirationProperties(), urlMappingStore, sharedCache, channel, metrics).sweep();
+
+        assertNull(urlMappingCache.get(deleted.getShortCode()));
+        assertNull(sharedCache.get(deleted.getShortCode()));
+        assertSame(kept, urlMappingCache.get(kept.getShortCode()));
+        assertSame(kept, sharedCache.get(kept.getShortCode()));
+    }
+
+    private UrlMapping mapping(LocalDateTime expiresAt, Long maxClicks) {
+        long id = generator.nextId();
+        return new UrlMapping(id, "https://example.com/" + id, Base62.encode(id), null, LocalDateTime.now(), 0, null,
+                expiresAt, maxClicks, true);
+    }
+}
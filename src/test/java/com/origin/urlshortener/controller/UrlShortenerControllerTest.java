@@ -1,23 +1,46 @@
 package com.origin.urlshortener.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.origin.urlshortener.config.BulkProperties;
+import com.origin.urlshortener.config.RateLimitProperties;
+import com.origin.urlshortener.config.RedirectProperties;
+import com.origin.urlshortener.dto.BulkShortenResult;
 import com.origin.urlshortener.dto.UrlRequest;
+import com.origin.urlshortener.exception.AdmissionRejectedException;
+import com.origin.urlshortener.exception.UrlExpiredException;
+import com.origin.urlshortener.metrics.ShortenerMetrics;
 import com.origin.urlshortener.model.UrlMapping;
+import com.origin.urlshortener.ratelimit.CreateAdmission;
+import com.origin.urlshortener.service.ClickTracker;
 import com.origin.urlshortener.service.UrlShortenerService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.mock.env.MockEnvironment;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.time.LocalDateTime;
-
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(UrlShortenerController.class)
+@EnableConfigurationProperties({BulkProperties.class, RedirectProperties.class})
 public class UrlShortenerControllerTest {
 
     @Autowired
@@ -29,6 +52,15 @@ public class UrlShortenerControllerTest {
     @MockBean
     private UrlShortenerService urlShortenerService;
 
+    @MockBean
+    private ClickTracker clickTracker;
+
+    @MockBean
+    private ShortenerMetrics shortenerMetrics;
+
+    @MockBean
+    private CreateAdmission createAdmission;
+
     @Test
     public void testShortenUrl() throws Exception {
         String originalUrl = "https://www.originenergy.com.au/electricity-gas/plans.html";
@@ -39,7 +71,7 @@ public class UrlShortenerControllerTest {
         urlMapping.setCreatedAt(LocalDateTime.now());
 
         // Only mock successful response for this specific valid URL
-        when(urlShortenerService.shortenUrl(originalUrl)).thenReturn(urlMapping);
+        when(urlShortenerService.shortenUrl(originalUrl, null, null)).thenReturn(urlMapping);
 
         UrlRequest request = new UrlRequest();
         request.setUrl(originalUrl);
@@ -50,7 +82,8 @@ public class UrlShortenerControllerTest {
                 .andExpect(status().isCreated())
                 .andExpect(jsonPath("$.originalUrl").value(originalUrl))
                 .andExpect(jsonPath("$.shortCode").value("abc123"))
-                .andExpect(jsonPath("$.createdAt").exists());
+                .andExpect(jsonPath("$.createdAt").exists())
+                .andExpect(jsonPath("$.expiresAt").doesNotExist());
     }
 
     @Test
@@ -65,8 +98,82 @@ public class UrlShortenerControllerTest {
         when(urlShortenerService.getOriginalUrl(shortCode)).thenReturn(urlMapping);
 
         mockMvc.perform(get("/api/v1/shortener/{shortCode}", shortCode))
-                .andExpect(status().is3xxRedirection())
-                .andExpect(redirectedUrl(originalUrl));
+                .andExpect(status().isFound())
+                .andExpect(redirectedUrl(originalUrl))
+                .andExpect(header().doesNotExist("Cache-Control"))
+                .andExpect(content().string(""));
+
+        verify(clickTracker).record(shortCode);
+    }
+
+    @Test
+    public void testRedirectEncodesUrlsThatUriRejects() throws Exception {
+        UrlMapping urlMapping = new UrlMapping();
+        // An imported row that was never canonicalized
+        urlMapping.setOriginalUrl("http://[::1é]/menu du café");
+        urlMapping.setShortCode("abc123");
+        when(urlShortenerService.getOriginalUrl("abc123")).thenReturn(urlMapping);
+
+        mockMvc.perform(get("/api/v1/shortener/{shortCode}", "abc123"))
+                .andExpect(status().isFound())
+                .andExpect(header().string("Location", "http://[::1%C3%A9]/menu%20du%20caf%C3%A9"));
+    }
+
+    @Test
+    public void testShortenUrlRateLimited() throws Exception {
+        when(createAdmission.admit(any())).thenThrow(new AdmissionRejectedException(
+                HttpStatus.TOO_MANY_REQUESTS, "Rate limit exceeded, retry later", 3));
+
+        UrlRequest request = new UrlRequest();
+        request.setUrl("https://example.com");
+        mockMvc.perform(post("/api/v1/shortener")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "3"))
+                .andExpect(jsonPath("$.status").value(429));
+        verify(urlShortenerService, never()).shortenUrl(any(), any(), any());
+    }
+
+    @Test
+    public void testRedirectToExpiredUrl() throws Exception {
+        when(urlShortenerService.getOriginalUrl("abc123"))
+                .thenThrow(new UrlExpiredException("Short URL has expired: abc123"));
+
+        mockMvc.perform(get("/api/v1/shortener/{shortCode}", "abc123"))
+                .andExpect(status().isGone())
+                .andExpect(jsonPath("$.message").value("Short URL has expired: abc123"));
+    }
+
+    @Test
+    public void testShortenUrlWithLimits() throws Exception {
+        String originalUrl = "https://www.originenergy.com.au/electricity-gas/plans.html";
+        LocalDateTime expiresAt = LocalDateTime.now().plusDays(1).withNano(0);
+        UrlMapping urlMapping = new UrlMapping();
+        urlMapping.setId(1L);
+        urlMapping.setOriginalUrl(originalUrl);
+        urlMapping.setShortCode("abc123");
+        urlMapping.setCreatedAt(LocalDateTime.now());
+        urlMapping.setExpiresAt(expiresAt);
+        urlMapping.setMaxClicks(5L);
+        when(urlShortenerService.shortenUrl(originalUrl, expiresAt, 5L)).thenReturn(urlMapping);
+
+        UrlRequest request = new UrlRequest();
+        request.setUrl(originalUrl);
+        request.setExpiresAt(expiresAt);
+        request.setMaxClicks(5L);
+        mockMvc.perform(post("/api/v1/shortener")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.expiresAt").exists())
+                .andExpect(jsonPath("$.maxClicks").value(5));
+
+        request.setExpiresAt(LocalDateTime.now().minusMinutes(1));
+        mockMvc.perform(post("/api/v1/shortener")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
     }
 
     @Test
@@ -95,7 +202,7 @@ public class UrlShortenerControllerTest {
         UrlRequest emptyRequest = new UrlRequest();
         emptyRequest.setUrl("");
 
-        when(urlShortenerService.shortenUrl(""))
+        when(urlShortenerService.shortenUrl("", null, null))
             .thenThrow(new com.origin.urlshortener.exception.InvalidUrlException("Validation failed: {url=URL cannot be empty}"));
 
         mockMvc.perform(post("/api/v1/shortener")
@@ -110,7 +217,7 @@ public class UrlShortenerControllerTest {
         UrlRequest nullRequest = new UrlRequest();
         nullRequest.setUrl(null);
 
-        when(urlShortenerService.shortenUrl(null))
+        when(urlShortenerService.shortenUrl(null, null, null))
             .thenThrow(new com.origin.urlshortener.exception.InvalidUrlException("Validation failed: {url=URL cannot be empty}"));
 
         mockMvc.perform(post("/api/v1/shortener")
@@ -147,7 +254,7 @@ public class UrlShortenerControllerTest {
         request.setUrl(invalidUrl);
 
         // Mock service to throw InvalidUrlException for invalid URLs
-        when(urlShortenerService.shortenUrl(invalidUrl))
+        when(urlShortenerService.shortenUrl(invalidUrl, null, null))
             .thenThrow(new com.origin.urlshortener.exception.InvalidUrlException("Validation failed: " + invalidUrl));
 
         mockMvc.perform(post("/api/v1/shortener")
@@ -188,7 +295,7 @@ public class UrlShortenerControllerTest {
         urlMapping.setCreatedAt(LocalDateTime.now());
 
         // Only mock successful response for this specific valid URL
-        when(urlShortenerService.shortenUrl(validUrl)).thenReturn(urlMapping);
+        when(urlShortenerService.shortenUrl(validUrl, null, null)).thenReturn(urlMapping);
 
         UrlRequest request = new UrlRequest();
         request.setUrl(validUrl);
@@ -221,4 +328,61 @@ public class UrlShortenerControllerTest {
         mockMvc.perform(get("/api/v1/shortener/{shortCode}", shortCode))
                 .andExpect(status().isNotFound());
     }
-} 
\ No newline at end of file
+
+    @Test
+    public void testShortenUrlsStreamsNdjsonResults() throws Exception {
+        LocalDateTime createdAt = LocalDateTime.now();
+        List<BulkShortenResult> results = List.of(
+            new BulkShortenResult(0, 201, "https://example.com/a", "abc123", createdAt, null),
+            new BulkShortenResult(1, 400, "ftp://example.com", null, null, "Invalid URL scheme: only http and https are supported"));
+        CreateAdmission unlimited = new CreateAdmission(new RateLimitProperties(), shortenerMetrics, new MockEnvironment());
+        when(createAdmission.admit(any())).thenAnswer(invocation -> unlimited.admit(invocation.getArgument(0)));
+        when(urlShortenerService.shortenUrls(eq(List.of("https://example.com/a", "ftp://example.com")), eq(0L)))
+            .thenReturn(results);
+
+        MvcResult mvcResult = mockMvc.perform(post("/api/v1/shortener/batch")
+                .contentType(UrlShortenerController.APPLICATION_NDJSON_VALUE)
+                .content("{\"url\":\"https://example.com/a\"}\n{\"url\":\"ftp://example.com\"}\n"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(UrlShortenerController.APPLICATION_NDJSON_VALUE))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length, "One result line per URL");
+        assertTrue(lines[0].contains("\"shortCode\":\"abc123\""));
+        assertTrue(lines[1].contains("\"status\":400"));
+    }
+
+    @Test
+    public void testShortenUrlsReleasesPermitWhenAsyncRequestEnds() throws Exception {
+        RateLimitProperties rateLimit = new RateLimitProperties();
+        rateLimit.setEnabled(true);
+        rateLimit.setClientRate(0);
+        rateLimit.setGlobalRate(0);
+        rateLimit.setMaxConcurrentCreates(1);
+        CreateAdmission admission = new CreateAdmission(rateLimit, shortenerMetrics, new MockEnvironment());
+        when(createAdmission.admit(any())).thenAnswer(invocation -> admission.admit(invocation.getArgument(0)));
+        CountDownLatch stuck = new CountDownLatch(1);
+        when(urlShortenerService.shortenUrls(any(), eq(0L))).thenAnswer(invocation -> {
+            stuck.await(10, TimeUnit.SECONDS);
+            return List.of();
+        });
+
+        MvcResult mvcResult = mockMvc.perform(post("/api/v1/shortener/batch")
+                .contentType(UrlShortenerController.APPLICATION_NDJSON_VALUE)
+                .content("{\"url\":\"https://example.com/a\"}\n"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertEquals(0, admission.availableSlots(), "The slot is held while the response is pending");
+
+        // The container ends the request (timeout, error or client gone) before the body finishes
+        mvcResult.getRequest().getAsyncContext().complete();
+        assertEquals(1, admission.availableSlots(), "The slot is released when the async request ends");
+
+        stuck.countDown();
+    }
+}
@@ -0,0 +1,107 @@
+package com.origin.urlshortener.datasource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadReplicaRoutingDataSourceTest {
+    private ReadReplicaRoutingDataSource dataSource;
+
+    @AfterEach
+    void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    void testReadOnlyTransactionsAreSpreadOverReplicas() {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-1", database("replica-1"));
+        replicas.put("replica-2", database("replica-2"));
+        dataSource = open(replicas);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        TransactionTemplate readWrite = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        TransactionTemplate readOnly = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        readOnly.setReadOnly(true);
+
+        Set<String> readFrom = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            readFrom.add(readOnly.execute(status -> node(jdbcTemplate)));
+        }
+        assertEquals(Set.of("replica-1", "replica-2"), readFrom);
+
+        assertEquals("primary", node(jdbcTemplate));
+        assertEquals("primary", readWrite.execute(status -> node(jdbcTemplate)));
+        assertEquals("primary", ReadReplicaRoutingDataSource.onPrimary(
+                () -> readOnly.execute(status -> node(jdbcTemplate))));
+    }
+
+    @Test
+    void testFailedReplicaIsSkippedUntilHealthy() {
+        FlakyDataSource replica = new FlakyDataSource(database("replica-1"));
+        dataSource = open(Map.of("replica-1", replica));
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        TransactionTemplate readOnly = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        readOnly.setReadOnly(true);
+
+        replica.down = true;
+        assertEquals("primary", readOnly.execute(status -> node(jdbcTemplate)));
+        assertEquals(0, dataSource.healthyReplicas());
+
+        replica.down = false;
+        dataSource.checkHealth();
+        assertEquals(1, dataSource.healthyReplicas());
+        assertEquals("replica-1", readOnly.execute(status -> node(jdbcTemplate)));
+    }
+
+    private ReadReplicaRoutingDataSource open(Map<String, DataSource> replicas) {
+        // Periodic checks are left to the tests
+        return new ReadReplicaRoutingDataSource(database("primary"), replicas,
+                Duration.ofHours(1), Duration.ofSeconds(1));
+    }
+
+    private static String node(JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.queryForObject("SELECT name FROM node", String.class);
+    }
+
+    // A separate in-memory H2 database standing in for each server
+    private static DataSource database(String name) {
+        JdbcDataSource database = new JdbcDataSource();
+        database.setURL("jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("CREATE TABLE node (name VARCHAR(20))");
+        jdbcTemplate.update("INSERT INTO node VALUES (?)", name);
+        return database;
+    }
+
+    private static class FlakyDataSource extends DelegatingDataSource {
+        volatile boolean down;
+
+        FlakyDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (down) {
+                throw new SQLException("Connection refused");
+            }
+            return super.getConnection();
+        }
+    }
+}
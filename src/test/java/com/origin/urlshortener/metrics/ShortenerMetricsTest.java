@@ -0,0 +1,61 @@
+package com.origin.urlshortener.metrics;
+
+import com.origin.urlshortener.cache.NoOpShortCodeCache;
+import com.origin.urlshortener.cache.UrlMappingCache;
+import com.origin.urlshortener.service.ClickTracker;
+import com.origin.urlshortener.service.ShortCodePool;
+import com.origin.urlshortener.util.SnowflakeIdGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ShortenerMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ShortenerMetrics metrics = new ShortenerMetrics(registry, new SnowflakeIdGenerator(),
+            mock(UrlMappingCache.class), mock(ClickTracker.class), mock(ShortCodePool.class), new NoOpShortCodeCache());
+
+    @Test
+    void testCountersAreTagged() {
+        metrics.notFound(true);
+        metrics.notFound(false);
+        metrics.notFound(false);
+        metrics.shortened(true);
+        metrics.invalidUrl();
+
+        assertEquals(1, registry.get("shortener.lookup.not.found").tag("source", "filter").counter().count());
+        assertEquals(2, registry.get("shortener.lookup.not.found").tag("source", "database").counter().count());
+        assertEquals(1, registry.get("shortener.shorten.results").tag("outcome", "existing").counter().count());
+        assertEquals(0, registry.get("shortener.shorten.results").tag("outcome", "created").counter().count());
+        assertEquals(1, registry.get("shortener.shorten.invalid").counter().count());
+    }
+
+    @Test
+    void testRecordingDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < 10_000; i++) {
+            metrics.recordRedirect(System.nanoTime());
+            metrics.recordLookup(System.nanoTime());
+        }
+
+        // Best of several rounds, so a round that ran before the JIT finished compiling the loop does not count
+        long allocated = Long.MAX_VALUE;
+        int rounds = 0;
+        for (; rounds < 5 && allocated >= 64 * 1024; rounds++) {
+            long before = threads.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < 100_000; i++) {
+                metrics.recordRedirect(System.nanoTime());
+                metrics.recordLookup(System.nanoTime());
+            }
+            allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        }
+
+        // Allow for incidental allocation (e.g. histogram window rotation), far below one object per call
+        assertTrue(allocated < 64 * 1024, "Recording allocated " + allocated + " bytes");
+        assertEquals(10_000 + rounds * 100_000L, registry.get("shortener.http.redirect").timer().count());
+    }
+}
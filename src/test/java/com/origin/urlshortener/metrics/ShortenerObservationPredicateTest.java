@@ -0,0 +1,35 @@
+package com.origin.urlshortener.metrics;
+
+import io.micrometer.observation.Observation;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.server.observation.ServerRequestObservationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShortenerObservationPredicateTest {
+
+    private final ShortenerObservationPredicate predicate = new ShortenerObservationPredicate();
+
+    @Test
+    void testRedirectsAndCreatesAreNotObserved() {
+        assertFalse(observed("GET", "/api/v1/shortener/abc123"));
+        assertFalse(observed("POST", "/api/v1/shortener"));
+    }
+
+    @Test
+    void testOtherEndpointsAreObserved() {
+        assertTrue(observed("GET", "/api/v1/shortener/info/abc123"));
+        assertTrue(observed("POST", "/api/v1/shortener/batch"));
+        assertTrue(observed("GET", "/api/v1/mappings/export"));
+        assertTrue(observed("GET", "/actuator/prometheus"));
+        assertTrue(predicate.test("jdbc.query", new Observation.Context()));
+    }
+
+    private boolean observed(String method, String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        return predicate.test("http.server.requests",
+                new ServerRequestObservationContext(request, new MockHttpServletResponse()));
+    }
+}
@@ -0,0 +1,85 @@
+package com.origin.urlshortener.ratelimit;
+
+import com.origin.urlshortener.cache.NoOpShortCodeCache;
+import com.origin.urlshortener.cache.UrlMappingCache;
+import com.origin.urlshortener.config.RateLimitProperties;
+import com.origin.urlshortener.exception.AdmissionRejectedException;
+import com.origin.urlshortener.metrics.ShortenerMetrics;
+import com.origin.urlshortener.service.ClickTracker;
+import com.origin.urlshortener.service.ShortCodePool;
+import com.origin.urlshortener.util.SnowflakeIdGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class CreateAdmissionTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ShortenerMetrics metrics = new ShortenerMetrics(registry, new SnowflakeIdGenerator(),
+            mock(UrlMappingCache.class), mock(ClickTracker.class), mock(ShortCodePool.class), new NoOpShortCodeCache());
+    private RateLimitProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new RateLimitProperties();
+        properties.setEnabled(true);
+        properties.setClientRate(1);
+        properties.setClientBurst(2);
+        properties.setGlobalRate(0);
+    }
+
+    @Test
+    void testClientsAreLimitedSeparately() {
+        properties.setClientAddressHeader("X-Forwarded-For");
+        CreateAdmission admission = new CreateAdmission(properties, metrics, new MockEnvironment());
+
+        admission.admit(request("10.0.0.1, 192.168.0.1")).close();
+        admission.admit(request("10.0.0.1")).close();
+        AdmissionRejectedException rejected = assertThrows(AdmissionRejectedException.class,
+                () -> admission.admit(request("10.0.0.1, 192.168.0.2")));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, rejected.getStatus());
+        assertEquals(1, rejected.getRetryAfterSeconds());
+        assertEquals(1, rejections("client"));
+
+        admission.admit(request("10.0.0.2")).close();
+    }
+
+    @Test
+    void testCreatesBeyondTheSlotsAreShed() {
+        properties.setClientRate(0);
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("spring.datasource.hikari.maximum-pool-size", "4");
+        CreateAdmission admission = new CreateAdmission(properties, metrics, environment);
+        assertEquals(2, admission.availableSlots());
+
+        CreateAdmission.Permit first = admission.admit(request(null));
+        CreateAdmission.Permit second = admission.admit(request(null));
+        AdmissionRejectedException rejected = assertThrows(AdmissionRejectedException.class,
+                () -> admission.admit(request(null)));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rejected.getStatus());
+        assertEquals(1, rejections("overload"));
+
+        first.close();
+        first.close();
+        assertEquals(1, admission.availableSlots());
+        second.close();
+        assertEquals(2, admission.availableSlots());
+    }
+
+    private double rejections(String reason) {
+        return registry.get("shortener.create.rejected").tag("reason", reason).counter().count();
+    }
+
+    private static MockHttpServletRequest request(String forwardedFor) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/shortener");
+        if (forwardedFor != null) {
+            request.addHeader("X-Forwarded-For", forwardedFor);
+        }
+        return request;
+    }
+}
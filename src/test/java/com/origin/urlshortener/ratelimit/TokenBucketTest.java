@@ -0,0 +1,61 @@
+package com.origin.urlshortener.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void testAllowsBurstThenRefillsAtRate() {
+        TokenBucket bucket = new TokenBucket(10, 5);
+        long now = 1_000 * SECOND;
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, bucket.tryAcquire(now));
+        }
+        // Empty: the next token arrives after 1/10 s
+        assertEquals(SECOND / 10, bucket.tryAcquire(now));
+        assertEquals(SECOND / 20, bucket.tryAcquire(now + SECOND / 20));
+        assertEquals(0, bucket.tryAcquire(now + SECOND / 10));
+        assertTrue(bucket.tryAcquire(now + SECOND / 10) > 0);
+    }
+
+    @Test
+    void testIdleBucketDoesNotExceedBurst() {
+        TokenBucket bucket = new TokenBucket(10, 2);
+        long now = 1_000 * SECOND;
+        assertEquals(0, bucket.tryAcquire(now));
+        long later = now + 60 * SECOND;
+        assertEquals(0, bucket.tryAcquire(later));
+        assertEquals(0, bucket.tryAcquire(later));
+        assertTrue(bucket.tryAcquire(later) > 0);
+    }
+
+    @Test
+    void testConcurrentCallersNeverTakeMoreThanTheBurst() throws Exception {
+        TokenBucket bucket = new TokenBucket(0.001, 1000);
+        long now = System.nanoTime();
+        int[] granted = new int[8];
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            int index = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    if (bucket.tryAcquire(now) == 0) {
+                        granted[index]++;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        int total = 0;
+        for (int t = 0; t < threads.length; t++) {
+            threads[t].join();
+            total += granted[t];
+        }
+        assertEquals(1000, total);
+    }
+}
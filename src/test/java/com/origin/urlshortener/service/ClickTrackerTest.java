@@ -0,0 +1,120 @@
+package com.origin.urlshortener.service;
+
+import com.origin.urlshortener.config.ClickTrackingProperties;
+import com.origin.urlshortener.storage.ClickUpdate;
+import com.origin.urlshortener.storage.UrlMappingStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class ClickTrackerTest {
+    private UrlMappingStore urlMappingStore;
+    private ClickTrackingProperties properties;
+    private ClickTracker clickTracker;
+
+    @BeforeEach
+    void setUp() {
+        urlMappingStore = mock(UrlMappingStore.class);
+        properties = new ClickTrackingProperties();
+        // Keep the background flusher out of the way, tests flush explicitly
+        properties.setFlushInterval(Duration.ofHours(1));
+        clickTracker = new ClickTracker(properties, urlMappingStore);
+        clickTracker.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        clickTracker.stop();
+    }
+
+    @Test
+    void testFlushWritesAggregatedCounts() {
+        clickTracker.record("aaaaaaaaaaa");
+        clickTracker.record("aaaaaaaaaaa");
+        clickTracker.record("aaaaaaaaaaa");
+        clickTracker.record("bbbbbbbbbbb");
+        assertEquals(3, clickTracker.pendingClicks("aaaaaaaaaaa"));
+
+        clickTracker.flush();
+
+        Map<String, Long> written = capturedDeltas(1);
+        assertEquals(Map.of("aaaaaaaaaaa", 3L, "bbbbbbbbbbb", 1L), written);
+        assertEquals(0, clickTracker.pendingClicks("aaaaaaaaaaa"));
+    }
+
+    @Test
+    void testIdleCodesAreNotRewritten() {
+        clickTracker.record("aaaaaaaaaaa");
+        clickTracker.flush();
+        clickTracker.flush();
+        clickTracker.flush();
+
+        verify(urlMappingStore, times(1)).applyClicks(anyList());
+        assertEquals(0, clickTracker.pendingCodes(), "Idle codes should be dropped from the pending map");
+
+        clickTracker.record("aaaaaaaaaaa");
+        clickTracker.flush();
+        assertEquals(Map.of("aaaaaaaaaaa", 1L), capturedDeltas(2));
+    }
+
+    @Test
+    void testFailedFlushIsRetried() {
+        doThrow(new DataAccessResourceFailureException("database unavailable"))
+                .doNothing()
+                .when(urlMappingStore).applyClicks(anyList());
+
+        clickTracker.record("aaaaaaaaaaa");
+        clickTracker.record("aaaaaaaaaaa");
+        clickTracker.flush();
+        assertEquals(2, clickTracker.pendingClicks("aaaaaaaaaaa"), "Counts should stay pending after a failed flush");
+
+        clickTracker.flush();
+        assertEquals(Map.of("aaaaaaaaaaa", 2L), capturedDeltas(2));
+    }
+
+    @Test
+    void testOverflowDropsNewCodes() {
+        properties.setMaxPending(1);
+        // The overflow wakes the flusher; failing its writes keeps the counts pending for the assertions
+        doThrow(new DataAccessResourceFailureException("database unavailable"))
+                .when(urlMappingStore).applyClicks(anyList());
+        clickTracker.record("aaaaaaaaaaa");
+        clickTracker.record("bbbbbbbbbbb");
+        clickTracker.record("aaaaaaaaaaa");
+
+        assertEquals(2, clickTracker.pendingClicks("aaaaaaaaaaa"), "Already pending codes keep counting");
+        assertEquals(0, clickTracker.pendingClicks("bbbbbbbbbbb"));
+        assertEquals(1, clickTracker.droppedClicks());
+    }
+
+    @Test
+    void testStopFlushesPendingClicks() {
+        clickTracker.record("aaaaaaaaaaa");
+        clickTracker.stop();
+
+        assertEquals(Map.of("aaaaaaaaaaa", 1L), capturedDeltas(1));
+        assertFalse(clickTracker.isRunning());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Long> capturedDeltas(int expectedCalls) {
+        ArgumentCaptor<List<ClickUpdate>> captor = ArgumentCaptor.forClass(List.class);
+        verify(urlMappingStore, times(expectedCalls)).applyClicks(captor.capture());
+        Map<String, Long> deltas = new HashMap<>();
+        for (ClickUpdate clickUpdate : captor.getValue()) {
+            deltas.put(clickUpdate.shortCode(), clickUpdate.clicks());
+        }
+        return deltas;
+    }
+}
@@ -0,0 +1,79 @@
+package com.origin.urlshortener.service;
+
+import com.origin.urlshortener.cache.CacheInvalidationChannel;
+import com.origin.urlshortener.cache.ShortCodeCache;
+import com.origin.urlshortener.cache.UrlMappingCache;
+import com.origin.urlshortener.config.ExpirationProperties;
+import com.origin.urlshortener.metrics.ShortenerMetrics;
+import com.origin.urlshortener.storage.UrlMappingStore;
+import com.origin.urlshortener.util.SnowflakeIdGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ExpirationSweeperTest {
+    private UrlMappingStore urlMappingStore;
+    private ShortCodeCache shortCodeCache;
+    private CacheInvalidationChannel cacheInvalidationChannel;
+    private SimpleMeterRegistry registry;
+    private ExpirationProperties properties;
+    private ExpirationSweeper sweeper;
+
+    @BeforeEach
+    void setUp() {
+        urlMappingStore = mock(UrlMappingStore.class);
+        shortCodeCache = mock(ShortCodeCache.class);
+        cacheInvalidationChannel = mock(CacheInvalidationChannel.class);
+        registry = new SimpleMeterRegistry();
+        // A real instance: an inline mock would instrument ShortenerMetrics for every test in the JVM
+        ShortenerMetrics metrics = new ShortenerMetrics(registry, new SnowflakeIdGenerator(),
+                mock(UrlMappingCache.class), mock(ClickTracker.class), mock(ShortCodePool.class), shortCodeCache);
+        properties = new ExpirationProperties();
+        properties.setBatchSize(2);
+        properties.setBatchPause(Duration.ZERO);
+        sweeper = new ExpirationSweeper(properties, urlMappingStore, shortCodeCache, cacheInvalidationChannel, metrics);
+    }
+
+    @Test
+    void testSweepDeletesBatchesUntilOneIsShort() {
+        when(urlMappingStore.deleteExpired(any(), eq(2)))
+                .thenReturn(List.of("aaaaaaaaaaa", "bbbbbbbbbbb"))
+                .thenReturn(List.of("ccccccccccc"))
+                .thenReturn(List.of("ddddddddddd"));
+
+        assertEquals(3, sweeper.sweep());
+
+        verify(urlMappingStore, times(2)).deleteExpired(any(), eq(2));
+        verify(shortCodeCache).evict(List.of("aaaaaaaaaaa", "bbbbbbbbbbb"));
+        verify(cacheInvalidationChannel).publish(List.of("aaaaaaaaaaa", "bbbbbbbbbbb"));
+        verify(cacheInvalidationChannel).publish(List.of("ccccccccccc"));
+        assertEquals(3, registry.get("shortener.expiration.deleted").counter().count());
+    }
+
+    @Test
+    void testSweepStopsAfterMaxBatches() {
+        properties.setMaxBatchesPerSweep(3);
+        when(urlMappingStore.deleteExpired(any(), eq(2))).thenReturn(List.of("aaaaaaaaaaa", "bbbbbbbbbbb"));
+
+        assertEquals(6, sweeper.sweep());
+
+        verify(urlMappingStore, times(3)).deleteExpired(any(), eq(2));
+    }
+
+    @Test
+    void testNotStartedForEnginesWithoutExpiration() {
+        when(urlMappingStore.supportsExpiration()).thenReturn(false);
+
+        sweeper.start();
+
+        assertFalse(sweeper.isRunning());
+    }
+}
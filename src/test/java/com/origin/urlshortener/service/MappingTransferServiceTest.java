@@ -0,0 +1,110 @@
+package com.origin.urlshortener.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.origin.urlshortener.cache.ShortCodeFilter;
+import com.origin.urlshortener.config.FilterProperties;
+import com.origin.urlshortener.config.StorageProperties;
+import com.origin.urlshortener.config.TransferProperties;
+import com.origin.urlshortener.dto.ImportResult;
+import com.origin.urlshortener.model.UrlMapping;
+import com.origin.urlshortener.storage.MmapUrlMappingStore;
+import com.origin.urlshortener.util.Base62;
+import com.origin.urlshortener.util.SnowflakeIdGenerator;
+import com.origin.urlshortener.util.UrlDigest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappingTransferServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final SnowflakeIdGenerator generator = new SnowflakeIdGenerator();
+    private final List<MmapUrlMappingStore> stores = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (MmapUrlMappingStore store : stores) {
+            store.close();
+        }
+    }
+
+    @Test
+    void testGzipRoundTripSkipsExistingMappings() throws Exception {
+        MmapUrlMappingStore source = store("source");
+        List<UrlMapping> mappings = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            mappings.add(mapping("https://example.com/" + i));
+        }
+        source.insertAll(mappings);
+
+        ByteArrayOutputStream exported = new ByteArrayOutputStream();
+        assertEquals(25, service(source).exportTo(exported, true));
+
+        MmapUrlMappingStore target = store("target");
+        MappingTransferService importer = service(target);
+        ImportResult first = importer.importFrom(new ByteArrayInputStream(exported.toByteArray()));
+        assertEquals(new ImportResult(25, 25, 0, null), first);
+        ImportResult second = importer.importFrom(new ByteArrayInputStream(exported.toByteArray()));
+        assertEquals(new ImportResult(25, 0, 25, null), second);
+
+        for (UrlMapping mapping : mappings) {
+            UrlMapping imported = target.findByShortCode(mapping.getShortCode()).orElseThrow();
+            assertEquals(mapping.getOriginalUrl(), imported.getOriginalUrl());
+            assertEquals(mapping.getCreatedAt(), imported.getCreatedAt());
+            assertTrue(target.findByUrlHash(UrlDigest.sha256(mapping.getOriginalUrl())).isPresent());
+        }
+    }
+
+    @Test
+    void testMalformedInputKeepsMappingsReadBeforeIt() throws Exception {
+        MmapUrlMappingStore target = store("target");
+        UrlMapping mapping = mapping("https://example.com/a");
+        String input = "{\"shortCode\":\"" + mapping.getShortCode() + "\",\"originalUrl\":\"https://example.com/a\"}\n{oops";
+
+        ImportResult result = service(target).importFrom(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(1, result.getRead());
+        assertEquals(1, result.getImported());
+        assertNotNull(result.getMessage());
+        // Created time falls back to the one embedded in the Snowflake ID
+        assertEquals(SnowflakeIdGenerator.timestampOf(mapping.getId()) / 1000,
+                target.findByShortCode(mapping.getShortCode()).orElseThrow().getCreatedAt()
+                        .atZone(ZoneId.systemDefault()).toEpochSecond());
+    }
+
+    private MappingTransferService service(MmapUrlMappingStore store) {
+        TransferProperties properties = new TransferProperties();
+        properties.setBatchSize(10);
+        ShortCodeFilter filter = new ShortCodeFilter(new FilterProperties(), store, generator);
+        return new MappingTransferService(store, filter, objectMapper, properties);
+    }
+
+    private MmapUrlMappingStore store(String name) throws Exception {
+        StorageProperties properties = new StorageProperties();
+        properties.getMmap().setDirectory(directory.resolve(name).toString());
+        properties.getMmap().setIndexCapacity(1 << 6);
+        MmapUrlMappingStore store = new MmapUrlMappingStore(properties);
+        stores.add(store);
+        return store;
+    }
+
+    private UrlMapping mapping(String url) {
+        long id = generator.nextId();
+        return new UrlMapping(id, url, Base62.encode(id), UrlDigest.sha256(url), LocalDateTime.now(), 0, null, null, null, false);
+    }
+}
@@ -0,0 +1,98 @@
+package com.origin.urlshortener.service;
+
+import com.origin.urlshortener.config.FilterProperties;
+import com.origin.urlshortener.config.IdGeneratorProperties;
+import com.origin.urlshortener.util.SnowflakeIdGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShortCodePoolTest {
+    private final SnowflakeIdGenerator generator = new SnowflakeIdGenerator();
+    private IdGeneratorProperties properties;
+    private ShortCodePool pool;
+
+    @BeforeEach
+    void setUp() {
+        properties = new IdGeneratorProperties();
+        properties.getPool().setCapacity(100);
+        properties.getPool().setLowWatermark(20);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.stop();
+        }
+    }
+
+    @Test
+    void testServesPooledIdsAndRefillsBelowLowWatermark() throws Exception {
+        start();
+        awaitTrue(() -> pool.size() == 100);
+
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 90; i++) {
+            assertTrue(ids.add(pool.nextId()));
+        }
+        // The producer may already have topped up part way through, leaving the pool above the low watermark
+        awaitTrue(() -> pool.size() >= 20);
+        assertEquals(0, pool.misses());
+        for (int i = 0; i < 300; i++) {
+            assertTrue(ids.add(pool.nextId()));
+        }
+    }
+
+    @Test
+    void testDiscardsIdsOlderThanMaxAge() throws Exception {
+        properties.getPool().setMaxAge(Duration.ofMillis(100));
+        start();
+        awaitTrue(() -> pool.size() == 100);
+        Thread.sleep(250);
+
+        long id = pool.nextId();
+        assertTrue(SnowflakeIdGenerator.timestampOf(id) >= System.currentTimeMillis() - 100);
+        assertTrue(pool.discarded() > 0);
+    }
+
+    @Test
+    void testBypassedAndDrainedWhileGeneratorSuspended() throws Exception {
+        start();
+        awaitTrue(() -> pool.size() == 100);
+
+        generator.suspend("lease lost");
+        assertThrows(IllegalStateException.class, pool::nextId);
+        awaitTrue(() -> pool.size() == 0);
+
+        generator.resume();
+        pool.nextId();
+        awaitTrue(() -> pool.size() == 100);
+    }
+
+    @Test
+    void testMaxAgeMustBeBelowFilterClockSkew() {
+        properties.getPool().setMaxAge(Duration.ofMinutes(1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ShortCodePool(properties, new FilterProperties(), generator));
+    }
+
+    private void start() {
+        pool = new ShortCodePool(properties, new FilterProperties(), generator);
+        pool.start();
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met within 5s");
+            Thread.sleep(5);
+        }
+    }
+}
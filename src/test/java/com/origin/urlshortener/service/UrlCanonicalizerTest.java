@@ -0,0 +1,67 @@
+package com.origin.urlshortener.service;
+
+import com.origin.urlshortener.config.CanonicalizationProperties;
+import com.origin.urlshortener.exception.InvalidUrlException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UrlCanonicalizerTest {
+    private final UrlCanonicalizer canonicalizer = new UrlCanonicalizer(new CanonicalizationProperties());
+
+    @Test
+    void testCanonicalUrlIsReturnedAsIs() {
+        String url = "https://example.com/a/%C3%A9?q=1&q=2#top";
+        assertSame(url, canonicalizer.canonicalize(url));
+    }
+
+    @Test
+    void testSpellingsAreNormalized() {
+        assertEquals("http://example.com/", canonicalizer.canonicalize(" HTTP://Example.COM:80 "));
+        assertEquals("https://example.com/", canonicalizer.canonicalize("https://example.com:443"));
+        assertEquals("https://example.com:8443/x", canonicalizer.canonicalize("https://example.com:08443/x"));
+        assertEquals("http://example.com/", canonicalizer.canonicalize("http://example.com:/"));
+        assertEquals("http://example.com/?q#f", canonicalizer.canonicalize("http://example.com?q#f"));
+        assertEquals("http://User:Pw@host.com/Path", canonicalizer.canonicalize("http://User:Pw@HOST.com/Path"));
+        assertEquals("http://[fe80::1]:8080/", canonicalizer.canonicalize("http://[FE80::1]:8080/"));
+    }
+
+    @Test
+    void testQueryParametersSortedByNameIfConfigured() {
+        CanonicalizationProperties properties = new CanonicalizationProperties();
+        properties.setSortQueryParameters(true);
+        UrlCanonicalizer sorting = new UrlCanonicalizer(properties);
+
+        assertEquals("https://example.com/?a=1&b=2&b=1#f", sorting.canonicalize("https://example.com/?b=2&a=1&b=1#f"));
+        String sorted = "https://example.com/?a&b=1";
+        assertSame(sorted, sorting.canonicalize(sorted));
+        assertEquals("https://example.com/?b=2&a=1", canonicalizer.canonicalize("https://example.com/?b=2&a=1"));
+    }
+
+    @Test
+    void testInvalidUrlsAreRejected() {
+        List<String> invalid = List.of(
+                "example.com",
+                "ftp://example.com/file",
+                "http:/example.com",
+                "http://",
+                "http://:8080/",
+                "http://exa mple.com",
+                "http://exa_mple.com",
+                "http://example.com:99999/",
+                "http://example.com:8o/",
+                "http://[::1/",
+                "http://example.com/a b",
+                "http://example.com/<script>",
+                "http://example.com/%zz",
+                "http://example.com/%4",
+                "http://example.com/#a#b",
+                "http://example.com/" + "a".repeat(UrlCanonicalizer.MAX_LENGTH));
+        for (String url : invalid) {
+            InvalidUrlException e = assertThrows(InvalidUrlException.class, () -> canonicalizer.canonicalize(url), url);
+            assertEquals(0, e.getStackTrace().length);
+        }
+    }
+}
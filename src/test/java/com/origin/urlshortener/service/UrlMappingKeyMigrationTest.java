@@ -0,0 +1,129 @@
+package com.origin.urlshortener.service;
+
+import com.origin.urlshortener.config.DataSourceReplicaProperties;
+import com.origin.urlshortener.config.IdGeneratorProperties;
+import com.origin.urlshortener.config.StorageProperties;
+import com.origin.urlshortener.model.UrlMapping;
+import com.origin.urlshortener.repository.UrlMappingRepository;
+import com.origin.urlshortener.storage.JpaUrlMappingStore;
+import com.origin.urlshortener.util.Base62;
+import com.origin.urlshortener.util.SnowflakeIdGenerator;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class UrlMappingKeyMigrationTest {
+    // More legacy rows than one migration batch
+    private static final int LEGACY_ROWS = 600;
+
+    private final SnowflakeIdGenerator generator = new SnowflakeIdGenerator();
+    private final StorageProperties properties = new StorageProperties();
+    private JdbcDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private UrlMappingRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("db/url-mappings-shard.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        properties.setLookupMode(StorageProperties.LookupMode.PRIMARY_KEY);
+    }
+
+    @Test
+    void testLegacyRowsAreRekeyedByTheirSnowflakeId() {
+        List<String> legacyCodes = new ArrayList<>();
+        for (int id = 1; id <= LEGACY_ROWS; id++) {
+            String shortCode = Base62.encode(generator.nextId());
+            insert(id, shortCode);
+            legacyCodes.add(shortCode);
+        }
+        // Imported with a code that is no Snowflake ID, so it keeps its identity key
+        insert(LEGACY_ROWS + 1, "legacy-code");
+        List<String> snowflakeCodes = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            long id = generator.nextId();
+            insert(id, Base62.encode(id));
+            snowflakeCodes.add(Base62.encode(id));
+        }
+        // Sorts after the first Snowflake-keyed row, so the walk never reaches it
+        String unreached = Base62.encode(generator.nextId());
+        insert(Long.MAX_VALUE, unreached);
+
+        UrlMappingKeyMigration migration = new UrlMappingKeyMigration(jdbcTemplate, properties);
+        JpaUrlMappingStore store = store(migration);
+        assertTrue(store.findByShortCode(legacyCodes.get(0)).isPresent(),
+                "Lookups use the short code index until the migration completes");
+
+        migration.migrate();
+        clearInvocations(repository);
+
+        assertTrue(migration.isComplete());
+        for (String shortCode : legacyCodes) {
+            assertEquals(Base62.decode(shortCode), idOf(shortCode));
+            assertEquals(shortCode, store.findByShortCode(shortCode).orElseThrow().getShortCode());
+        }
+        for (String shortCode : snowflakeCodes) {
+            assertEquals(shortCode, store.findByShortCode(shortCode).orElseThrow().getShortCode());
+        }
+        verify(repository, never()).findByShortCode(anyString());
+        assertEquals(LEGACY_ROWS + 1, idOf("legacy-code"));
+        assertEquals(Long.MAX_VALUE, idOf(unreached));
+    }
+
+    @Test
+    void testShortCodeLookupModeLeavesKeysAlone() {
+        properties.setLookupMode(StorageProperties.LookupMode.SHORT_CODE);
+        String shortCode = Base62.encode(generator.nextId());
+        insert(1, shortCode);
+
+        UrlMappingKeyMigration migration = new UrlMappingKeyMigration(jdbcTemplate, properties);
+        migration.migrate();
+
+        assertFalse(migration.isComplete());
+        assertEquals(1, idOf(shortCode));
+    }
+
+    // Primary-key lookups answered by the table's id column, short code lookups by its short_code column
+    private JpaUrlMappingStore store(UrlMappingKeyMigration migration) {
+        repository = mock(UrlMappingRepository.class);
+        when(repository.findById(anyLong())).thenAnswer(invocation ->
+                find("id = ?", invocation.<Long>getArgument(0)));
+        when(repository.findByShortCode(anyString())).thenAnswer(invocation ->
+                find("short_code = ?", invocation.<String>getArgument(0)));
+        return new JpaUrlMappingStore(repository, migration, properties, new DataSourceReplicaProperties(),
+                new IdGeneratorProperties(), new DataSourceTransactionManager(dataSource), jdbcTemplate);
+    }
+
+    private Optional<UrlMapping> find(String condition, Object value) {
+        return jdbcTemplate.query("SELECT id, original_url, short_code, created_at FROM url_mappings WHERE " + condition,
+                (rs, rowNum) -> new UrlMapping(rs.getLong(1), rs.getString(2), rs.getString(3), null,
+                        rs.getTimestamp(4).toLocalDateTime(), 0, null, null, null, true),
+                value).stream().findFirst();
+    }
+
+    private void insert(long id, String shortCode) {
+        jdbcTemplate.update("INSERT INTO url_mappings (id, original_url, short_code, created_at) VALUES (?, ?, ?, ?)",
+                id, "https://example.com/" + shortCode, shortCode, LocalDateTime.now());
+    }
+
+    private long idOf(String shortCode) {
+        return jdbcTemplate.queryForObject("SELECT id FROM url_mappings WHERE short_code = ?", Long.class, shortCode);
+    }
+}
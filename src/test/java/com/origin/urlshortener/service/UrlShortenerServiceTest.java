@@ -0,0 +1,208 @@
+package com.origin.urlshortener.service;
+
+import com.origin.urlshortener.cache.LocalShortCodeCache;
+import com.origin.urlshortener.cache.ShortCodeFilter;
+import com.origin.urlshortener.cache.UrlMappingCache;
+import com.origin.urlshortener.config.CacheProperties;
+import com.origin.urlshortener.config.CanonicalizationProperties;
+import com.origin.urlshortener.exception.UrlNotFoundException;
+import com.origin.urlshortener.metrics.ShortenerMetrics;
+import com.origin.urlshortener.model.UrlMapping;
+import com.origin.urlshortener.storage.UrlMappingStore;
+import com.origin.urlshortener.util.SnowflakeIdGenerator;
+import com.origin.urlshortener.util.UrlDigest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class UrlShortenerServiceTest {
+    private static final String URL = "https://example.com/popular";
+
+    private final SnowflakeIdGenerator generator = new SnowflakeIdGenerator();
+    private UrlMappingStore store;
+    private ShortCodeFilter filter;
+    private LocalShortCodeCache sharedCache;
+    private SimpleMeterRegistry registry;
+    private UrlShortenerService service;
+
+    @BeforeEach
+    void setUp() {
+        store = mock(UrlMappingStore.class);
+        when(store.atomically(any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+        when(store.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        ShortCodePool pool = mock(ShortCodePool.class);
+        when(pool.nextId()).thenAnswer(invocation -> generator.nextId());
+        ClickTracker clickTracker = mock(ClickTracker.class);
+        UrlMappingCache cache = mock(UrlMappingCache.class);
+        registry = new SimpleMeterRegistry();
+        // A real instance: an inline mock would instrument ShortenerMetrics for every test in the JVM
+        filter = mock(ShortCodeFilter.class);
+        sharedCache = new LocalShortCodeCache(new CacheProperties());
+        ShortenerMetrics metrics = new ShortenerMetrics(registry, generator, cache, clickTracker, pool, sharedCache);
+        service = new UrlShortenerService(store, pool, cache, sharedCache, filter, metrics, clickTracker,
+                new UrlCanonicalizer(new CanonicalizationProperties()));
+    }
+
+    @Test
+    void testConcurrentShortensOfSameUrlAreCoalesced() throws Exception {
+        CountDownLatch leaderInLookup = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(store.findByUrlHash(any())).thenAnswer(invocation -> {
+            leaderInLookup.countDown();
+            release.await();
+            return Optional.empty();
+        });
+
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            List<Thread> followerThreads = new ArrayList<>();
+            List<Future<UrlMapping>> results = new ArrayList<>();
+            results.add(executor.submit(() -> service.shortenUrl(URL)));
+            leaderInLookup.await();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> {
+                    synchronized (followerThreads) {
+                        followerThreads.add(Thread.currentThread());
+                    }
+                    return service.shortenUrl(URL);
+                }));
+            }
+            awaitWaiting(followerThreads, 4);
+            release.countDown();
+
+            UrlMapping first = results.get(0).get();
+            for (Future<UrlMapping> result : results) {
+                assertSame(first, result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(store, times(1)).findByUrlHash(any());
+        verify(store, times(1)).save(any());
+        assertEquals(4, registry.get("shortener.shorten.results").tag("outcome", "coalesced").counter().count());
+    }
+
+    @Test
+    void testSameCanonicalUrlReusesStoredCode() {
+        // Answers digest lookups from what was saved, as the unique url_hash index would
+        Map<ByteBuffer, UrlMapping> byDigest = new HashMap<>();
+        when(store.save(any())).thenAnswer(invocation -> {
+            UrlMapping saved = invocation.getArgument(0);
+            byDigest.put(ByteBuffer.wrap(saved.getUrlHash()), saved);
+            return saved;
+        });
+        when(store.findByUrlHash(any())).thenAnswer(invocation ->
+                Optional.ofNullable(byDigest.get(ByteBuffer.wrap(invocation.<byte[]>getArgument(0)))));
+
+        UrlMapping created = service.shortenUrl("https://example.com/a");
+        UrlMapping reused = service.shortenUrl(" HTTPS://Example.com:443/a ");
+
+        assertEquals(created.getShortCode(), reused.getShortCode());
+        assertArrayEquals(UrlDigest.sha256("https://example.com/a"), created.getUrlHash());
+        verify(store, times(2)).findByUrlHash(UrlDigest.sha256("https://example.com/a"));
+        verify(store, times(1)).save(any());
+        assertEquals(1, registry.get("shortener.shorten.results").tag("outcome", "existing").counter().count());
+        assertEquals(1, registry.get("shortener.shorten.results").tag("outcome", "created").counter().count());
+    }
+
+    @Test
+    void testDigestCollisionIsStoredWithoutDigest() {
+        UrlMapping other = new UrlMapping(1L, "https://example.com/other", "00000000001", UrlDigest.sha256(URL),
+                LocalDateTime.now(), 0, null, null, null, true);
+        when(store.findByUrlHash(any())).thenReturn(Optional.of(other));
+
+        UrlMapping created = service.shortenUrl(URL);
+
+        assertNotEquals(other.getShortCode(), created.getShortCode());
+        assertNull(created.getUrlHash());
+        verify(store).save(created);
+    }
+
+    @Test
+    void testInsertRejectedByUniqueIndexIsRetried() {
+        UrlMapping existing = new UrlMapping(1L, URL, "00000000001", new byte[32], LocalDateTime.now(), 0, null,
+                null, null, true);
+        when(store.findByUrlHash(any())).thenReturn(Optional.empty()).thenReturn(Optional.of(existing));
+        when(store.save(any())).thenThrow(new DataIntegrityViolationException("idx_url_hash"));
+
+        assertSame(existing, service.shortenUrl(URL));
+        verify(store, times(1)).save(any());
+        // Both attempts look the URL up by the same digest, the second finding the row another node inserted
+        verify(store, times(2)).findByUrlHash(UrlDigest.sha256(URL));
+    }
+
+    @Test
+    void testCanonicalFormIsStored() {
+        UrlMapping urlMapping = service.shortenUrl(" HTTPS://Example.com:443?q=1 ");
+
+        assertEquals("https://example.com/?q=1", urlMapping.getOriginalUrl());
+        verify(store).findByUrlHash(UrlDigest.sha256("https://example.com/?q=1"));
+    }
+
+    @Test
+    void testCreatedMappingsAreServedFromSharedTier() {
+        UrlMapping created = service.shortenUrl(URL);
+        when(filter.mightContain(created.getShortCode())).thenReturn(true);
+
+        assertSame(created, service.getOriginalUrl(created.getShortCode()));
+        verify(store, never()).findByShortCode(any());
+        assertEquals(1, registry.get("shortener.cache.shared.requests").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void testDatabaseLoadsFillSharedTier() {
+        UrlMapping stored = new UrlMapping(1L, URL, "00000000001", null, LocalDateTime.now(), 0, null, null, null,
+                true);
+        when(filter.mightContain(any())).thenReturn(true);
+        when(store.findByShortCode("00000000001")).thenReturn(Optional.of(stored));
+
+        service.getOriginalUrl("00000000001");
+
+        assertSame(stored, sharedCache.get("00000000001"));
+    }
+
+    @Test
+    void testLookUpCanBeCompletedByCaller() {
+        UrlMapping stored = new UrlMapping(1L, URL, "00000000001", null, LocalDateTime.now(), 0, null, null, null,
+                true);
+        when(filter.mightContain(any())).thenReturn(true);
+
+        assertNull(service.lookUpCached("00000000001"));
+        assertSame(stored, service.loaded("00000000001", stored));
+        assertSame(stored, service.lookUpCached("00000000001"));
+        assertThrows(UrlNotFoundException.class, () -> service.loaded("00000000002", null));
+        verify(store, never()).findByShortCode(any());
+    }
+
+    private static void awaitWaiting(List<Thread> threads, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (true) {
+            synchronized (threads) {
+                if (threads.size() == count && threads.stream().allMatch(t -> t.getState() == Thread.State.WAITING)) {
+                    return;
+                }
+            }
+            assertTrue(System.nanoTime() < deadline, "followers did not start waiting within 5s");
+            Thread.sleep(5);
+        }
+    }
+}
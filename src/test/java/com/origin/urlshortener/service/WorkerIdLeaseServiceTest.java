@@ -0,0 +1,96 @@
+package com.origin.urlshortener.service;
+
+import com.origin.urlshortener.config.IdGeneratorProperties;
+import com.origin.urlshortener.repository.WorkerIdLeaseRepository;
+import com.origin.urlshortener.util.SnowflakeIdGenerator;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class WorkerIdLeaseServiceTest {
+
+    @Test
+    void testGenerationStopsBeforeAnUnrenewedLeaseExpires() throws Exception {
+        IdGeneratorProperties properties = new IdGeneratorProperties();
+        properties.getLease().setTtl(Duration.ofMillis(1500));
+        properties.getLease().setHeartbeatInterval(Duration.ofMillis(500));
+        WorkerIdLeaseRepository repository = mock(WorkerIdLeaseRepository.class);
+        when(repository.existsById(anyInt())).thenReturn(true);
+        when(repository.tryAcquire(anyInt(), anyString(), any(), any())).thenReturn(1);
+
+        WorkerIdLeaseService leaseService = new WorkerIdLeaseService(repository, properties);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, leaseService.acquireMachineId());
+        leaseService.bind(generator);
+        ArgumentCaptor<Instant> expiresAt = ArgumentCaptor.forClass(Instant.class);
+        verify(repository).tryAcquire(anyInt(), anyString(), expiresAt.capture(), any());
+        generator.nextId();
+
+        // Renewals fail from now on, and no heartbeat gets to run before the fence
+        when(repository.tryAcquire(anyInt(), anyString(), any(), any()))
+                .thenThrow(new DataAccessResourceFailureException("database down"));
+        Thread.sleep(1100);
+
+        assertTrue(Instant.now().isBefore(expiresAt.getValue()), "The lease must not have expired yet");
+        assertTrue(generator.isSuspended());
+        assertThrows(IllegalStateException.class, generator::nextId);
+
+        // A failed renewal inside the margin suspends explicitly, and a successful one lifts the fence
+        leaseService.heartbeat();
+        assertThrows(IllegalStateException.class, generator::nextId);
+        doReturn(1).when(repository).tryAcquire(anyInt(), anyString(), any(), any());
+        leaseService.heartbeat();
+        assertFalse(generator.isSuspended());
+        generator.nextId();
+    }
+
+    @Test
+    void testNodeLeasesAnotherWorkerIdAfterATakeover() {
+        IdGeneratorProperties properties = new IdGeneratorProperties();
+        properties.getLease().setTtl(Duration.ofMillis(1500));
+        properties.getLease().setHeartbeatInterval(Duration.ofMillis(500));
+        WorkerIdLeaseRepository repository = mock(WorkerIdLeaseRepository.class);
+        when(repository.existsById(anyInt())).thenReturn(true);
+        when(repository.tryAcquire(anyInt(), anyString(), any(), any())).thenReturn(1);
+
+        WorkerIdLeaseService leaseService = new WorkerIdLeaseService(repository, properties);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, leaseService.acquireMachineId());
+        leaseService.bind(generator);
+        int lostWorkerId = (int) generator.getWorkerId();
+
+        // Another node holds the worker ID now, and for a while no other slot is free either
+        when(repository.tryAcquire(anyInt(), anyString(), any(), any())).thenReturn(0);
+        leaseService.heartbeat();
+        assertTrue(generator.isSuspended());
+        assertThrows(IllegalStateException.class, generator::nextId);
+
+        when(repository.tryAcquire(anyInt(), anyString(), any(), any()))
+                .thenAnswer(invocation -> invocation.<Integer>getArgument(0) == lostWorkerId ? 0 : 1);
+        leaseService.heartbeat();
+        assertFalse(generator.isSuspended());
+        assertNotEquals(lostWorkerId, generator.getWorkerId());
+        assertEquals(generator.getWorkerId(), SnowflakeIdGenerator.workerIdOf(generator.nextId()));
+
+        // The new lease is the one renewed from now on
+        clearInvocations(repository);
+        leaseService.heartbeat();
+        verify(repository).tryAcquire(eq((int) generator.getWorkerId()), anyString(), any(), any());
+        verifyNoMoreInteractions(repository);
+        assertFalse(generator.isSuspended());
+    }
+
+    @Test
+    void testTtlMustLeaveRoomForTheFence() {
+        IdGeneratorProperties properties = new IdGeneratorProperties();
+        properties.getLease().setTtl(Duration.ofSeconds(15));
+        properties.getLease().setHeartbeatInterval(Duration.ofSeconds(10));
+        assertThrows(IllegalArgumentException.class,
+                () -> new WorkerIdLeaseService(mock(WorkerIdLeaseRepository.class), properties));
+    }
+}
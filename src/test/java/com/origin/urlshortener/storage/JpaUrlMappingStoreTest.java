@@ -0,0 +1,111 @@
+package com.origin.urlshortener.storage;
+
+import com.origin.urlshortener.config.DataSourceReplicaProperties;
+import com.origin.urlshortener.config.IdGeneratorProperties;
+import com.origin.urlshortener.config.StorageProperties;
+import com.origin.urlshortener.datasource.ReadReplicaRoutingDataSource;
+import com.origin.urlshortener.model.UrlMapping;
+import com.origin.urlshortener.repository.UrlMappingRepository;
+import com.origin.urlshortener.service.UrlMappingKeyMigration;
+import com.origin.urlshortener.util.Base62;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class JpaUrlMappingStoreTest {
+    private ReadReplicaRoutingDataSource dataSource;
+    private DataSourceTransactionManager transactionManager;
+    private UrlMappingRepository repository;
+    private final DataSourceReplicaProperties replicaProperties = new DataSourceReplicaProperties();
+    private final IdGeneratorProperties idGeneratorProperties = new IdGeneratorProperties();
+    private final StorageProperties storageProperties = new StorageProperties();
+
+    @BeforeEach
+    void setUp() {
+        // Periodic health checks are left out of the way
+        dataSource = new ReadReplicaRoutingDataSource(database("primary"), Map.of("replica", database("replica")),
+                Duration.ofHours(1), Duration.ofSeconds(1));
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        // Answers with a mapping naming the database the read-only lookup was routed to
+        repository = mock(UrlMappingRepository.class);
+        when(repository.findByShortCode(anyString())).thenAnswer(invocation -> readOnly.execute(status -> {
+            String node = jdbcTemplate.queryForObject("SELECT name FROM node", String.class);
+            String shortCode = invocation.getArgument(0);
+            return Optional.of(new UrlMapping(Base62.decode(shortCode), node, shortCode, null,
+                    LocalDateTime.now(), 0, null, null, null, true));
+        }));
+        replicaProperties.setEnabled(true);
+        replicaProperties.setReplicationLag(Duration.ofSeconds(5));
+        idGeneratorProperties.getPool().setMaxAge(Duration.ofSeconds(10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    void testRecentCodesAreLookedUpOnThePrimary() {
+        JpaUrlMappingStore store = store();
+
+        assertEquals("primary", lookUp(store, 1));
+        // Older than the replication lag, but its ID may have waited in the pool
+        assertEquals("primary", lookUp(store, 7));
+        assertEquals("replica", lookUp(store, 20));
+    }
+
+    @Test
+    void testPrimaryWindowCoversPoolAgeAndWriteBehindFlushes() {
+        idGeneratorProperties.getPool().setEnabled(false);
+        assertEquals(Duration.ofSeconds(5), primaryWindow());
+        assertEquals("replica", lookUp(store(), 7));
+
+        idGeneratorProperties.getPool().setEnabled(true);
+        storageProperties.getWriteBehind().setEnabled(true);
+        storageProperties.getWriteBehind().setFlushInterval(Duration.ofSeconds(1));
+        assertEquals(Duration.ofSeconds(16), primaryWindow());
+    }
+
+    private JpaUrlMappingStore store() {
+        return new JpaUrlMappingStore(repository, mock(UrlMappingKeyMigration.class), storageProperties,
+                replicaProperties, idGeneratorProperties, transactionManager, new JdbcTemplate(dataSource));
+    }
+
+    private Duration primaryWindow() {
+        return JpaUrlMappingStore.primaryWindow(replicaProperties, idGeneratorProperties, storageProperties);
+    }
+
+    // Looks up a code whose ID was generated the given number of seconds ago, returning the database that answered
+    private static String lookUp(JpaUrlMappingStore store, int ageSeconds) {
+        long timestampBits = System.currentTimeMillis() - ageSeconds * 1000L - 1288834974657L;
+        String shortCode = Base62.encode(timestampBits << 22);
+        return store.findByShortCode(shortCode).orElseThrow().getOriginalUrl();
+    }
+
+    private static DataSource database(String name) {
+        JdbcDataSource database = new JdbcDataSource();
+        database.setURL("jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("CREATE TABLE node (name VARCHAR(20))");
+        jdbcTemplate.update("INSERT INTO node VALUES (?)", name);
+        return database;
+    }
+}
@@ -0,0 +1,115 @@
+package com.origin.urlshortener.storage;
+
+import com.origin.urlshortener.config.StorageProperties;
+import com.origin.urlshortener.model.UrlMapping;
+import com.origin.urlshortener.util.Base62;
+import com.origin.urlshortener.util.SnowflakeIdGenerator;
+import com.origin.urlshortener.util.UrlDigest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MmapUrlMappingStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private final SnowflakeIdGenerator generator = new SnowflakeIdGenerator();
+
+    @Test
+    void testSaveAndFind() throws Exception {
+        MmapUrlMappingStore store = open(1 << 4);
+        UrlMapping saved = store.save(mapping("https://example.com/a"));
+        assertFalse(saved.isNew());
+
+        UrlMapping found = store.findByShortCode(saved.getShortCode()).orElseThrow();
+        assertEquals(saved.getId(), found.getId());
+        assertEquals("https://example.com/a", found.getOriginalUrl());
+        assertEquals(saved.getCreatedAt(), found.getCreatedAt());
+        assertArrayEquals(saved.getUrlHash(), found.getUrlHash());
+        assertEquals(saved.getId(), store.findByUrlHash(UrlDigest.sha256("https://example.com/a")).orElseThrow().getId());
+        assertTrue(store.findByUrlHash(UrlDigest.sha256("https://example.com/b")).isEmpty());
+        assertTrue(store.findByShortCode(Base62.encode(generator.nextId())).isEmpty());
+
+        assertThrows(DataIntegrityViolationException.class, () -> store.save(mapping("https://example.com/a")));
+        store.close();
+    }
+
+    @Test
+    void testIndexGrowsAndSurvivesCleanRestart() throws Exception {
+        MmapUrlMappingStore store = open(1 << 4);
+        List<UrlMapping> mappings = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            mappings.add(mapping("https://example.com/" + i));
+        }
+        store.insertAll(mappings);
+        store.close();
+
+        MmapUrlMappingStore reopened = open(1 << 4);
+        for (UrlMapping mapping : mappings) {
+            assertEquals(mapping.getOriginalUrl(),
+                    reopened.findByShortCode(mapping.getShortCode()).orElseThrow().getOriginalUrl());
+        }
+        List<String> shortCodes = new ArrayList<>();
+        reopened.forEachShortCode(shortCodes::add);
+        assertEquals(1000, shortCodes.size());
+        List<UrlMapping> recent = reopened.findMostRecent(3);
+        assertEquals(List.of("https://example.com/999", "https://example.com/998", "https://example.com/997"),
+                recent.stream().map(UrlMapping::getOriginalUrl).toList());
+        reopened.close();
+    }
+
+    @Test
+    void testRecoversAfterCrashWithTornWrite() throws Exception {
+        MmapUrlMappingStore store = open(1 << 4);
+        UrlMapping first = store.save(mapping("https://example.com/first"));
+        UrlMapping second = store.save(mapping("https://example.com/second"));
+        // No close(): indexes stay marked dirty, as after a crash
+
+        // Corrupt the last record's payload so its checksum no longer matches
+        try (RandomAccessFile log = new RandomAccessFile(directory.resolve("mappings.log").toFile(), "rw")) {
+            long position = 16 + 8 + recordLength(log, 16) + 8 + 20;
+            log.seek(position);
+            // Flip every bit: writing a fixed value leaves the record intact when the byte already holds it
+            int original = log.read();
+            log.seek(position);
+            log.write(~original);
+        }
+
+        MmapUrlMappingStore recovered = open(1 << 4);
+        assertTrue(recovered.findByShortCode(first.getShortCode()).isPresent());
+        assertTrue(recovered.findByShortCode(second.getShortCode()).isEmpty());
+        UrlMapping third = recovered.save(mapping("https://example.com/third"));
+        recovered.close();
+
+        MmapUrlMappingStore reopened = open(1 << 4);
+        assertEquals("https://example.com/third",
+                reopened.findByShortCode(third.getShortCode()).orElseThrow().getOriginalUrl());
+        reopened.close();
+    }
+
+    private MmapUrlMappingStore open(int indexCapacity) throws Exception {
+        StorageProperties properties = new StorageProperties();
+        properties.getMmap().setDirectory(directory.toString());
+        properties.getMmap().setIndexCapacity(indexCapacity);
+        return new MmapUrlMappingStore(properties);
+    }
+
+    private UrlMapping mapping(String url) {
+        long id = generator.nextId();
+        return new UrlMapping(id, url, Base62.encode(id), UrlDigest.sha256(url), LocalDateTime.now(), 0, null, null, null, false);
+    }
+
+    private static int recordLength(RandomAccessFile log, long position) throws Exception {
+        log.seek(position);
+        return log.readInt();
+    }
+}
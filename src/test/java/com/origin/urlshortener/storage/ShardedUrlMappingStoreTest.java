@@ -0,0 +1,207 @@
+package com.origin.urlshortener.storage;
+
+import com.origin.urlshortener.config.StorageProperties;
+import com.origin.urlshortener.model.UrlMapping;
+import com.origin.urlshortener.util.Base62;
+import com.origin.urlshortener.util.SnowflakeIdGenerator;
+import com.origin.urlshortener.util.UrlDigest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedUrlMappingStoreTest {
+    private final SnowflakeIdGenerator generator = new SnowflakeIdGenerator();
+    // Unique per test so in-memory databases are not shared between tests
+    private final String prefix = UUID.randomUUID().toString();
+    private final List<ShardedUrlMappingStore> stores = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        stores.forEach(ShardedUrlMappingStore::destroy);
+    }
+
+    @Test
+    void testMappingsAreStoredInTheirOwnerShardOnly() {
+        ShardedUrlMappingStore store = open(StorageProperties.ShardingStrategy.HASH,
+                shard("a", StorageProperties.ShardState.ACTIVE, null),
+                shard("b", StorageProperties.ShardState.ACTIVE, null),
+                shard("c", StorageProperties.ShardState.ACTIVE, null));
+        List<UrlMapping> saved = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            saved.add(store.save(mapping(generator.nextId(), "https://example.com/" + i)));
+        }
+
+        for (UrlMapping urlMapping : saved) {
+            assertEquals(urlMapping.getOriginalUrl(),
+                    store.findByShortCode(urlMapping.getShortCode()).orElseThrow().getOriginalUrl());
+            int owner = store.layout().shardOf(urlMapping.getId());
+            for (int index = 0; index < 3; index++) {
+                assertEquals(index == owner ? 1 : 0, count(store.shards().get(index), urlMapping.getId()));
+            }
+        }
+        for (ShardedUrlMappingStore.Shard shard : store.shards()) {
+            assertTrue(rows(shard) > 0, "Shard " + shard.name + " holds no mappings");
+        }
+        assertTrue(store.findByShortCode("zzzzzzzzzzzz").isEmpty());
+    }
+
+    @Test
+    void testUrlHashLookupsQueryEveryShard() {
+        ShardedUrlMappingStore store = open(StorageProperties.ShardingStrategy.HASH,
+                shard("a", StorageProperties.ShardState.ACTIVE, null),
+                shard("b", StorageProperties.ShardState.ACTIVE, null));
+        List<UrlMapping> saved = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            saved.add(mapping(generator.nextId(), "https://example.com/" + i));
+        }
+        store.insertAll(saved);
+
+        for (UrlMapping urlMapping : saved) {
+            assertEquals(urlMapping.getShortCode(),
+                    store.findByUrlHash(urlMapping.getUrlHash()).orElseThrow().getShortCode());
+        }
+        List<byte[]> hashes = saved.stream().map(UrlMapping::getUrlHash).toList();
+        assertEquals(20, store.findByUrlHashIn(hashes).size());
+        assertTrue(store.findByUrlHash(UrlDigest.sha256("https://example.com/missing")).isEmpty());
+        assertEquals(10, store.findMostRecent(10).size());
+        assertEquals(0, store.insertMissing(saved));
+    }
+
+    @Test
+    void testTimeStrategyRoutesByCreationTime() {
+        Instant split = Instant.now().minus(Duration.ofHours(1));
+        ShardedUrlMappingStore store = open(StorageProperties.ShardingStrategy.TIME,
+                shard("old", StorageProperties.ShardState.ACTIVE, null),
+                shard("new", StorageProperties.ShardState.ACTIVE, split));
+        UrlMapping recent = store.save(mapping(generator.nextId(), "https://example.com/recent"));
+        UrlMapping early = store.save(mapping(idAt(split.minus(Duration.ofDays(30))), "https://example.com/early"));
+
+        assertEquals(1, count(store.shards().get(1), recent.getId()));
+        assertEquals(1, count(store.shards().get(0), early.getId()));
+        assertTrue(store.findByShortCode(recent.getShortCode()).isPresent());
+        assertTrue(store.findByShortCode(early.getShortCode()).isPresent());
+    }
+
+    @Test
+    void testMappingsAreFoundWhileAndAfterResharding() {
+        ShardedUrlMappingStore before = open(StorageProperties.ShardingStrategy.HASH,
+                shard("a", StorageProperties.ShardState.ACTIVE, null),
+                shard("b", StorageProperties.ShardState.ACTIVE, null));
+        List<UrlMapping> saved = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            saved.add(before.save(mapping(generator.nextId(), "https://example.com/" + i)));
+        }
+
+        StorageProperties properties = properties(StorageProperties.ShardingStrategy.HASH,
+                shard("a", StorageProperties.ShardState.ACTIVE, null),
+                shard("b", StorageProperties.ShardState.ACTIVE, null),
+                shard("c", StorageProperties.ShardState.JOINING, null));
+        properties.getSharded().setRebalanceBatchSize(16);
+        properties.getSharded().setRebalancePause(Duration.ZERO);
+        ShardedUrlMappingStore store = open(properties);
+        assertTrue(store.isResharding());
+        for (UrlMapping urlMapping : saved) {
+            assertTrue(store.findByShortCode(urlMapping.getShortCode()).isPresent());
+        }
+
+        long moved = new ShardRebalancer(properties, store).rebalance();
+        assertTrue(moved > 0);
+        assertEquals(moved, rows(store.shards().get(2)));
+        assertEquals(100, store.shards().stream().mapToLong(ShardedUrlMappingStoreTest::rows).sum());
+        for (UrlMapping urlMapping : saved) {
+            assertEquals(1, count(store.shards().get(store.layout().shardOf(urlMapping.getId())), urlMapping.getId()));
+            assertTrue(store.findByShortCode(urlMapping.getShortCode()).isPresent());
+            assertTrue(store.findByUrlHash(urlMapping.getUrlHash()).isPresent());
+        }
+        assertEquals(0, new ShardRebalancer(properties, store).rebalance());
+    }
+
+    @Test
+    void testClicksDuringAMoveAreCarriedOver() {
+        ShardedUrlMappingStore before = open(StorageProperties.ShardingStrategy.HASH,
+                shard("a", StorageProperties.ShardState.ACTIVE, null),
+                shard("b", StorageProperties.ShardState.ACTIVE, null));
+        List<UrlMapping> saved = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            saved.add(before.save(mapping(generator.nextId(), "https://example.com/" + i)));
+        }
+        StorageProperties properties = properties(StorageProperties.ShardingStrategy.HASH,
+                shard("a", StorageProperties.ShardState.ACTIVE, null),
+                shard("b", StorageProperties.ShardState.ACTIVE, null),
+                shard("c", StorageProperties.ShardState.JOINING, null));
+        ShardedUrlMappingStore store = open(properties);
+        UrlMapping scanned = saved.stream()
+                .filter(urlMapping -> store.layout().shardOf(urlMapping.getId()) == 2)
+                .findFirst().orElseThrow();
+        ShardedUrlMappingStore.Shard source = store.shards().get(before.layout().shardOf(scanned.getId()));
+        ShardedUrlMappingStore.Shard target = store.shards().get(2);
+
+        // Clicked after the scan but before the copy exists, so only the source counts them
+        LocalDateTime clickedAt = LocalDateTime.now();
+        store.applyClicks(List.of(new ClickUpdate(scanned.getShortCode(), 3, clickedAt)));
+        assertEquals(1, new ShardRebalancer(properties, store).move(source, target, List.of(scanned)));
+
+        assertEquals(0, count(source, scanned.getId()));
+        UrlMapping moved = store.findByShortCode(scanned.getShortCode()).orElseThrow();
+        assertEquals(3, moved.getClickCount());
+        assertEquals(clickedAt.withNano(0), moved.getLastAccessedAt().withNano(0));
+
+        store.applyClicks(List.of(new ClickUpdate(scanned.getShortCode(), 2, LocalDateTime.now())));
+        assertEquals(5, store.findByShortCode(scanned.getShortCode()).orElseThrow().getClickCount());
+    }
+
+    private ShardedUrlMappingStore open(StorageProperties.ShardingStrategy strategy,
+                                        StorageProperties.Shard... shards) {
+        return open(properties(strategy, shards));
+    }
+
+    private ShardedUrlMappingStore open(StorageProperties properties) {
+        ShardedUrlMappingStore store = new ShardedUrlMappingStore(properties);
+        stores.add(store);
+        return store;
+    }
+
+    private static StorageProperties properties(StorageProperties.ShardingStrategy strategy,
+                                                StorageProperties.Shard... shards) {
+        StorageProperties properties = new StorageProperties();
+        properties.setEngine(StorageProperties.Engine.SHARDED);
+        properties.getSharded().setStrategy(strategy);
+        properties.getSharded().setShards(List.of(shards));
+        return properties;
+    }
+
+    private StorageProperties.Shard shard(String name, StorageProperties.ShardState state, Instant from) {
+        StorageProperties.Shard shard = new StorageProperties.Shard();
+        shard.setName(name);
+        shard.setUrl("jdbc:h2:mem:" + prefix + "-" + name + ";DB_CLOSE_DELAY=-1");
+        shard.setUsername("sa");
+        shard.setState(state);
+        shard.setFrom(from);
+        return shard;
+    }
+
+    private static long count(ShardedUrlMappingStore.Shard shard, long id) {
+        return shard.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM url_mappings WHERE id = ?", Long.class, id);
+    }
+
+    private static long rows(ShardedUrlMappingStore.Shard shard) {
+        return shard.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM url_mappings", Long.class);
+    }
+
+    // An ID as generated at the given time by worker 0
+    private static long idAt(Instant instant) {
+        return (instant.toEpochMilli() - 1288834974657L) << 22;
+    }
+
+    private static UrlMapping mapping(long id, String url) {
+        return new UrlMapping(id, url, Base62.encode(id), UrlDigest.sha256(url), LocalDateTime.now(), 0, null, null, null, false);
+    }
+}
@@ -0,0 +1,237 @@
+package com.origin.urlshortener.storage;
+
+import com.origin.urlshortener.config.StorageProperties;
+import com.origin.urlshortener.exception.AdmissionRejectedException;
+import com.origin.urlshortener.model.UrlMapping;
+import com.origin.urlshortener.util.Base62;
+import com.origin.urlshortener.util.SnowflakeIdGenerator;
+import com.origin.urlshortener.util.UrlDigest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class WriteBehindUrlMappingStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private final SnowflakeIdGenerator generator = new SnowflakeIdGenerator();
+    private JpaUrlMappingStore delegate;
+
+    @BeforeEach
+    void setUp() {
+        delegate = mock(JpaUrlMappingStore.class);
+        when(delegate.findByShortCode(any())).thenReturn(Optional.empty());
+        when(delegate.findByUrlHash(any())).thenReturn(Optional.empty());
+        when(delegate.insertMissing(any())).thenAnswer(invocation -> invocation.<List<?>>getArgument(0).size());
+    }
+
+    @Test
+    void testStagedMappingsAreServedBeforeFlush() throws Exception {
+        WriteBehindUrlMappingStore store = open(100);
+        UrlMapping saved = store.save(mapping("https://example.com/a"));
+
+        assertSame(saved, store.findByShortCode(saved.getShortCode()).orElseThrow());
+        assertSame(saved, store.findByUrlHash(UrlDigest.sha256("https://example.com/a")).orElseThrow());
+        assertTrue(saved.isPersisted());
+        verify(delegate, never()).save(any());
+        verify(delegate, never()).insertMissing(any());
+
+        store.flush();
+        verify(delegate).insertMissing(List.of(saved));
+        assertEquals(0, store.stagedMappings());
+        assertTrue(store.findByShortCode(saved.getShortCode()).isEmpty());
+        store.stop();
+    }
+
+    @Test
+    void testStagedMappingsAreReplayedAfterCrash() throws Exception {
+        WriteBehindUrlMappingStore crashed = open(100);
+        UrlMapping first = crashed.save(mapping("https://example.com/a"));
+        UrlMapping second = crashed.save(mapping("https://example.com/b"));
+
+        // Not stopped: the new instance finds the log as the crashed process left it
+        WriteBehindUrlMappingStore store = new WriteBehindUrlMappingStore(properties(100), delegate);
+        assertEquals(2, store.stagedMappings());
+        assertEquals(first.getOriginalUrl(),
+                store.findByShortCode(first.getShortCode()).orElseThrow().getOriginalUrl());
+
+        store.start();
+        ArgumentCaptor<List<UrlMapping>> inserted = captor();
+        verify(delegate).insertMissing(inserted.capture());
+        assertEquals(List.of(first.getShortCode(), second.getShortCode()),
+                inserted.getValue().stream().map(UrlMapping::getShortCode).toList());
+        assertEquals(0, store.stagedMappings());
+        store.stop();
+        assertEquals(0, logFiles());
+    }
+
+    @Test
+    void testFailedBatchIsRetried() throws Exception {
+        WriteBehindUrlMappingStore store = open(100);
+        UrlMapping saved = store.save(mapping("https://example.com/a"));
+        doThrow(new DataAccessResourceFailureException("database unavailable")).doReturn(1)
+                .when(delegate).insertMissing(any());
+
+        store.flush();
+        assertEquals(1, store.stagedMappings());
+        assertSame(saved, store.findByShortCode(saved.getShortCode()).orElseThrow());
+
+        store.flush();
+        verify(delegate, times(2)).insertMissing(List.of(saved));
+        assertEquals(0, store.stagedMappings());
+        store.stop();
+    }
+
+    @Test
+    void testUrlStoredElsewhereKeepsStagedCode() throws Exception {
+        WriteBehindUrlMappingStore store = open(100);
+        UrlMapping saved = store.save(mapping("https://example.com/a"));
+        // Another node inserted the URL first, so the digest conflicts and the row is skipped
+        doReturn(0).doReturn(1).when(delegate).insertMissing(any());
+
+        store.flush();
+        ArgumentCaptor<List<UrlMapping>> inserted = captor();
+        verify(delegate, times(2)).insertMissing(inserted.capture());
+        assertSame(saved, inserted.getValue().get(0));
+        assertNull(saved.getUrlHash());
+        assertEquals(0, store.stagedMappings());
+        store.stop();
+    }
+
+    @Test
+    void testStageIsBounded() throws Exception {
+        WriteBehindUrlMappingStore store = open(2);
+        store.save(mapping("https://example.com/a"));
+        store.save(mapping("https://example.com/b"));
+
+        assertThrows(AdmissionRejectedException.class, () -> store.save(mapping("https://example.com/c")));
+        store.stop();
+    }
+
+    @Test
+    void testOtherEnginesAreRejected() {
+        StorageProperties properties = properties(100);
+        properties.getWriteBehind().setEnabled(true);
+        properties.afterPropertiesSet();
+
+        properties.setEngine(StorageProperties.Engine.MMAP);
+        IllegalStateException e = assertThrows(IllegalStateException.class, properties::afterPropertiesSet);
+        assertTrue(e.getMessage().contains("shortener.storage.engine=jpa"));
+    }
+
+    @Test
+    void testSavesAfterStopAreWrittenThrough() throws Exception {
+        runAtomically();
+        WriteBehindUrlMappingStore store = open(100);
+        store.stop();
+
+        UrlMapping saved = store.save(mapping("https://example.com/a"));
+        verify(delegate).save(saved);
+        assertEquals(0, store.stagedMappings());
+        assertEquals(0, logFiles());
+    }
+
+    @Test
+    void testSavesRacingStopAreNotLost() throws Exception {
+        runAtomically();
+        WriteBehindUrlMappingStore store = open(100_000);
+        Set<String> saved = ConcurrentHashMap.newKeySet();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicBoolean stopped = new AtomicBoolean();
+        List<Thread> writers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread writer = new Thread(() -> {
+                try {
+                    while (!stopped.get()) {
+                        saved.add(store.save(mapping("https://example.com/" + UUID.randomUUID())).getShortCode());
+                    }
+                    // A few more once stop() has returned, so creates land on both sides of it
+                    for (int n = 0; n < 10; n++) {
+                        saved.add(store.save(mapping("https://example.com/" + UUID.randomUUID())).getShortCode());
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        Thread.sleep(50);
+        store.stop();
+        stopped.set(true);
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertNull(failure.get());
+        Set<String> written = new HashSet<>();
+        ArgumentCaptor<List<UrlMapping>> inserted = captor();
+        verify(delegate, atLeast(0)).insertMissing(inserted.capture());
+        inserted.getAllValues().forEach(batch -> batch.forEach(m -> written.add(m.getShortCode())));
+        ArgumentCaptor<UrlMapping> writtenThrough = ArgumentCaptor.forClass(UrlMapping.class);
+        verify(delegate, atLeastOnce()).save(writtenThrough.capture());
+        writtenThrough.getAllValues().forEach(m -> written.add(m.getShortCode()));
+        assertEquals(saved, written);
+        assertEquals(0, store.stagedMappings());
+        assertEquals(0, logFiles());
+    }
+
+    private WriteBehindUrlMappingStore open(int maxPending) throws Exception {
+        WriteBehindUrlMappingStore store = new WriteBehindUrlMappingStore(properties(maxPending), delegate);
+        store.start();
+        return store;
+    }
+
+    private void runAtomically() {
+        when(delegate.atomically(any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+        when(delegate.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    private StorageProperties properties(int maxPending) {
+        StorageProperties properties = new StorageProperties();
+        properties.getWriteBehind().setDirectory(directory.toString());
+        // Flushed by the tests only
+        properties.getWriteBehind().setFlushInterval(Duration.ofHours(1));
+        properties.getWriteBehind().setMaxPending(maxPending);
+        return properties;
+    }
+
+    private long logFiles() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private UrlMapping mapping(String url) {
+        long id = generator.nextId();
+        return new UrlMapping(id, url, Base62.encode(id), UrlDigest.sha256(url), LocalDateTime.now(), 0, null, null, null, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<List<UrlMapping>> captor() {
+        return ArgumentCaptor.forClass(List.class);
+    }
+}
@@ -0,0 +1,50 @@
+package com.origin.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Base62Test {
+
+    @Test
+    void testFixedWidthEncoding() {
+        assertEquals("00000000000", Base62.encode(0));
+        assertEquals("0000000000z", Base62.encode(61));
+        assertEquals("00000000010", Base62.encode(62));
+        assertEquals("AzL8n0Y58m7", Base62.encode(Long.MAX_VALUE));
+    }
+
+    @Test
+    void testRoundTrip() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator();
+        for (int i = 0; i < 1000; i++) {
+            long id = generator.nextId();
+            String code = Base62.encode(id);
+            assertEquals(11, code.length(), "Encoded codes should be 11 characters long");
+            assertEquals(id, Base62.decode(code), "Decoding should return the original ID");
+        }
+        assertEquals(Long.MAX_VALUE, Base62.decode(Base62.encode(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void testEncodeIntoBuffer() {
+        byte[] buffer = new byte[13];
+        Base62.encode(62, buffer, 1);
+        assertEquals("00000000010", new String(buffer, 1, 11, java.nio.charset.StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    void testDecodeRejectsInvalidCodes() {
+        assertEquals(-1, Base62.decode(null));
+        assertEquals(-1, Base62.decode("abc123"), "Codes must be exactly 11 characters");
+        assertEquals(-1, Base62.decode("0000000000-"), "Codes must only contain Base62 characters");
+        assertEquals(-1, Base62.decode("0000000000é"), "Codes must only contain Base62 characters");
+        assertEquals(-1, Base62.decode("zzzzzzzzzzz"), "Codes beyond the long range are invalid");
+        assertEquals(-1, Base62.decode("AzL8n0Y58m8"), "Codes beyond the long range are invalid");
+    }
+
+    @Test
+    void testEncodeRejectsNegativeValues() {
+        assertThrows(IllegalArgumentException.class, () -> Base62.encode(-1));
+    }
+}
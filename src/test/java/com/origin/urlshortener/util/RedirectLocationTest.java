@@ -0,0 +1,23 @@
+package com.origin.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RedirectLocationTest {
+
+    @Test
+    void testAsciiUrlIsReturnedAsIs() {
+        String url = "https://example.com/path?q=a%20b#top";
+        assertSame(url, RedirectLocation.of(url));
+    }
+
+    @Test
+    void testNonAsciiIsEncodedWithoutParsing() {
+        assertEquals("https://example.com/caf%C3%A9?q=%E2%9C%93", RedirectLocation.of("https://example.com/café?q=✓"));
+        // java.net.URI rejects both of these
+        assertEquals("https://example.com/a%20b%0D%0ASet-Cookie:%20x",
+                RedirectLocation.of("https://example.com/a b\r\nSet-Cookie: x"));
+        assertEquals("http://[::1%C3%A9]/%F0%9F%98%80", RedirectLocation.of("http://[::1é]/😀"));
+    }
+}
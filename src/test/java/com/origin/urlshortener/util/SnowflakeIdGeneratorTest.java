@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -68,4 +69,40 @@ class SnowflakeIdGeneratorTest {
         }
         assertEquals(codes.length, uniques.size(), "unique code size should be the same to codes array length");
     }
-} 
\ No newline at end of file
+
+    @Test
+    void testConcurrentGenerationAcrossSequenceOverflow() throws InterruptedException {
+        // Enough ids to exhaust the 4096 per-millisecond sequence many times over
+        int threadCount = 8;
+        int idsPerThread = 20_000;
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        Thread[] threads = new Thread[threadCount];
+        boolean[] ordered = new boolean[threadCount];
+
+        for (int i = 0; i < threadCount; i++) {
+            final int index = i;
+            threads[i] = new Thread(() -> {
+                long previous = -1;
+                boolean increasing = true;
+                for (int j = 0; j < idsPerThread; j++) {
+                    long id = generator.nextId();
+                    increasing &= id > previous;
+                    previous = id;
+                    ids.add(id);
+                }
+                ordered[index] = increasing;
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(threadCount * idsPerThread, ids.size(), "All generated ids should be unique");
+        for (boolean increasing : ordered) {
+            assertTrue(increasing, "IDs seen by a single thread should be monotonically increasing");
+        }
+    }
+}